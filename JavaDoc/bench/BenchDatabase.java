@@ -0,0 +1,168 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.Random;
+
+// Builds the scratch database the benchmarks run against: the tables from JavaDoc.sql, the app's
+// migrations and synthetic rows scaled to the requested number of appointments. Never touches the
+// JavaDoc database itself; the scratch one is dropped and recreated when its size does not match.
+public class BenchDatabase {
+    private static final int BATCH_SIZE = 5000;
+    private static final int SPECIALIZATIONS = 20;
+    private static final String[] STATUSES = {"scheduled", "scheduled", "scheduled", "completed", "cancelled"};
+
+    private final String masterUrl;
+    private final String url;
+    private final String name;
+    private final Path schema;
+
+    public BenchDatabase(String masterUrl, String url, String name, Path schema) {
+        this.masterUrl = masterUrl;
+        this.url = url;
+        this.name = name;
+        this.schema = schema;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public static int doctorsFor(int appointments) {
+        return Math.max(50, appointments / 200);
+    }
+
+    public static int clientsFor(int appointments) {
+        return Math.max(100, appointments / 10);
+    }
+
+    // reuses the database when it already holds exactly this many appointments
+    public void prepare(int appointments) throws SQLException, IOException {
+        if (appointmentCount() == appointments) {
+            System.out.printf("Reusing %s with %,d appointments%n", name, appointments);
+            return;
+        }
+
+        long started = System.currentTimeMillis();
+        recreate();
+        try (Connection conn = DriverManager.getConnection(url)) {
+            try (Statement statement = conn.createStatement()) {
+                for (String batch : SchemaMigrator.splitBatches(Files.readString(schema, StandardCharsets.UTF_8))) {
+                    // JavaDoc.sql starts by recreating the real database; only its table DDL is wanted here
+                    if (batch.contains("CREATE DATABASE") || batch.startsWith("USE ")) continue;
+                    statement.execute(batch);
+                }
+            }
+        }
+        try (ConnectionPool pool = new ConnectionPool(url, 1, 1, 60_000, 10_000)) {
+            new SchemaMigrator(pool).migrate();
+        }
+        seed(appointments);
+        System.out.printf("Seeded %s with %,d appointments in %d s%n", name, appointments, (System.currentTimeMillis() - started) / 1000);
+    }
+
+    private int appointmentCount() {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement statement = conn.createStatement();
+             ResultSet res = statement.executeQuery("SELECT COUNT(*) FROM Appointments")) {
+            return res.next() ? res.getInt(1) : -1;
+        } catch (SQLException e) {
+            return -1; // missing database or tables
+        }
+    }
+
+    private void recreate() throws SQLException {
+        try (Connection conn = DriverManager.getConnection(masterUrl);
+             Statement statement = conn.createStatement()) {
+            statement.execute("IF DB_ID('" + name + "') IS NOT NULL ALTER DATABASE [" + name + "] SET SINGLE_USER WITH ROLLBACK IMMEDIATE");
+            statement.execute("DROP DATABASE IF EXISTS [" + name + "]");
+            statement.execute("CREATE DATABASE [" + name + "]");
+        }
+    }
+
+    private void seed(int appointments) throws SQLException {
+        int doctors = doctorsFor(appointments);
+        int clients = clientsFor(appointments);
+        Random random = new Random(42);
+
+        try (Connection conn = DriverManager.getConnection(url)) {
+            conn.setAutoCommit(false);
+            try (Statement statement = conn.createStatement()) {
+                // synthetic rows never overlap, skipping the per-row check keeps seeding fast
+                statement.execute("DISABLE TRIGGER TR_Appointments_NoOverlap ON Appointments");
+            }
+
+            try (PreparedStatement statement = conn.prepareStatement("INSERT INTO Specializations (name) VALUES (?)")) {
+                for (int i = 1; i <= SPECIALIZATIONS; i++) {
+                    statement.setString(1, "Specialization " + i);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+
+            try (PreparedStatement statement = conn.prepareStatement(
+                    "INSERT INTO Doctors (first_name, last_name, specialization_id, email, phone, years_of_exp, rating) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+                for (int i = 1; i <= doctors; i++) {
+                    statement.setString(1, "Doctor" + i);
+                    statement.setString(2, "Last" + i);
+                    statement.setInt(3, 1 + random.nextInt(SPECIALIZATIONS));
+                    statement.setString(4, "doctor" + i + "@example.com");
+                    statement.setString(5, String.format("555%07d", i));
+                    statement.setInt(6, random.nextInt(40));
+                    statement.setFloat(7, random.nextInt(50) / 10f);
+                    add(conn, statement, i);
+                }
+                statement.executeBatch();
+            }
+
+            LocalDateTime registeredFrom = LocalDateTime.now().minusYears(5);
+            try (PreparedStatement statement = conn.prepareStatement(
+                    "INSERT INTO Clients (first_name, last_name, email, phone, age, registration_date) VALUES (?, ?, ?, ?, ?, ?)")) {
+                for (int i = 1; i <= clients; i++) {
+                    statement.setString(1, "Client" + i);
+                    statement.setString(2, "Last" + i);
+                    statement.setString(3, "client" + i + "@example.com");
+                    statement.setString(4, String.format("556%07d", i));
+                    statement.setInt(5, 18 + random.nextInt(70));
+                    statement.setTimestamp(6, Timestamp.valueOf(registeredFrom.plusMinutes(random.nextInt(5 * 365 * 24 * 60))));
+                    add(conn, statement, i);
+                }
+                statement.executeBatch();
+            }
+
+            // every doctor gets back-to-back 30 minute slots, centred on today
+            int slotsPerDoctor = (appointments + doctors - 1) / doctors;
+            LocalDateTime first = LocalDateTime.now().withSecond(0).withNano(0).minusMinutes(slotsPerDoctor / 2 * 30L);
+            try (PreparedStatement statement = conn.prepareStatement(
+                    "INSERT INTO Appointments (client_id, doctor_id, [date], reason, [status], duration_minutes) VALUES (?, ?, ?, ?, ?, 30)")) {
+                for (int i = 0; i < appointments; i++) {
+                    statement.setInt(1, 1 + random.nextInt(clients));
+                    statement.setInt(2, 1 + i % doctors);
+                    statement.setTimestamp(3, Timestamp.valueOf(first.plusMinutes(i / doctors * 30L)));
+                    statement.setString(4, "Checkup " + i);
+                    statement.setString(5, STATUSES[random.nextInt(STATUSES.length)]);
+                    add(conn, statement, i + 1);
+                }
+                statement.executeBatch();
+            }
+
+            try (Statement statement = conn.createStatement()) {
+                statement.execute("ENABLE TRIGGER TR_Appointments_NoOverlap ON Appointments");
+                statement.execute("UPDATE STATISTICS Appointments");
+                statement.execute("UPDATE STATISTICS Clients");
+                statement.execute("UPDATE STATISTICS Doctors");
+            }
+            conn.commit();
+        }
+    }
+
+    private static void add(Connection conn, PreparedStatement statement, int count) throws SQLException {
+        statement.addBatch();
+        if (count % BATCH_SIZE == 0) {
+            statement.executeBatch();
+            conn.commit();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Memory benchmark without a database: N appointment rows held the way the frames held them before
+// (an Object[] per row with the fresh Strings and Timestamp a JDBC driver returns) and as column blocks,
+// comparing the retained heap.
+//
+//   java -cp out ColumnBlockBenchmark [rows, default 1000000] [doctors, default 500] [clients, default 100000]
+public class ColumnBlockBenchmark {
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int doctors = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        int clients = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+        String[] statuses = {"scheduled", "completed", "cancelled"};
+        String[] reasons = {"Checkup", "Follow-up", "Consultation", "Vaccination", "Lab results"};
+        long start = System.currentTimeMillis();
+
+        long before = usedHeap();
+        List<Object[]> objectRows = new ArrayList<>(rows);
+        Random random = new Random(42);
+        for (int i = 0; i < rows; i++) {
+            // new String(...) like the driver: every row gets its own copies
+            objectRows.add(new Object[]{
+                    new String("Doctor " + random.nextInt(doctors)),
+                    new String("Client " + random.nextInt(clients)),
+                    new Timestamp(start + i * 60_000L),
+                    new String(reasons[random.nextInt(reasons.length)]),
+                    new String(statuses[random.nextInt(statuses.length)])});
+        }
+        long objectBytes = usedHeap() - before;
+
+        before = usedHeap();
+        ColumnBlock.Schema schema = new ColumnBlock.Schema(ColumnBlock.Type.CATEGORY, ColumnBlock.Type.CATEGORY, ColumnBlock.Type.TIMESTAMP,
+                ColumnBlock.Type.TEXT, ColumnBlock.Type.CATEGORY);
+        List<ColumnBlock> blocks = new ArrayList<>();
+        random = new Random(42);
+        for (int i = 0; i < rows; i++) {
+            if (i % PagedTableModel.PAGE_SIZE == 0) blocks.add(new ColumnBlock(schema, PagedTableModel.PAGE_SIZE));
+            blocks.get(blocks.size() - 1).add(new Object[]{
+                    new String("Doctor " + random.nextInt(doctors)),
+                    new String("Client " + random.nextInt(clients)),
+                    new Timestamp(start + i * 60_000L),
+                    new String(reasons[random.nextInt(reasons.length)]),
+                    new String(statuses[random.nextInt(statuses.length)])});
+        }
+        long columnBytes = usedHeap() - before;
+
+        System.out.printf("%,d appointment rows (%d doctors, %,d clients)%n", rows, doctors, clients);
+        System.out.printf("  Object[] rows: %,12d bytes  %6.1f bytes/row%n", objectBytes, (double) objectBytes / rows);
+        System.out.printf("  column blocks: %,12d bytes  %6.1f bytes/row  (dictionaries: %d doctors, %,d clients, %d statuses)%n",
+                columnBytes, (double) columnBytes / rows, schema.getDictionarySize(0), schema.getDictionarySize(1), schema.getDictionarySize(4));
+        System.out.printf("  %.1fx smaller%n", (double) objectBytes / columnBytes);
+        Reference.reachabilityFence(objectRows);
+        Reference.reachabilityFence(blocks);
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
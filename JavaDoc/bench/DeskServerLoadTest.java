@@ -0,0 +1,148 @@
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Concurrency load test for DeskServer: the scratch database is seeded as for QueryBenchmark, a server runs
+// in process on a free port, and N simulated desks, each on its own virtual thread, send the frames' mix of
+// requests through DeskClient for a fixed time: mostly type-ahead lookups, then table pages, doctor
+// searches, free-slot questions and booking (and cancelling) appointments. Reports throughput and latency
+// per operation, HTTP errors by status and the pool's wait statistics.
+//
+//   java -cp out:src:<mssql-jdbc.jar> DeskServerLoadTest [desks, default 40] [seconds, default 30]
+//
+//   -Djavadoc.bench.url=... -Djavadoc.bench.masterUrl=... -Djavadoc.bench.schema=...  as for QueryBenchmark
+//   -Djavadoc.bench.appointments=100000 -Djavadoc.bench.poolMax=8
+public class DeskServerLoadTest {
+    private static final String NAME = "JavaDocBench";
+    private static final int APPOINTMENTS = Integer.getInteger("javadoc.bench.appointments", 100_000);
+    private static final int POOL_MAX = Integer.getInteger("javadoc.bench.poolMax", 8);
+
+    private interface Operation {
+        void run(DeskClient client, Random random) throws Exception;
+    }
+
+    private static class Mix {
+        final String name;
+        final int weight;
+        final Operation operation;
+        final List<Long> nanos = Collections.synchronizedList(new ArrayList<>());
+
+        Mix(String name, int weight, Operation operation) {
+            this.name = name;
+            this.weight = weight;
+            this.operation = operation;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int desks = args.length > 0 ? Integer.parseInt(args[0]) : 40;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        String url = System.getProperty("javadoc.bench.url", Main.DB_URL.replace("databaseName=JavaDoc;", "databaseName=" + NAME + ";"));
+        String masterUrl = System.getProperty("javadoc.bench.masterUrl", Main.DB_URL.replace("databaseName=JavaDoc;", "databaseName=master;"));
+        Path schema = Paths.get(System.getProperty("javadoc.bench.schema", "JavaDoc.sql"));
+
+        Class.forName("com.microsoft.sqlserver.jdbc.SQLServerDriver");
+        new BenchDatabase(masterUrl, url, NAME, schema).prepare(APPOINTMENTS);
+        int doctors = BenchDatabase.doctorsFor(APPOINTMENTS);
+        int clients = BenchDatabase.clientsFor(APPOINTMENTS);
+
+        try (ConnectionPool pool = new ConnectionPool(url, 2, POOL_MAX, 60_000, 10_000)) {
+            ReferenceCache cache = new ReferenceCache(pool, 32, 300_000);
+            PeopleIndex clientIndex = PeopleIndex.clients(pool);
+            PeopleIndex doctorIndex = PeopleIndex.doctors(pool);
+            ScheduleIndex scheduleIndex = new ScheduleIndex(pool);
+            clientIndex.load();
+            doctorIndex.load();
+            scheduleIndex.load();
+
+            try (DeskServer server = new DeskServer(pool, cache, clientIndex, doctorIndex, scheduleIndex, POOL_MAX, 0)) {
+                server.start();
+                DeskClient client = new DeskClient("http://localhost:" + server.getPort());
+                List<Mix> mix = mix(doctors, clients);
+                Map<String, AtomicLong> errors = new ConcurrentHashMap<>();
+
+                System.out.printf("%d desks for %d s against %,d appointments, pool max %d%n", desks, seconds, APPOINTMENTS, POOL_MAX);
+                long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+                long started = System.nanoTime();
+                try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                    for (int desk = 0; desk < desks; desk++) {
+                        Random random = new Random(desk);
+                        executor.submit(() -> {
+                            while (System.nanoTime() < deadline) {
+                                Mix op = pick(mix, random);
+                                long opStarted = System.nanoTime();
+                                try {
+                                    op.operation.run(client, random);
+                                    op.nanos.add(System.nanoTime() - opStarted);
+                                } catch (DeskClient.HttpStatusException e) {
+                                    errors.computeIfAbsent(op.name + " " + e.getStatus(), k -> new AtomicLong()).incrementAndGet();
+                                } catch (Exception e) {
+                                    errors.computeIfAbsent(op.name + " " + e.getClass().getSimpleName(), k -> new AtomicLong()).incrementAndGet();
+                                }
+                            }
+                            return null;
+                        });
+                    }
+                } // waits for every desk
+                double elapsed = (System.nanoTime() - started) / 1e9;
+
+                System.out.printf("%n%-24s %10s %10s %10s %10s%n", "operation", "ops", "ops/s", "p50 ms", "p99 ms");
+                long total = 0;
+                for (Mix op : mix) {
+                    long[] nanos = op.nanos.stream().mapToLong(Long::longValue).sorted().toArray();
+                    total += nanos.length;
+                    System.out.printf(Locale.ROOT, "%-24s %10d %10.1f %10.2f %10.2f%n", op.name, nanos.length, nanos.length / elapsed,
+                            percentile(nanos, 0.50), percentile(nanos, 0.99));
+                }
+                System.out.printf(Locale.ROOT, "%-24s %10d %10.1f%n", "total", total, total / elapsed);
+                errors.forEach((key, count) -> System.out.println("error " + key + ": " + count));
+                System.out.println(pool);
+                System.out.println(client.get("stats"));
+            }
+        }
+    }
+
+    // weights roughly as a reception desk works: typing names far more often than anything else
+    private static List<Mix> mix(int doctors, int clients) {
+        return List.of(
+                new Mix("lookup.clients", 35, (c, r) -> c.get("clients/lookup?q=" + DeskClient.encode("client" + (1 + r.nextInt(clients)) / 10) + "&limit=10")),
+                new Mix("lookup.doctors", 15, (c, r) -> c.get("doctors/lookup?q=" + DeskClient.encode("last" + (1 + r.nextInt(doctors))) + "&limit=10")),
+                new Mix("appointments.doctor", 15, (c, r) -> c.get("appointments?doctorId=" + (1 + r.nextInt(doctors)))),
+                new Mix("clients.page", 10, (c, r) -> c.get("clients?registeredFrom=" + LocalDate.now().minusDays(r.nextInt(5 * 365)))),
+                new Mix("doctors.search", 10, (c, r) -> c.get("doctors?specializationId=" + (1 + r.nextInt(20)) + "&minExp=" + r.nextInt(20))),
+                new Mix("freeSlots", 5, (c, r) -> c.get("appointments/free-slots?doctorId=" + (1 + r.nextInt(doctors)) + "&count=5")),
+                // far enough ahead not to touch the seeded rows; a 409 means two desks picked the same slot
+                new Mix("book+cancel", 10, (c, r) -> {
+                    LocalDateTime date = LocalDateTime.now().plusYears(2).withSecond(0).withNano(0).plusMinutes(30L * r.nextInt(100_000));
+                    Map<String, Object> booking = new HashMap<>();
+                    booking.put("doctorId", 1 + r.nextInt(doctors));
+                    booking.put("clientId", 1 + r.nextInt(clients));
+                    booking.put("date", date);
+                    booking.put("durationMinutes", 30);
+                    booking.put("reason", "Load test");
+                    Map<?, ?> created = (Map<?, ?>) c.post("appointments", booking);
+                    c.delete("appointments/" + created.get("id"));
+                }));
+    }
+
+    private static Mix pick(List<Mix> mix, Random random) {
+        int total = mix.stream().mapToInt(op -> op.weight).sum();
+        int at = random.nextInt(total);
+        for (Mix op : mix) {
+            at -= op.weight;
+            if (at < 0) return op;
+        }
+        return mix.get(mix.size() - 1);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)] / 1e6;
+    }
+}
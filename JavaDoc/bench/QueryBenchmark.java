@@ -0,0 +1,235 @@
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+// Headless benchmarks for the frames' data-access paths: the same Query objects, SQL and row mappers the
+// frames use, run through ConnectionPool without any Swing. For each data size (appointments) the scratch
+// database is seeded, every benchmark is warmed up and then timed op by op. Reports throughput, latency
+// percentiles, allocation per op and rows per op, and saves everything as JSON for comparing runs.
+//
+//   java -cp out:src:<mssql-jdbc.jar> QueryBenchmark [sizes, default 10000,100000,1000000]
+//
+//   -Djavadoc.bench.url=...        scratch database (default: JavaDocBench on the app's server)
+//   -Djavadoc.bench.masterUrl=...  connection used to create it (default: master on the same server)
+//   -Djavadoc.bench.schema=...     path to JavaDoc.sql (default: JavaDoc.sql)
+//   -Djavadoc.bench.warmup=200 -Djavadoc.bench.iterations=1000 -Djavadoc.bench.out=bench-results
+public class QueryBenchmark {
+    private static final String NAME = "JavaDocBench";
+    private static final int WARMUP = Integer.getInteger("javadoc.bench.warmup", 200);
+    private static final int ITERATIONS = Integer.getInteger("javadoc.bench.iterations", 1000);
+
+    private interface Operation {
+        // returns the number of rows the operation produced
+        int run(DataSource dataSource, Random random) throws SQLException;
+    }
+
+    private static class Benchmark {
+        final String name;
+        final Operation operation;
+
+        Benchmark(String name, Operation operation) {
+            this.name = name;
+            this.operation = operation;
+        }
+    }
+
+    private static class Result {
+        final String benchmark;
+        final int appointments;
+        final double opsPerSecond;
+        final double p50Micros, p90Micros, p99Micros, p999Micros, maxMicros;
+        final long allocatedBytesPerOp;
+        final double rowsPerOp;
+
+        Result(String benchmark, int appointments, long[] nanos, long totalNanos, long allocatedBytes, long rows) {
+            this.benchmark = benchmark;
+            this.appointments = appointments;
+            Arrays.sort(nanos);
+            this.opsPerSecond = nanos.length * 1e9 / totalNanos;
+            this.p50Micros = percentile(nanos, 0.50);
+            this.p90Micros = percentile(nanos, 0.90);
+            this.p99Micros = percentile(nanos, 0.99);
+            this.p999Micros = percentile(nanos, 0.999);
+            this.maxMicros = nanos[nanos.length - 1] / 1000.0;
+            this.allocatedBytesPerOp = allocatedBytes / nanos.length;
+            this.rowsPerOp = (double) rows / nanos.length;
+        }
+
+        private static double percentile(long[] sorted, double p) {
+            return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)] / 1000.0;
+        }
+
+        String toJson() {
+            return String.format(Locale.ROOT,
+                    "{\"benchmark\": \"%s\", \"appointments\": %d, \"opsPerSecond\": %.2f, \"p50Micros\": %.1f, \"p90Micros\": %.1f, " +
+                    "\"p99Micros\": %.1f, \"p999Micros\": %.1f, \"maxMicros\": %.1f, \"allocatedBytesPerOp\": %d, \"rowsPerOp\": %.1f}",
+                    benchmark, appointments, opsPerSecond, p50Micros, p90Micros, p99Micros, p999Micros, maxMicros, allocatedBytesPerOp, rowsPerOp);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-28s %10d %10.1f %10.1f %10.1f %10.1f %12d %8.1f",
+                    benchmark, appointments, opsPerSecond, p50Micros, p99Micros, maxMicros, allocatedBytesPerOp, rowsPerOp);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = Arrays.stream((args.length > 0 ? args[0] : "10000,100000,1000000").split(","))
+                .mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+        String url = System.getProperty("javadoc.bench.url", Main.DB_URL.replace("databaseName=JavaDoc;", "databaseName=" + NAME + ";"));
+        String masterUrl = System.getProperty("javadoc.bench.masterUrl", Main.DB_URL.replace("databaseName=JavaDoc;", "databaseName=master;"));
+        Path schema = Paths.get(System.getProperty("javadoc.bench.schema", "JavaDoc.sql"));
+        Path outDir = Paths.get(System.getProperty("javadoc.bench.out", "bench-results"));
+
+        Class.forName("com.microsoft.sqlserver.jdbc.SQLServerDriver");
+        BenchDatabase database = new BenchDatabase(masterUrl, url, NAME, schema);
+
+        List<Result> results = new ArrayList<>();
+        for (int size : sizes) {
+            database.prepare(size);
+            try (ConnectionPool pool = new ConnectionPool(database.getUrl(), 1, 1, 60_000, 10_000)) {
+                SpecializationIndex specializationIndex = new SpecializationIndex(pool);
+                long started = System.nanoTime();
+                specializationIndex.load();
+                System.out.printf("Built %s for %,d appointments in %d ms%n", specializationIndex, size, (System.nanoTime() - started) / 1_000_000);
+
+                for (Benchmark benchmark : benchmarks(size, specializationIndex)) {
+                    Result result = measure(benchmark, pool, size);
+                    System.out.println(result);
+                    results.add(result);
+                }
+            }
+        }
+
+        Path file = write(outDir, results);
+        System.out.println();
+        System.out.printf("%-28s %10s %10s %10s %10s %10s %12s %8s%n", "benchmark", "appts", "ops/s", "p50 us", "p99 us", "max us", "alloc B/op", "rows/op");
+        results.forEach(System.out::println);
+        System.out.println("Results written to " + file);
+    }
+
+    // the operations behind Reset and Search in the three frames; "clients of a specialization" both through
+    // the bitmap index and through the SQL semi-join it replaces, as a first page and as the full id list
+    private static List<Benchmark> benchmarks(int appointments, SpecializationIndex specializationIndex) {
+        int doctors = BenchDatabase.doctorsFor(appointments);
+        int clients = BenchDatabase.clientsFor(appointments);
+        int days = Math.max(1, (appointments / doctors) * 30 / (24 * 60));
+        LocalDate firstDay = LocalDate.now().minusDays(days / 2);
+
+        return List.of(
+                new Benchmark("loadAppointments", (ds, r) ->
+                        PagedTableModel.loadFirstPage(ds, AppointmentsFrame.allAppointments(), appointments())),
+                new Benchmark("searchAppointments.doctor", (ds, r) ->
+                        PagedTableModel.loadFirstPage(ds, AppointmentsFrame.searchQuery(1 + r.nextInt(doctors), null, null), appointments())),
+                new Benchmark("searchAppointments.client", (ds, r) ->
+                        PagedTableModel.loadFirstPage(ds, AppointmentsFrame.searchQuery(null, 1 + r.nextInt(clients), null), appointments())),
+                new Benchmark("searchAppointments.day", (ds, r) ->
+                        PagedTableModel.loadFirstPage(ds, AppointmentsFrame.searchQuery(null, null, firstDay.plusDays(r.nextInt(days))), appointments())),
+                new Benchmark("loadClients", (ds, r) ->
+                        PagedTableModel.loadFirstPage(ds, ClientsFrame.allClients(), clients())),
+                new Benchmark("searchClients.registeredFrom", (ds, r) ->
+                        PagedTableModel.loadFirstPage(ds, ClientsFrame.searchQuery(
+                                LocalDateTime.now().minusDays(r.nextInt(5 * 365)).format(DateTimeFormatter.ISO_LOCAL_DATE)), clients())),
+                new Benchmark("searchClients.spec.join", (ds, r) ->
+                        PagedTableModel.loadFirstPage(ds, ClientsFrame.searchQuery(null, 1 + r.nextInt(20), null), clients())),
+                new Benchmark("searchClients.spec.bitmap", (ds, r) -> {
+                    int specializationId = 1 + r.nextInt(20);
+                    return PagedTableModel.loadFirstPage(ds, ClientsFrame.searchQuery(null, specializationId,
+                            specializationIndex.getClients(specializationId)), clients());
+                }),
+                new Benchmark("clientIds.spec.join", (ds, r) -> {
+                    PagedTableModel.Query query = ClientsFrame.searchQuery(null, 1 + r.nextInt(20), null);
+                    return countRows(ds, "SELECT client_id FROM Clients WHERE " + query.where, query.params);
+                }),
+                new Benchmark("clientIds.spec.bitmap", (ds, r) -> specializationIndex.getClients(1 + r.nextInt(20)).cardinality()),
+                new Benchmark("loadDoctors", (ds, r) -> loadAll(ds, DoctorsFrame.SELECT_DOCTORS, List.of())),
+                new Benchmark("searchDoctors", (ds, r) -> {
+                    List<Object> params = new ArrayList<>();
+                    String query = DoctorsFrame.searchQuery(1 + r.nextInt(20), r.nextInt(20), null, params);
+                    return loadAll(ds, query, params);
+                }));
+    }
+
+    // a fresh schema per op, like every setQuery, so dictionaries do not carry over between ops
+    private static ColumnBlock.Schema appointments() {
+        return new ColumnBlock.Schema(AppointmentsFrame.APPOINTMENT_TYPES);
+    }
+
+    private static ColumnBlock.Schema clients() {
+        return new ColumnBlock.Schema(ClientsFrame.CLIENT_TYPES);
+    }
+
+    // what TableLoader's worker does for DoctorsFrame, minus publishing to the EDT
+    private static int loadAll(DataSource dataSource, String query, List<Object> params) throws SQLException {
+        int rows = 0;
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement statement = conn.prepareStatement(query)) {
+            for (int i = 0; i < params.size(); i++) statement.setObject(i + 1, params.get(i));
+            statement.setFetchSize(TableLoader.CHUNK_SIZE);
+            try (ResultSet res = statement.executeQuery()) {
+                while (res.next()) {
+                    DoctorsFrame.mapDoctor(res);
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static int countRows(DataSource dataSource, String query, List<Object> params) throws SQLException {
+        int rows = 0;
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement statement = conn.prepareStatement(query)) {
+            for (int i = 0; i < params.size(); i++) statement.setObject(i + 1, params.get(i));
+            try (ResultSet res = statement.executeQuery()) {
+                while (res.next()) rows++;
+            }
+        }
+        return rows;
+    }
+
+    private static Result measure(Benchmark benchmark, DataSource dataSource, int appointments) throws SQLException {
+        Random random = new Random(7);
+        for (int i = 0; i < WARMUP; i++) benchmark.operation.run(dataSource, random);
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long[] nanos = new long[ITERATIONS];
+        long rows = 0;
+
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long started = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            long opStarted = System.nanoTime();
+            rows += benchmark.operation.run(dataSource, random);
+            nanos[i] = System.nanoTime() - opStarted;
+        }
+        long total = System.nanoTime() - started;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+        return new Result(benchmark.name, appointments, nanos, total, allocated, rows);
+    }
+
+    private static Path write(Path outDir, List<Result> results) throws IOException {
+        Files.createDirectories(outDir);
+        Path file = outDir.resolve("bench-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("{\n  \"jdk\": \"" + System.getProperty("java.version") + "\",\n");
+            out.write("  \"warmup\": " + WARMUP + ",\n  \"iterations\": " + ITERATIONS + ",\n  \"results\": [\n");
+            for (int i = 0; i < results.size(); i++) {
+                out.write("    " + results.get(i).toJson() + (i < results.size() - 1 ? ",\n" : "\n"));
+            }
+            out.write("  ]\n}\n");
+        }
+        return file;
+    }
+}
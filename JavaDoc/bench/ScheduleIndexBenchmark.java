@@ -0,0 +1,49 @@
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Random;
+
+// Synthetic benchmark of ScheduleIndex without a database: N appointments spread over the horizon, then
+// timed conflict checks and free-slot searches.
+//
+//   java -cp out ScheduleIndexBenchmark [appointments, default 1000000] [doctors, default 500]
+public class ScheduleIndexBenchmark {
+    private static final int SLOT_MINUTES = 15;
+
+    public static void main(String[] args) {
+        int appointments = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int doctorCount = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+
+        ScheduleIndex index = ScheduleIndex.empty();
+        LocalDateTime horizonStart = LocalDate.now().minusDays(1).atStartOfDay();
+        int slots = (ScheduleIndex.HORIZON_DAYS + 1) * 24 * 60 / SLOT_MINUTES;
+
+        Random random = new Random(42);
+        long started = System.nanoTime();
+        for (int id = 1; id <= appointments; id++) {
+            LocalDateTime start = horizonStart.plusMinutes((long) random.nextInt(slots) * SLOT_MINUTES);
+            index.put(id, random.nextInt(doctorCount), start, ScheduleIndex.DEFAULT_DURATION_MINUTES);
+        }
+        System.out.printf("Indexed %,d appointments for %,d doctors in %d ms%n",
+                appointments, doctorCount, (System.nanoTime() - started) / 1_000_000);
+
+        int checks = 200_000;
+        long conflicts = 0;
+        for (int round = 0; round < 2; round++) { // first round warms up
+            started = System.nanoTime();
+            for (int i = 0; i < checks; i++) {
+                LocalDateTime start = horizonStart.plusMinutes((long) random.nextInt(slots) * SLOT_MINUTES);
+                conflicts += index.findConflicts(random.nextInt(doctorCount), start, ScheduleIndex.DEFAULT_DURATION_MINUTES).size();
+            }
+        }
+        System.out.printf("findConflicts: %.2f us/op (%,d conflicts found)%n", (System.nanoTime() - started) / 1000.0 / checks, conflicts);
+
+        int searches = 2_000;
+        for (int round = 0; round < 2; round++) {
+            started = System.nanoTime();
+            for (int i = 0; i < searches; i++) {
+                index.nextFreeSlots(random.nextInt(doctorCount), LocalDateTime.now(), ScheduleIndex.DEFAULT_DURATION_MINUTES, 10);
+            }
+        }
+        System.out.printf("nextFreeSlots(10): %.2f us/op%n", (System.nanoTime() - started) / 1000.0 / searches);
+    }
+}
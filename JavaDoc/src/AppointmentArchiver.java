@@ -0,0 +1,81 @@
+import javax.sql.DataSource;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Background job that keeps Appointments small: completed appointments older than the horizon are moved to
+// AppointmentsArchive, one short transaction per batch (the ArchiveAppointments procedure, V005), with a pause
+// between batches so the desks' own statements get their turn.
+public class AppointmentArchiver implements AutoCloseable {
+    // -Djavadoc.archive.horizonDays=...; searches for days before the horizon also read the archive
+    static final int HORIZON_DAYS = Integer.getInteger("javadoc.archive.horizonDays", 365);
+
+    private static final long BATCH_PAUSE_MS = 50;
+
+    private final DataSource dataSource;
+    private final int batchSize;
+    private final ScheduledExecutorService scheduler;
+    private final long intervalMillis;
+
+    public AppointmentArchiver(DataSource dataSource, int batchSize, long intervalMillis) {
+        this.dataSource = dataSource;
+        this.batchSize = batchSize;
+        this.intervalMillis = intervalMillis;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "appointment-archiver");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // the moved rows reach every desk's caches through the change feed (ChangeFeed.ARCHIVED)
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::run, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // true if appointments on that day may already have been moved to the archive
+    static boolean mayBeArchived(LocalDate day) {
+        return day.isBefore(horizon());
+    }
+
+    private static LocalDate horizon() {
+        return LocalDate.now().minusDays(HORIZON_DAYS);
+    }
+
+    private void run() {
+        Timestamp cutoff = Timestamp.valueOf(horizon().atStartOfDay());
+        int total = 0;
+        try {
+            int moved;
+            do {
+                moved = archiveBatch(cutoff);
+                total += moved;
+                if (moved == batchSize) Thread.sleep(BATCH_PAUSE_MS);
+            } while (moved == batchSize && !Thread.currentThread().isInterrupted());
+        } catch (SQLException e) {
+            // whatever was committed stays archived, the rest is picked up by the next run
+            System.err.println("Appointment archival failed: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (total > 0) System.out.println("Archived " + total + " appointments completed before " + cutoff.toLocalDateTime().toLocalDate());
+    }
+
+    private int archiveBatch(Timestamp cutoff) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             CallableStatement statement = conn.prepareCall("{call ArchiveAppointments(?, ?)}")) {
+            statement.setTimestamp(1, cutoff);
+            statement.setInt(2, batchSize);
+            try (ResultSet res = statement.executeQuery()) {
+                return res.next() ? res.getInt(1) : 0;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
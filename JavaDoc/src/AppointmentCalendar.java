@@ -0,0 +1,262 @@
+import javax.sql.DataSource;
+import java.sql.*;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// One doctor's appointments a week at a time, for CalendarFrame. Each week is a range seek on
+// IX_Appointments_doctor_date (V003), and the archive is only read for weeks past the archival horizon.
+// Recently viewed and prefetched weeks are kept, least recently used going first, so paging between
+// neighbouring weeks does not wait for the database. Writes drop the weeks they touch.
+public class AppointmentCalendar implements ChangeFeed.Listener, BookingWriter.Listener {
+    private static final String COLUMNS = "a.appointment_id, a.client_id, a.[date], a.duration_minutes, a.reason, a.[status], " +
+                                          "c.first_name + ' ' + c.last_name AS client ";
+    private static final String SELECT_WEEK = "SELECT " + COLUMNS +
+            "FROM Appointments a JOIN Clients c ON a.client_id = c.client_id " +
+            "WHERE a.doctor_id = ? AND a.[date] >= ? AND a.[date] < ? ";
+    // the week again on IX_AppointmentsArchive_doctor_date (V005)
+    private static final String SELECT_ARCHIVED_WEEK = SELECT_WEEK + "UNION ALL SELECT " + COLUMNS +
+            "FROM AppointmentsArchive a JOIN Clients c ON a.client_id = c.client_id " +
+            "WHERE a.doctor_id = ? AND a.[date] >= ? AND a.[date] < ? ";
+
+    public static class Entry {
+        private final int id;
+        private final int clientId;
+        private final LocalDateTime start;
+        private final int durationMinutes;
+        private final String client;
+        private final String reason;
+        private final String status;
+
+        Entry(int id, int clientId, LocalDateTime start, int durationMinutes, String client, String reason, String status) {
+            this.id = id;
+            this.clientId = clientId;
+            this.start = start;
+            this.durationMinutes = durationMinutes;
+            this.client = client;
+            this.reason = reason;
+            this.status = status;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public LocalDateTime getStart() {
+            return start;
+        }
+
+        public LocalDateTime getEnd() {
+            return start.plusMinutes(durationMinutes);
+        }
+
+        public String getClient() {
+            return client;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+    }
+
+    private static class Week {
+        final int doctorId;
+        final LocalDate monday;
+
+        Week(int doctorId, LocalDate monday) {
+            this.doctorId = doctorId;
+            this.monday = monday;
+        }
+
+        boolean contains(LocalDate day) {
+            return !day.isBefore(monday) && day.isBefore(monday.plusDays(7));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Week)) return false;
+            Week other = (Week) o;
+            return doctorId == other.doctorId && monday.equals(other.monday);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * doctorId + monday.hashCode();
+        }
+    }
+
+    private final DataSource dataSource;
+    private final Map<Week, List<Entry>> weeks;
+    private final Map<Week, CompletableFuture<List<Entry>>> loading = new HashMap<>();
+    // per week being loaded, the invalidations since its query started; the result is tested against them
+    private final Map<Week, List<Affected>> missed = new HashMap<>();
+    private final ExecutorService executor;
+    private long hits;
+    private long misses;
+    private long prefetches;
+    private long discarded; // loads dropped because a write touched their week while they ran
+
+    public AppointmentCalendar(DataSource dataSource, int maxWeeks, int threads) {
+        this.dataSource = dataSource;
+        this.weeks = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Week, List<Entry>> eldest) {
+                return size() > maxWeeks;
+            }
+        };
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "appointment-calendar");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static LocalDate mondayOf(LocalDate day) {
+        return day.minusDays(day.getDayOfWeek().getValue() - DayOfWeek.MONDAY.getValue());
+    }
+
+    // the cached week, or null; never touches the database, so the frame can call it on the EDT
+    public synchronized List<Entry> getCached(int doctorId, LocalDate monday) {
+        List<Entry> week = weeks.get(new Week(doctorId, monday));
+        if (week != null) hits++;
+        return week;
+    }
+
+    // the week's appointments by start time; a week already being prefetched is not queried twice
+    public synchronized CompletableFuture<List<Entry>> get(int doctorId, LocalDate monday) {
+        Week week = new Week(doctorId, monday);
+        List<Entry> cached = weeks.get(week);
+        if (cached != null) {
+            hits++;
+            return CompletableFuture.completedFuture(cached);
+        }
+        misses++;
+        return load(week);
+    }
+
+    // loads the week in the background unless it is cached or already on its way
+    public synchronized void prefetch(int doctorId, LocalDate monday) {
+        Week week = new Week(doctorId, monday);
+        if (weeks.containsKey(week) || loading.containsKey(week)) return;
+        prefetches++;
+        load(week);
+    }
+
+    private CompletableFuture<List<Entry>> load(Week week) {
+        CompletableFuture<List<Entry>> pending = loading.get(week);
+        if (pending != null) return pending;
+
+        missed.put(week, new ArrayList<>());
+        CompletableFuture<List<Entry>> future = CompletableFuture.supplyAsync(() -> {
+            try {
+                return query(week);
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+        loading.put(week, future);
+        future.whenComplete((entries, error) -> {
+            synchronized (this) {
+                loading.remove(week);
+                List<Affected> during = missed.remove(week);
+                // a write to this week while loading may be missing from it; writes elsewhere do not matter
+                if (error == null) {
+                    if (during.stream().anyMatch(affected -> affected.test(week, entries))) discarded++;
+                    else weeks.put(week, entries);
+                }
+            }
+        });
+        return future;
+    }
+
+    private List<Entry> query(Week week) throws SQLException {
+        boolean archived = AppointmentArchiver.mayBeArchived(week.monday);
+        List<Entry> entries = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement statement = conn.prepareStatement(archived ? SELECT_ARCHIVED_WEEK : SELECT_WEEK)) {
+            for (int i = 0; i < (archived ? 2 : 1); i++) {
+                statement.setInt(3 * i + 1, week.doctorId);
+                statement.setTimestamp(3 * i + 2, Timestamp.valueOf(week.monday.atStartOfDay()));
+                statement.setTimestamp(3 * i + 3, Timestamp.valueOf(week.monday.plusDays(7).atStartOfDay()));
+            }
+            try (ResultSet res = statement.executeQuery()) {
+                while (res.next()) {
+                    entries.add(new Entry(res.getInt("appointment_id"), res.getInt("client_id"), res.getTimestamp("date").toLocalDateTime(),
+                            res.getInt("duration_minutes"), res.getString("client"), res.getString("reason"), res.getString("status")));
+                }
+            }
+        }
+        entries.sort(Comparator.comparing(Entry::getStart).thenComparingInt(Entry::getId));
+        return Collections.unmodifiableList(entries);
+    }
+
+    private interface Affected {
+        boolean test(Week week, List<Entry> entries);
+    }
+
+    private synchronized void invalidate(Affected affected) {
+        for (List<Affected> during : missed.values()) during.add(affected);
+        weeks.entrySet().removeIf(entry -> affected.test(entry.getKey(), entry.getValue()));
+    }
+
+    private static boolean holds(List<Entry> entries, Collection<Integer> ids) {
+        for (Entry entry : entries) {
+            if (ids.contains(entry.id)) return true;
+        }
+        return false;
+    }
+
+    // A changed appointment drops its doctor's week of its day, plus wherever it was before. Client changes
+    // drop the weeks showing them.
+    @Override
+    public void onChanges(ChangeFeed.Changes changes) {
+        Map<Integer, Object[]> upserts = changes.getUpserts(ChangeFeed.APPOINTMENTS);
+        Set<Integer> deletes = changes.getDeletes(ChangeFeed.APPOINTMENTS);
+        if (!upserts.isEmpty() || !deletes.isEmpty()) {
+            Set<Week> weeks = new HashSet<>();
+            for (Object[] row : upserts.values()) {
+                if (row[2] == null) continue;
+                LocalDate day = ((Timestamp) row[2]).toLocalDateTime().toLocalDate();
+                weeks.add(new Week((Integer) row[5], mondayOf(day)));
+            }
+            Set<Integer> ids = new HashSet<>(upserts.keySet());
+            ids.addAll(deletes);
+            invalidate((week, entries) -> holds(entries, ids) || weeks.contains(week));
+        }
+
+        Set<Integer> clients = new HashSet<>(changes.getUpserts(ChangeFeed.CLIENTS).keySet());
+        clients.addAll(changes.getDeletes(ChangeFeed.CLIENTS));
+        if (!clients.isEmpty()) {
+            invalidate((week, entries) -> entries.stream().anyMatch(entry -> clients.contains(entry.clientId)));
+        }
+    }
+
+    @Override
+    public void onFlushed(BookingJournal.Booking booking, int appointmentId) {
+        invalidate((week, entries) -> week.doctorId == booking.getDoctorId() && week.contains(booking.getDate().toLocalDate()));
+    }
+
+    // deleted by this desk
+    public void removed(Collection<Integer> appointmentIds) {
+        if (!appointmentIds.isEmpty()) invalidate((week, entries) -> holds(entries, appointmentIds));
+    }
+
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("AppointmentCalendar[weeks=%d, hits=%d, misses=%d, prefetches=%d, discarded=%d, hitRatio=%.1f%%]",
+                weeks.size(), hits, misses, prefetches, discarded, hits + misses == 0 ? 0 : 100.0 * hits / (hits + misses));
+    }
+}
@@ -0,0 +1,133 @@
+import javax.sql.DataSource;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// A recurring series of appointments (weekly physiotherapy for 12 weeks): the rule is expanded in memory,
+// every occurrence is checked for a double booking in one query, and the ones the desk accepts are
+// submitted to BookingWriter together, so they share one journal force and one commit.
+public class AppointmentSeries {
+    public static final int MAX_OCCURRENCES = 104;
+
+    public enum Frequency {
+        DAILY, WEEKLY, MONTHLY
+    }
+
+    // Occurrences overlapping another non-cancelled appointment of the doctor, for all of them at once: the
+    // starts travel as one list parameter, each one a seek on IX_Appointments_doctor_date bounded the same
+    // way as TR_Appointments_NoOverlap. ISO 8601 starts convert to DATETIME whatever the session's language.
+    private static final String CONFLICTS =
+            "SELECT s.[value] FROM STRING_SPLIT(?, ',') s " +
+            "WHERE EXISTS (SELECT 1 FROM Appointments a " +
+            "WHERE a.doctor_id = ? AND a.[status] <> 'cancelled' " +
+            "AND a.[date] > DATEADD(minute, -" + ScheduleIndex.MAX_DURATION_MINUTES + ", CAST(s.[value] AS DATETIME)) " +
+            "AND a.[date] < DATEADD(minute, ?, CAST(s.[value] AS DATETIME)) " +
+            "AND DATEADD(minute, a.duration_minutes, a.[date]) > CAST(s.[value] AS DATETIME))";
+    private static final DateTimeFormatter ISO = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    public static class Occurrence {
+        private final LocalDateTime start;
+        private final boolean conflict;
+
+        Occurrence(LocalDateTime start, boolean conflict) {
+            this.start = start;
+            this.conflict = conflict;
+        }
+
+        public LocalDateTime getStart() {
+            return start;
+        }
+
+        public boolean isConflict() {
+            return conflict;
+        }
+    }
+
+    private final ListItem doctor;
+    private final ListItem client;
+    private final LocalDateTime first;
+    private final int durationMinutes;
+    private final String reason;
+    private final Frequency frequency;
+    private final int interval;
+    private final int count;
+
+    public AppointmentSeries(ListItem doctor, ListItem client, LocalDateTime first, int durationMinutes, String reason,
+                             Frequency frequency, int interval, int count) {
+        if (interval < 1 || count < 1 || count > MAX_OCCURRENCES) {
+            throw new IllegalArgumentException("A series repeats every 1 or more periods, 1 to " + MAX_OCCURRENCES + " times.");
+        }
+        this.doctor = doctor;
+        this.client = client;
+        this.first = first;
+        this.durationMinutes = durationMinutes;
+        this.reason = reason;
+        this.frequency = frequency;
+        this.interval = interval;
+        this.count = count;
+    }
+
+    // monthly occurrences count from the first one: a series on the 31st takes the last day of shorter months
+    public List<LocalDateTime> expand() {
+        List<LocalDateTime> starts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long periods = (long) i * interval;
+            switch (frequency) {
+                case DAILY:
+                    starts.add(first.plusDays(periods));
+                    break;
+                case WEEKLY:
+                    starts.add(first.plusWeeks(periods));
+                    break;
+                default:
+                    starts.add(first.plusMonths(periods));
+            }
+        }
+        return starts;
+    }
+
+    // Every occurrence with whether it is free. The query sees what is in the database; the schedule index
+    // adds this desk's bookings that are still in the journal.
+    public List<Occurrence> check(DataSource dataSource, ScheduleIndex scheduleIndex) throws SQLException {
+        List<LocalDateTime> starts = expand();
+        List<String> values = new ArrayList<>(starts.size());
+        for (LocalDateTime start : starts) values.add(start.format(ISO));
+
+        Set<LocalDateTime> taken = new HashSet<>();
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement statement = conn.prepareStatement(CONFLICTS)) {
+            statement.setString(1, String.join(",", values));
+            statement.setInt(2, doctor.getId());
+            statement.setInt(3, durationMinutes);
+            try (ResultSet res = statement.executeQuery()) {
+                while (res.next()) taken.add(LocalDateTime.parse(res.getString(1), ISO));
+            }
+        }
+
+        List<Occurrence> occurrences = new ArrayList<>(starts.size());
+        for (LocalDateTime start : starts) {
+            boolean conflict = taken.contains(start) || !scheduleIndex.findConflicts(doctor.getId(), start, durationMinutes).isEmpty();
+            occurrences.add(new Occurrence(start, conflict));
+        }
+        return occurrences;
+    }
+
+    // the accepted occurrences as bookings for BookingWriter.submitAll
+    public List<BookingJournal.Booking> bookings(List<LocalDateTime> accepted) {
+        List<BookingJournal.Booking> bookings = new ArrayList<>(accepted.size());
+        for (LocalDateTime start : accepted) bookings.add(new BookingJournal.Booking(doctor, client, start, durationMinutes, reason));
+        return bookings;
+    }
+
+    public ListItem getDoctor() {
+        return doctor;
+    }
+
+    public int getDurationMinutes() {
+        return durationMinutes;
+    }
+}
@@ -1,25 +1,123 @@
+import javax.sql.DataSource;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
 import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class AppointmentsFrame {
-    private Connection conn;
+    private DataSource dataSource;
+    private ReferenceCache referenceCache;
+    private SearchCache searchCache;
+    private AppointmentCalendar calendar;
+    private SpecializationIndex specializationIndex;
     private JFrame frame;
     private JTable table;
-    private DefaultTableModel model;
-    private JComboBox<String> cmbDoctors;
-    private JComboBox<String> cmbClients;
+    private PagedTableModel model;
+    private IndexedRowSorter sorter;
+    private TypeAheadField txtDoctor;
+    private TypeAheadField txtClient;
     private JTextField dateInput;
+    private JProgressBar progress;
+    private ChangeFeed changeFeed;
+    private ScheduleIndex scheduleIndex;
+    private PeopleDirectory clientIndex;
+    private PeopleDirectory doctorIndex;
+    private BookingWriter bookingWriter;
+    private DeskClient server; // on a desk attached to a DeskServer, which then serves every read and write
+    private JLabel pendingLabel;
+    private final ChangeFeed.Listener changeListener =
+            changes -> model.applyChanges(changes.getUpserts(ChangeFeed.APPOINTMENTS), changes.getDeletes(ChangeFeed.APPOINTMENTS));
+    private final BookingWriter.Listener bookingListener = new BookingWriter.Listener() {
+        @Override
+        public void onAccepted(BookingJournal.Booking booking) {
+            updatePending();
+        }
+
+        // as an upsert, so it does not matter whether the change feed delivered the row first
+        @Override
+        public void onFlushed(BookingJournal.Booking booking, int appointmentId) {
+            if (booking.getDoctorName() != null) {
+                Object[] row = {booking.getDoctorName(), booking.getClientName(), Timestamp.valueOf(booking.getDate()), booking.getReason(), "scheduled",
+                                booking.getDoctorId(), booking.getClientId()};
+                model.applyChanges(Map.of(appointmentId, row), List.of());
+            }
+            updatePending();
+        }
+
+        @Override
+        public void onRejected(BookingJournal.Booking booking, SQLException e) {
+            updatePending();
+        }
+    };
+
+    private static final int DELETE_CHUNK_SIZE = 1000;
+    private static final int FREE_SLOT_COUNT = 10;
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd[ HH:mm[:ss]]");
+    private static final DateTimeFormatter OCCURRENCE = DateTimeFormatter.ofPattern("EEE yyyy-MM-dd HH:mm");
+
+    static final String APPOINTMENT_COLUMNS = "d.first_name + ' ' + d.last_name AS doctor, " +
+                                                      "c.first_name + ' ' + c.last_name AS client, " +
+                                                      "a.date, a.reason, a.status";
+    // the frame's rows: the columns above, then the doctor and client ids the local filters match on (hidden)
+    static final String APPOINTMENT_ROW_COLUMNS = APPOINTMENT_COLUMNS + ", a.doctor_id, a.client_id";
+    // doctor, client and status repeat across rows and are dictionary-encoded
+    static final ColumnBlock.Type[] APPOINTMENT_TYPES = {ColumnBlock.Type.CATEGORY, ColumnBlock.Type.CATEGORY,
+                                                         ColumnBlock.Type.TIMESTAMP, ColumnBlock.Type.TEXT, ColumnBlock.Type.CATEGORY,
+                                                         ColumnBlock.Type.INT, ColumnBlock.Type.INT};
+    private static final int DOCTOR_ID_COLUMN = 5; // hidden, in the model only
+    private static final int CLIENT_ID_COLUMN = 6;
+    static final String APPOINTMENT_TABLES = "Appointments a " +
+                                                     "JOIN Doctors d ON a.doctor_id = d.doctor_id " +
+                                                     "JOIN Clients c ON a.client_id = c.client_id";
+    // the live table plus AppointmentsArchive, for searches that go back past the archival horizon
+    static final String ARCHIVED_APPOINTMENT_TABLES =
+            "(SELECT appointment_id, client_id, doctor_id, [date], reason, [status] FROM Appointments " +
+            "UNION ALL SELECT appointment_id, client_id, doctor_id, [date], reason, [status] FROM AppointmentsArchive) a " +
+            "JOIN Doctors d ON a.doctor_id = d.doctor_id " +
+            "JOIN Clients c ON a.client_id = c.client_id";
 
-    public AppointmentsFrame(Connection conn) {
-        this.conn = conn;
+    // Attached to a server: everything but the directories is null. Bookings go straight to the server
+    // instead of the journal, and the import, calendar and series, which it does not offer, are left out.
+    public AppointmentsFrame(DataSource dataSource, ReferenceCache referenceCache, SearchCache searchCache, AppointmentCalendar calendar,
+                             SpecializationIndex specializationIndex, ChangeFeed changeFeed, ScheduleIndex scheduleIndex,
+                             PeopleDirectory clientIndex, PeopleDirectory doctorIndex, BookingWriter bookingWriter, DeskClient server) {
+        this.dataSource = dataSource;
+        this.referenceCache = referenceCache;
+        this.searchCache = searchCache;
+        this.calendar = calendar;
+        this.specializationIndex = specializationIndex;
+        this.changeFeed = changeFeed;
+        this.scheduleIndex = scheduleIndex;
+        this.clientIndex = clientIndex;
+        this.doctorIndex = doctorIndex;
+        this.bookingWriter = bookingWriter;
+        this.server = server;
         frame = new JFrame("Appointments Management");
         frame.setSize(700, 450);
         frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
 
-        model = new DefaultTableModel(new String[]{"Doctor", "Client", "Date", "Reason", "Status"}, 0);
+        progress = new JProgressBar();
+        String[] columns = {"Doctor", "Client", "Date", "Reason", "Status", "Doctor ID", "Client ID"};
+        model = server == null
+                ? new PagedTableModel(dataSource, columns, new ColumnBlock.Schema(APPOINTMENT_TYPES), progress, e -> showErrorDialog("Failed to load appointments.", e))
+                : new PagedTableModel(server, columns, new ColumnBlock.Schema(APPOINTMENT_TYPES), progress, e -> showErrorDialog("Failed to load appointments.", e));
         table = new JTable(model);
+        table.removeColumn(table.getColumnModel().getColumn(CLIENT_ID_COLUMN));
+        table.removeColumn(table.getColumnModel().getColumn(DOCTOR_ID_COLUMN));
+        sorter = new IndexedRowSorter(model);
+        table.setRowSorter(sorter);
         loadAppointments();
 
         JPanel panel = new JPanel(new FlowLayout());
@@ -27,189 +125,553 @@ public class AppointmentsFrame {
         JButton btnDelete = new JButton("Delete");
         JButton btnSearch = new JButton("Search");
         JButton btnReset = new JButton("Reset");
+        JButton btnImport = new JButton("Import");
+        JButton btnFreeSlots = new JButton("Free Slots");
+        JButton btnCalendar = new JButton("Calendar");
+        JButton btnSeries = new JButton("Series");
 
         panel.add(btnAdd);
         panel.add(btnDelete);
         panel.add(btnSearch);
         panel.add(btnReset);
+        if (server == null) panel.add(btnImport);
+        panel.add(btnFreeSlots);
+        if (server == null) {
+            panel.add(btnCalendar);
+            panel.add(btnSeries);
+        }
+        panel.add(progress);
+        pendingLabel = new JLabel();
+        panel.add(pendingLabel);
+        updatePending();
 
-        btnAdd.addActionListener(e -> openAddAppointmentDialog());
+        btnAdd.addActionListener(e -> openAddAppointmentDialog(null, null));
         btnDelete.addActionListener(e -> deleteAppointment());
         btnSearch.addActionListener(e -> searchAppointments());
         btnReset.addActionListener(e -> loadAppointments());
+        btnImport.addActionListener(e -> CsvImporter.showImportDialog(frame, CsvImporter.Kind.APPOINTMENTS, dataSource, referenceCache, this::loadAppointments));
+        btnFreeSlots.addActionListener(e -> openFreeSlotsDialog());
+        // opens on the doctor picked in the search field, if any
+        btnCalendar.addActionListener(e -> new CalendarFrame(calendar, doctorIndex, changeFeed, bookingWriter, txtDoctor.getSelectedItem()));
+        btnSeries.addActionListener(e -> openSeriesDialog());
 
         JPanel searchPanel = new JPanel(new FlowLayout());
 
+        // type-ahead instead of combo boxes listing every doctor and client; empty means any
         searchPanel.add(new JLabel("Doctor:"));
-        cmbDoctors = new JComboBox<>();
-        loadDoctors(cmbDoctors);
-        searchPanel.add(cmbDoctors);
+        txtDoctor = new TypeAheadField(doctorIndex, 10);
+        txtDoctor.addSelectionListener(this::filterLocally);
+        searchPanel.add(txtDoctor);
 
         searchPanel.add(new JLabel("Client:"));
-        cmbClients = new JComboBox<>();
-        loadClients(cmbClients);
-        searchPanel.add(cmbClients);
+        txtClient = new TypeAheadField(clientIndex, 10);
+        txtClient.addSelectionListener(this::filterLocally);
+        searchPanel.add(txtClient);
 
         searchPanel.add(new JLabel("Date:"));
         dateInput = new JTextField(5);
+        dateInput.getDocument().addDocumentListener(IndexedRowSorter.onEdit(this::filterLocally));
         searchPanel.add(dateInput);
 
         frame.add(new JScrollPane(table), BorderLayout.CENTER);
         frame.add(searchPanel, BorderLayout.NORTH);
         frame.add(panel, BorderLayout.SOUTH);
         frame.setVisible(true);
+
+        if (changeFeed == null) return; // an attached desk sees other desks' edits on Reset
+        changeFeed.addListener(changeListener);
+        bookingWriter.addListener(bookingListener);
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                changeFeed.removeListener(changeListener);
+                bookingWriter.removeListener(bookingListener);
+            }
+        });
+    }
+
+    // bookings accepted but not in the database yet, e.g. while the server is unreachable
+    private void updatePending() {
+        if (bookingWriter == null) return;
+        int depth = bookingWriter.getDepth();
+        pendingLabel.setText(depth == 0 ? "" : depth + " pending");
     }
 
     private void loadAppointments() {
-        model.setRowCount(0);
-        try (Statement statement = conn.createStatement();
-             ResultSet res = statement.executeQuery("SELECT d.first_name + ' ' + d.last_name AS doctor, c.first_name + ' ' + c.last_name AS client, " +
-                                                        "a.date, a.reason, a.status FROM Appointments a JOIN Doctors d " +
-                                                        "ON a.doctor_id = d.doctor_id JOIN Clients c ON a.client_id = c.client_id"))
-        {
-            while (res.next()) {
-                model.addRow(new Object[] {
-                        res.getString("doctor"),
-                        res.getString("client"),
-                        res.getTimestamp("date"),
-                        res.getString("reason"),
-                        res.getString("status")
-                });
-            }
-        } catch (SQLException e) {
-            showErrorDialog("Failed to load appointments.", e);
-        }
-    }
-
-    private void openAddAppointmentDialog() {
-        JTextField txtDate = new JTextField(10);
-        JTextField txtReason = new JTextField(20);
-        JComboBox<String> cmbDoctor = new JComboBox<>();
-        JComboBox<String> cmbClient = new JComboBox<>();
+        sorter.setFilters(List.of());
+        model.setQuery(allAppointments());
+    }
 
-        loadDoctors(cmbDoctor);
-        loadClients(cmbClient);
+    static PagedTableModel.Query allAppointments() {
+        return new PagedTableModel.Query(APPOINTMENT_ROW_COLUMNS, APPOINTMENT_TABLES, "a.appointment_id").servedAt("appointments");
+    }
 
-        JPanel panel = new JPanel(new GridLayout(4, 2));
+    static Object[] mapAppointment(ResultSet res) throws SQLException {
+        return new Object[] {
+                res.getString("doctor"),
+                res.getString("client"),
+                res.getTimestamp("date"),
+                res.getString("reason"),
+                res.getString("status"),
+                res.getInt("doctor_id"),
+                res.getInt("client_id")
+        };
+    }
+
+    // doctor and start are prefilled when booking a slot picked in the free slots dialog
+    private void openAddAppointmentDialog(ListItem selectedDoctor, LocalDateTime start) {
+        JTextField txtDate = new JTextField(start == null ? "" : start.format(DATE_TIME), 10);
+        JTextField txtDuration = new JTextField(String.valueOf(ScheduleIndex.DEFAULT_DURATION_MINUTES), 5);
+        JTextField txtReason = new JTextField(20);
+        TypeAheadField txtDoctor = new TypeAheadField(doctorIndex, 20);
+        TypeAheadField txtClient = new TypeAheadField(clientIndex, 20);
+        txtDoctor.setSelectedItem(selectedDoctor);
+
+        JPanel panel = new JPanel(new GridLayout(5, 2));
         panel.add(new JLabel("Doctor:"));
-        panel.add(cmbDoctor);
+        panel.add(txtDoctor);
         panel.add(new JLabel("Client:"));
-        panel.add(cmbClient);
-        panel.add(new JLabel("Date:"));
+        panel.add(txtClient);
+        panel.add(new JLabel("Date (yyyy-mm-dd hh:mm):"));
         panel.add(txtDate);
+        panel.add(new JLabel("Duration (min):"));
+        panel.add(txtDuration);
         panel.add(new JLabel("Reason:"));
         panel.add(txtReason);
 
         int result = JOptionPane.showConfirmDialog(null, panel, "Add Appointment", JOptionPane.OK_CANCEL_OPTION);
         if (result == JOptionPane.OK_OPTION) {
-            addAppointment((String) cmbDoctor.getSelectedItem(), (String) cmbClient.getSelectedItem(), txtDate.getText().trim(), txtReason.getText().trim());
+            ListItem doctor = txtDoctor.getSelectedItem();
+            ListItem client = txtClient.getSelectedItem();
+            if (doctor == null || client == null) {
+                JOptionPane.showMessageDialog(frame, "Pick a doctor and a client from the suggestions.");
+                return;
+            }
+
+            LocalDateTime date;
+            int duration;
+            try {
+                String text = txtDate.getText().trim();
+                date = text.length() <= 10 ? LocalDate.parse(text).atStartOfDay() : LocalDateTime.parse(text, DATE_TIME);
+                duration = Integer.parseInt(txtDuration.getText().trim());
+            } catch (DateTimeParseException | NumberFormatException e) {
+                JOptionPane.showMessageDialog(frame, "Enter the date as yyyy-mm-dd hh:mm and the duration in minutes.", "Warning", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+            if (duration < 5 || duration > ScheduleIndex.MAX_DURATION_MINUTES) {
+                JOptionPane.showMessageDialog(frame, "Duration must be between 5 and " + ScheduleIndex.MAX_DURATION_MINUTES + " minutes.", "Warning", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+            addAppointment(doctor, client, date, duration, txtReason.getText().trim());
+        }
+    }
+
+    private void addAppointment(ListItem doctor, ListItem client, LocalDateTime date, int duration, String reason) {
+        if (server != null) {
+            addOnServer(doctor, client, date, duration, reason);
+            return;
+        }
+        // cheap check against the in-memory index first, the trigger still decides under concurrency
+        if (!scheduleIndex.findConflicts(doctor.getId(), date, duration).isEmpty()) {
+            showDoubleBooked(doctor, date, duration);
+            return;
+        }
+
+        // journaled and done; the row shows up once BookingWriter has inserted it, a refusal is reported by Main
+        try {
+            bookingWriter.submit(new BookingJournal.Booking(doctor, client, date, duration, reason));
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(frame, e.getMessage(), "Warning", JOptionPane.WARNING_MESSAGE);
+        } catch (IOException e) {
+            showErrorDialog("Failed to save appointment.", e);
+        }
+    }
+
+    // booked by the server right away; its overlap trigger answers 409 for a taken time
+    private void addOnServer(ListItem doctor, ListItem client, LocalDateTime date, int duration, String reason) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("doctorId", doctor.getId());
+        body.put("clientId", client.getId());
+        body.put("date", date);
+        body.put("durationMinutes", duration);
+        body.put("reason", reason);
+        AsyncQuery.run(() -> (Integer) DeskClient.value(((Map<?, ?>) server.post("appointments", body)).get("id"), ColumnBlock.Type.INT), id -> {
+            Object[] row = {doctor.getName(), client.getName(), Timestamp.valueOf(date), reason, "scheduled", doctor.getId(), client.getId()};
+            model.applyChanges(Map.of(id, row), List.of());
+        }, e -> {
+            if (e instanceof DeskClient.HttpStatusException && ((DeskClient.HttpStatusException) e).getStatus() == 409) {
+                JOptionPane.showMessageDialog(frame, e.getMessage(), "Double Booking", JOptionPane.WARNING_MESSAGE);
+            } else {
+                showErrorDialog("Failed to save appointment.", e);
+            }
+        });
+    }
+
+    // a recurring series: checked as a whole, then the desk picks which occurrences to book
+    private void openSeriesDialog() {
+        TypeAheadField txtDoctor = new TypeAheadField(doctorIndex, 20);
+        TypeAheadField txtClient = new TypeAheadField(clientIndex, 20);
+        txtDoctor.setSelectedItem(this.txtDoctor.getSelectedItem());
+        JTextField txtDate = new JTextField(10);
+        JTextField txtDuration = new JTextField(String.valueOf(ScheduleIndex.DEFAULT_DURATION_MINUTES), 5);
+        JTextField txtReason = new JTextField(20);
+        JComboBox<AppointmentSeries.Frequency> cmbFrequency = new JComboBox<>(AppointmentSeries.Frequency.values());
+        cmbFrequency.setSelectedItem(AppointmentSeries.Frequency.WEEKLY);
+        JTextField txtInterval = new JTextField("1", 3);
+        JTextField txtCount = new JTextField("12", 3);
+
+        JPanel panel = new JPanel(new GridLayout(8, 2));
+        panel.add(new JLabel("Doctor:"));
+        panel.add(txtDoctor);
+        panel.add(new JLabel("Client:"));
+        panel.add(txtClient);
+        panel.add(new JLabel("First (yyyy-mm-dd hh:mm):"));
+        panel.add(txtDate);
+        panel.add(new JLabel("Duration (min):"));
+        panel.add(txtDuration);
+        panel.add(new JLabel("Reason:"));
+        panel.add(txtReason);
+        panel.add(new JLabel("Repeat:"));
+        panel.add(cmbFrequency);
+        panel.add(new JLabel("Every (days, weeks or months):"));
+        panel.add(txtInterval);
+        panel.add(new JLabel("Occurrences:"));
+        panel.add(txtCount);
+
+        if (JOptionPane.showConfirmDialog(frame, panel, "Add Appointment Series", JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) return;
+        ListItem doctor = txtDoctor.getSelectedItem();
+        ListItem client = txtClient.getSelectedItem();
+        if (doctor == null || client == null) {
+            JOptionPane.showMessageDialog(frame, "Pick a doctor and a client from the suggestions.");
+            return;
+        }
+
+        AppointmentSeries series;
+        try {
+            String text = txtDate.getText().trim();
+            LocalDateTime first = text.length() <= 10 ? LocalDate.parse(text).atStartOfDay() : LocalDateTime.parse(text, DATE_TIME);
+            int duration = Integer.parseInt(txtDuration.getText().trim());
+            if (duration < 5 || duration > ScheduleIndex.MAX_DURATION_MINUTES) {
+                JOptionPane.showMessageDialog(frame, "Duration must be between 5 and " + ScheduleIndex.MAX_DURATION_MINUTES + " minutes.", "Warning", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+            series = new AppointmentSeries(doctor, client, first, duration, txtReason.getText().trim(),
+                    (AppointmentSeries.Frequency) cmbFrequency.getSelectedItem(),
+                    Integer.parseInt(txtInterval.getText().trim()), Integer.parseInt(txtCount.getText().trim()));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            JOptionPane.showMessageDialog(frame, "Enter the first date as yyyy-mm-dd hh:mm and the other fields as numbers.", "Warning", JOptionPane.WARNING_MESSAGE);
+            return;
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(frame, e.getMessage(), "Warning", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        AsyncQuery.run(() -> series.check(dataSource, scheduleIndex),
+                occurrences -> confirmSeries(series, occurrences),
+                e -> showErrorDialog("Failed to check the series.", e));
+    }
+
+    // one row per occurrence; free ones are ticked, a taken one shows the doctor's next free time instead
+    private void confirmSeries(AppointmentSeries series, List<AppointmentSeries.Occurrence> occurrences) {
+        DefaultTableModel rows = new DefaultTableModel(new Object[]{"Book", "Date", "Status"}, 0) {
+            @Override
+            public Class<?> getColumnClass(int column) {
+                return column == 0 ? Boolean.class : String.class;
+            }
+
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return column == 0;
+            }
+        };
+        int free = 0;
+        for (AppointmentSeries.Occurrence occurrence : occurrences) {
+            String status = "free";
+            if (occurrence.isConflict()) {
+                List<ScheduleIndex.Slot> next = scheduleIndex.nextFreeSlots(series.getDoctor().getId(), occurrence.getStart(),
+                        series.getDurationMinutes(), 1);
+                status = next.isEmpty() ? "taken" : "taken, next free " + next.get(0);
+            } else {
+                free++;
+            }
+            rows.addRow(new Object[]{!occurrence.isConflict(), occurrence.getStart().format(OCCURRENCE), status});
         }
+
+        JTable table = new JTable(rows);
+        table.getColumnModel().getColumn(0).setMaxWidth(50);
+        JScrollPane pane = new JScrollPane(table);
+        pane.setPreferredSize(new Dimension(480, Math.min(400, 40 + 20 * occurrences.size())));
+        String title = "Book Series - " + free + " of " + occurrences.size() + " free";
+        if (JOptionPane.showConfirmDialog(frame, pane, title, JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) return;
+        if (table.isEditing()) table.getCellEditor().stopCellEditing();
+
+        List<LocalDateTime> accepted = new ArrayList<>();
+        for (int i = 0; i < occurrences.size(); i++) {
+            if (Boolean.TRUE.equals(rows.getValueAt(i, 0))) accepted.add(occurrences.get(i).getStart());
+        }
+        // a ticked occurrence that is taken after all is refused by the trigger and reported by Main
+        try {
+            bookingWriter.submitAll(series.bookings(accepted));
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(frame, e.getMessage(), "Warning", JOptionPane.WARNING_MESSAGE);
+        } catch (IOException e) {
+            showErrorDialog("Failed to save the series.", e);
+        }
+    }
+
+    private void showDoubleBooked(ListItem doctor, LocalDateTime date, int duration) {
+        StringBuilder message = new StringBuilder(doctor.getName() + " already has an appointment at that time.");
+        List<ScheduleIndex.Slot> slots = scheduleIndex.nextFreeSlots(doctor.getId(), date, duration, 3);
+        if (!slots.isEmpty()) message.append("\nNext free:");
+        for (ScheduleIndex.Slot slot : slots) message.append("\n  ").append(slot);
+        JOptionPane.showMessageDialog(frame, message.toString(), "Double Booking", JOptionPane.WARNING_MESSAGE);
     }
 
-    private void addAppointment(String doctor, String client, String date, String reason) {
-        try (PreparedStatement stmt = conn.prepareStatement(
-                "INSERT INTO Appointments (doctor_id, client_id, date, reason, status) VALUES ((SELECT doctor_id FROM Doctors WHERE first_name + ' ' + last_name = ?), (SELECT client_id FROM Clients WHERE first_name + ' ' + last_name = ?), ?, ?, 'scheduled')")) {
-            stmt.setString(1, doctor);
-            stmt.setString(2, client);
-            stmt.setString(3, date);
-            stmt.setString(4, reason);
-            stmt.executeUpdate();
-            loadAppointments();
-        } catch (SQLException e) {
-            showErrorDialog("Failed to add appointment.", e);
+    // next free slots for one doctor, or for every doctor of a specialization when no doctor is picked
+    private void openFreeSlotsDialog() {
+        if (server == null && !scheduleIndex.isLoaded()) {
+            JOptionPane.showMessageDialog(frame, "The schedule is still loading, try again in a moment.");
+            return;
+        }
+
+        TypeAheadField txtDoctor = new TypeAheadField(doctorIndex, 20);
+        JComboBox<ListItem> cmbSpecialization = new JComboBox<>();
+        AsyncQuery.Task<List<ListItem>> specializations = server != null ? server::getSpecializations : referenceCache::getSpecializations;
+        AsyncQuery.run(specializations,
+                names -> names.forEach(cmbSpecialization::addItem),
+                e -> showErrorDialog("Failed to load specializations.", e));
+        JTextField txtFrom = new JTextField(LocalDate.now().toString(), 10);
+        JTextField txtDuration = new JTextField(String.valueOf(ScheduleIndex.DEFAULT_DURATION_MINUTES), 5);
+
+        JPanel panel = new JPanel(new GridLayout(4, 2));
+        panel.add(new JLabel("Doctor:"));
+        panel.add(txtDoctor);
+        panel.add(new JLabel("or Specialization:"));
+        panel.add(cmbSpecialization);
+        panel.add(new JLabel("From (yyyy-mm-dd):"));
+        panel.add(txtFrom);
+        panel.add(new JLabel("Duration (min):"));
+        panel.add(txtDuration);
+
+        if (JOptionPane.showConfirmDialog(frame, panel, "Find Free Slots", JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) return;
+
+        LocalDateTime from;
+        int duration;
+        try {
+            from = LocalDate.parse(txtFrom.getText().trim()).atStartOfDay();
+            duration = Integer.parseInt(txtDuration.getText().trim());
+        } catch (DateTimeParseException | NumberFormatException e) {
+            JOptionPane.showMessageDialog(frame, "Enter the date as yyyy-mm-dd and the duration in minutes.", "Warning", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        if (duration < 5 || duration > ScheduleIndex.MAX_DURATION_MINUTES) {
+            JOptionPane.showMessageDialog(frame, "Duration must be between 5 and " + ScheduleIndex.MAX_DURATION_MINUTES + " minutes.", "Warning", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        ListItem doctor = txtDoctor.getSelectedItem();
+        ListItem specialization = (ListItem) cmbSpecialization.getSelectedItem();
+        if (doctor == null && specialization == null) {
+            JOptionPane.showMessageDialog(frame, "Select a doctor or a specialization.");
+            return;
+        }
+        if (server != null) {
+            String path = "appointments/free-slots?" + (doctor != null ? "doctorId=" + doctor.getId() : "specializationId=" + specialization.getId()) +
+                          "&from=" + DeskClient.encode(from.toString()) + "&duration=" + duration + "&count=" + FREE_SLOT_COUNT;
+            AsyncQuery.run(() -> (List<?>) server.get(path), this::showServedSlots, e -> showErrorDialog("Failed to find free slots.", e));
+        } else if (doctor != null) {
+            showFreeSlots(scheduleIndex.nextFreeSlots(doctor.getId(), from, duration, FREE_SLOT_COUNT), Map.of());
+        } else {
+            showFreeSlots(scheduleIndex.nextFreeSlotsForSpecialization(specialization.getId(), from, duration, FREE_SLOT_COUNT), Map.of());
+        }
+    }
+
+    // the server's answer names the doctors too
+    private void showServedSlots(List<?> served) {
+        List<ScheduleIndex.Slot> slots = new ArrayList<>();
+        Map<Integer, String> names = new HashMap<>();
+        for (Object entry : served) {
+            Map<?, ?> slot = (Map<?, ?>) entry;
+            int doctorId = ((Number) slot.get("doctorId")).intValue();
+            slots.add(new ScheduleIndex.Slot(doctorId, LocalDateTime.parse((String) slot.get("start")), LocalDateTime.parse((String) slot.get("end"))));
+            if (slot.get("doctor") != null) names.put(doctorId, (String) slot.get("doctor"));
+        }
+        showFreeSlots(slots, names);
+    }
+
+    // names: doctors known beyond the directory
+    private void showFreeSlots(List<ScheduleIndex.Slot> slots, Map<Integer, String> names) {
+        if (slots.isEmpty()) {
+            JOptionPane.showMessageDialog(frame, "No free slots in the schedule horizon.");
+            return;
+        }
+
+        DefaultListModel<String> labels = new DefaultListModel<>();
+        List<ListItem> doctors = new ArrayList<>();
+        for (ScheduleIndex.Slot slot : slots) {
+            String name = names.containsKey(slot.getDoctorId()) ? names.get(slot.getDoctorId()) : doctorIndex.getName(slot.getDoctorId());
+            ListItem owner = new ListItem(slot.getDoctorId(), name != null ? name : "Doctor #" + slot.getDoctorId());
+            doctors.add(owner);
+            labels.addElement(owner.getName() + ": " + slot);
+        }
+        JList<String> list = new JList<>(labels);
+        list.setSelectedIndex(0);
+        if (JOptionPane.showConfirmDialog(frame, new JScrollPane(list), "Free Slots - book the selected one?", JOptionPane.OK_CANCEL_OPTION) == JOptionPane.OK_OPTION
+                && list.getSelectedIndex() >= 0) {
+            openAddAppointmentDialog(doctors.get(list.getSelectedIndex()), slots.get(list.getSelectedIndex()).getStart());
         }
     }
 
     private void deleteAppointment() {
-        int row = table.getSelectedRow();
-        if (row == -1) {
+        int[] rows = table.getSelectedRows();
+        if (rows.length == 0) {
             JOptionPane.showMessageDialog(frame, "Select an appointment to delete.");
             return;
         }
 
-        String doctor = (String) model.getValueAt(row, 0);
-        String client = (String) model.getValueAt(row, 1);
-        String date = model.getValueAt(row, 2).toString();
+        List<Integer> ids = new ArrayList<>();
+        for (int row : rows) {
+            Object id = model.getRowKey(table.convertRowIndexToModel(row));
+            if (id != null) ids.add((Integer) id);
+        }
+
+        AsyncQuery.run(() -> {
+            if (server != null) {
+                List<Integer> deleted = new ArrayList<>();
+                for (int id : ids) {
+                    if (server.deleteIfPresent("appointments/" + id)) deleted.add(id);
+                }
+                return deleted;
+            }
+            try (Connection conn = dataSource.getConnection()) {
+                return deleteAppointments(conn, ids);
+            }
+        }, deleted -> {
+            // an attached desk keeps none of these, the server updates its own schedule index
+            if (server == null) {
+                deleted.forEach(scheduleIndex::remove);
+                searchCache.rowsDeleted(ChangeFeed.APPOINTMENTS, deleted);
+                calendar.removed(deleted);
+                specializationIndex.removed(deleted);
+            }
+            if (!model.removeRows(deleted)) model.refresh();
+        }, e -> showErrorDialog("Failed to delete appointment.", e));
+    }
 
-        try (PreparedStatement stmt = conn.prepareStatement(
-                "DELETE FROM Appointments WHERE doctor_id = (SELECT doctor_id FROM Doctors WHERE first_name + ' ' + last_name = ?) AND client_id = (SELECT client_id FROM Clients WHERE first_name + ' ' + last_name = ?) AND date = ?")) {
-            stmt.setString(1, doctor);
-            stmt.setString(2, client);
-            stmt.setString(3, date);
-            stmt.executeUpdate();
-            loadAppointments();
-        } catch (SQLException e) {
-            showErrorDialog("Failed to delete appointment.", e);
+    // one DELETE ... IN (...) per chunk, kept under SQL Server's 2100 parameter limit; returns the ids actually deleted
+    static List<Integer> deleteAppointments(Connection conn, List<Integer> ids) throws SQLException {
+        List<Integer> deleted = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += DELETE_CHUNK_SIZE) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + DELETE_CHUNK_SIZE, ids.size()));
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "DELETE FROM Appointments OUTPUT DELETED.appointment_id WHERE appointment_id IN (" + placeholders + ")")) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    stmt.setInt(i + 1, chunk.get(i));
+                }
+                try (ResultSet res = stmt.executeQuery()) {
+                    while (res.next()) {
+                        deleted.add(res.getInt(1));
+                    }
+                }
+            }
         }
+        return deleted;
     }
 
     private void searchAppointments() {
-        String doctor = (String) cmbDoctors.getSelectedItem();
-        String client = (String) cmbClients.getSelectedItem();
+        ListItem doctor = txtDoctor.getSelectedItem();
+        ListItem client = txtClient.getSelectedItem();
         String date = dateInput.getText().trim();
 
-        boolean hasDocFilter = doctor != null && !doctor.equals("Any");
-        boolean hasClientFilter = client != null && !client.equals("Any");
+        boolean hasDocFilter = doctor != null;
+        boolean hasClientFilter = client != null;
         boolean hasDateFilter = !date.isEmpty();
 
+        if ((!hasDocFilter && !txtDoctor.getText().isBlank()) || (!hasClientFilter && !txtClient.getText().isBlank())) {
+            JOptionPane.showMessageDialog(frame, "Pick the doctor or client from the suggestions.", "Warning", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
         if (!hasDocFilter && !hasClientFilter && !hasDateFilter) {
             JOptionPane.showMessageDialog(frame, "Enter at least one search criteria!", "Warning", JOptionPane.WARNING_MESSAGE);
             return;
         }
 
-        String queryStr = "SELECT d.first_name + ' ' + d.last_name AS doctor, " +
-                          "c.first_name + ' ' + c.last_name AS client, " +
-                          "a.date, a.reason, a.status FROM Appointments a " +
-                          "JOIN Doctors d ON a.doctor_id = d.doctor_id " +
-                          "JOIN Clients c ON a.client_id = c.client_id WHERE 1=1 ";
+        LocalDate day = null;
+        if (hasDateFilter) {
+            try {
+                day = LocalDate.parse(date);
+            } catch (DateTimeParseException e) {
+                JOptionPane.showMessageDialog(frame, "Enter the date as yyyy-mm-dd.", "Warning", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+        }
 
-        if (hasDocFilter) queryStr += "AND (d.first_name + ' ' + d.last_name) LIKE ? ";
-        if (hasClientFilter) queryStr += "AND (c.first_name + ' ' + c.last_name) LIKE ? ";
-        if (hasDateFilter) queryStr += "AND CAST(a.date AS DATE) = ? ";
-        queryStr += "ORDER BY a.date DESC";
+        if (filterLocally()) return;
+        sorter.setFilters(List.of());
+        Integer doctorId = hasDocFilter ? doctor.getId() : null;
+        Integer clientId = hasClientFilter ? client.getId() : null;
+        model.setQuery(searchQuery(doctorId, clientId, day), searchCache, searchCriteria(doctorId, clientId, day));
+    }
 
-        try (PreparedStatement statement = conn.prepareStatement(queryStr)) {
-            int index = 1;
-            if (hasDocFilter) statement.setString(index++, "%" + doctor + "%");
-            if (hasClientFilter) statement.setString(index++, "%" + client + "%");
-            if (hasDateFilter) statement.setString(index, date);
+    // Applies the search fields to the loaded rows when those are the whole table and fit in memory,
+    // so the filter follows every change without a query. Returns false if only the server can answer.
+    private boolean filterLocally() {
+        if (sorter == null || !model.isUnfiltered() || !sorter.canFilterLocally()) return false;
 
-            ResultSet res = statement.executeQuery();
-            model.setRowCount(0);
-            while (res.next()) {
-                model.addRow(new Object[] {
-                        res.getString("doctor"),
-                        res.getString("client"),
-                        res.getString("date"),
-                        res.getString("reason"),
-                        res.getString("status")
-                });
+        ListItem doctor = txtDoctor.getSelectedItem();
+        ListItem client = txtClient.getSelectedItem();
+        List<IndexedRowSorter.Filter> filters = new ArrayList<>();
+        // by id: two people can share a name
+        if (doctor != null) filters.add(IndexedRowSorter.Filter.equalTo(DOCTOR_ID_COLUMN, doctor.getId()));
+        if (client != null) filters.add(IndexedRowSorter.Filter.equalTo(CLIENT_ID_COLUMN, client.getId()));
+        try {
+            String date = dateInput.getText().trim();
+            if (!date.isEmpty()) {
+                LocalDate day = LocalDate.parse(date);
+                if (AppointmentArchiver.mayBeArchived(day)) return false; // the loaded rows are the live table only
+                filters.add(IndexedRowSorter.Filter.between(2, Timestamp.valueOf(day.atStartOfDay()), Timestamp.valueOf(day.plusDays(1).atStartOfDay())));
             }
-        } catch (SQLException e) {
-            showErrorDialog("Failed to search appointments.", e);
+        } catch (DateTimeParseException e) {
+            return true; // still typing, keep the current filter
         }
+        sorter.setFilters(filters);
+        return true;
     }
 
-    private void loadDoctors(JComboBox<String> cmbDoctor) {
-        try (Statement statement = conn.createStatement();
-             ResultSet rs = statement.executeQuery("SELECT first_name + ' ' + last_name AS name FROM Doctors")) {
-            while (rs.next()) {
-                cmbDoctor.addItem(rs.getString("name"));
-            }
-        } catch (SQLException e) {
-            showErrorDialog("Failed to load doctors.", e);
-        }
+    static SearchCache.Criteria searchCriteria(Integer doctorId, Integer clientId, LocalDate day) {
+        Map<String, Object> equal = new HashMap<>();
+        equal.put(SearchCache.DOCTOR, doctorId);
+        equal.put(SearchCache.CLIENT, clientId);
+        equal.put(SearchCache.DAY, day);
+        return new SearchCache.Criteria(ChangeFeed.APPOINTMENTS, equal, Map.of());
     }
 
-    private void loadClients(JComboBox<String> cmbClient) {
-        try (Statement statement = conn.createStatement();
-             ResultSet res = statement.executeQuery("SELECT first_name + ' ' + last_name AS name FROM Clients")) {
-            while (res.next()) {
-                cmbClient.addItem(res.getString("name"));
-            }
-        } catch (SQLException e) {
-            showErrorDialog("Failed to load clients.", e);
+    // null arguments are not filtered on; only a day before the archival horizon reads the archive too
+    static PagedTableModel.Query searchQuery(Integer doctorId, Integer clientId, LocalDate day) {
+        // plain column comparisons so the (doctor_id, date) / (client_id, date) indexes can seek
+        String where = "1=1 ";
+        List<Object> params = new ArrayList<>();
+
+        if (doctorId != null) {
+            where += "AND a.doctor_id = ? ";
+            params.add(doctorId);
         }
+        if (clientId != null) {
+            where += "AND a.client_id = ? ";
+            params.add(clientId);
+        }
+        if (day != null) {
+            where += "AND a.date >= ? AND a.date < ? ";
+            params.add(Timestamp.valueOf(day.atStartOfDay()));
+            params.add(Timestamp.valueOf(day.plusDays(1).atStartOfDay()));
+        }
+
+        String from = day != null && AppointmentArchiver.mayBeArchived(day) ? ARCHIVED_APPOINTMENT_TABLES : APPOINTMENT_TABLES;
+        return new PagedTableModel.Query(APPOINTMENT_ROW_COLUMNS, from, where, params, "a.appointment_id", "a.date", true)
+                .servedAt("appointments?doctorId=" + (doctorId == null ? "" : doctorId) + "&clientId=" + (clientId == null ? "" : clientId) +
+                          "&day=" + (day == null ? "" : day));
     }
 
     private void showErrorDialog(String message, Exception e) {
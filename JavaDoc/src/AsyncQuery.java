@@ -0,0 +1,33 @@
+import javax.swing.*;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+// Small helper for one-off database reads (combo boxes etc.) that must not block the EDT.
+public class AsyncQuery {
+    public interface Task<T> {
+        T call() throws Exception;
+    }
+
+    public static <T> SwingWorker<T, Void> run(Task<T> task, Consumer<T> onDone, Consumer<Exception> onError) {
+        SwingWorker<T, Void> worker = new SwingWorker<>() {
+            @Override
+            protected T doInBackground() throws Exception {
+                return task.call();
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled()) return;
+                try {
+                    onDone.accept(get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    onError.accept(e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+                }
+            }
+        };
+        worker.execute();
+        return worker;
+    }
+}
@@ -0,0 +1,331 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+
+// Local, memory-mapped log of bookings that are not in the database yet. A booking is forced to disk
+// before append returns, so it survives a crash or a dead SQL Server link; BookingWriter drains it.
+//
+// Layout: a header (magic, offset and sequence number of the oldest unflushed record), then records of
+// [payload length][CRC32C of sequence + payload][sequence][payload]. On open the records are scanned from
+// the header's offset for as long as the checksums hold and the sequence numbers count up by one, which
+// stops at a torn last write as well as at old records left behind a reset or compaction. Each payload
+// ends with how many records of the same appendAll follow it, and a group is only recovered once its
+// last record is found, so a series torn by a crash is dropped as a whole.
+//
+// One process owns the file: a second desk started with the same path fails to open it rather than
+// replaying and truncating bookings the first one is still writing.
+public class BookingJournal implements AutoCloseable {
+    private static final int MAGIC = 0x4A424B31; // "JBK1"
+    private static final int HEADER_SIZE = 32;
+    private static final int FLUSHED_OFFSET_AT = 8;
+    private static final int FLUSHED_SEQ_AT = 16;
+    private static final int RECORD_HEADER_SIZE = 16;
+
+    public static class Booking {
+        private final UUID key;
+        private final int doctorId;
+        private final int clientId;
+        private final LocalDateTime date;
+        private final int durationMinutes;
+        private final String reason;
+        // for display only, not journaled: null for bookings recovered from an earlier run
+        private final String doctorName;
+        private final String clientName;
+        private final long acceptedAt; // System.nanoTime(), for the flush latency
+        private long seq;
+        private int end; // journal offset just past the record
+        private int following; // records of the same appendAll after this one
+
+        public Booking(ListItem doctor, ListItem client, LocalDateTime date, int durationMinutes, String reason) {
+            this(UUID.randomUUID(), doctor.getId(), client.getId(), date, durationMinutes, reason, doctor.getName(), client.getName());
+        }
+
+        private Booking(UUID key, int doctorId, int clientId, LocalDateTime date, int durationMinutes, String reason,
+                        String doctorName, String clientName) {
+            this.key = key;
+            this.doctorId = doctorId;
+            this.clientId = clientId;
+            this.date = date;
+            this.durationMinutes = durationMinutes;
+            this.reason = reason;
+            this.doctorName = doctorName;
+            this.clientName = clientName;
+            this.acceptedAt = System.nanoTime();
+        }
+
+        public UUID getKey() {
+            return key;
+        }
+
+        public int getDoctorId() {
+            return doctorId;
+        }
+
+        public int getClientId() {
+            return clientId;
+        }
+
+        public LocalDateTime getDate() {
+            return date;
+        }
+
+        public int getDurationMinutes() {
+            return durationMinutes;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        public String getDoctorName() {
+            return doctorName;
+        }
+
+        public String getClientName() {
+            return clientName;
+        }
+
+        long getAcceptedAt() {
+            return acceptedAt;
+        }
+
+        // stands in for the appointment id (in ScheduleIndex) until the booking reaches the database
+        public int getProvisionalId() {
+            return -1 - (int) seq;
+        }
+
+        @Override
+        public String toString() {
+            return (doctorName != null ? doctorName : "doctor #" + doctorId) + " with "
+                    + (clientName != null ? clientName : "client #" + clientId) + " at " + date;
+        }
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final Deque<Booking> pending = new ArrayDeque<>();
+    private int flushedOffset;
+    private long flushedSeq;
+    private int writeOffset;
+    private long nextSeq;
+
+    public BookingJournal(Path path, int sizeBytes) throws IOException {
+        if (path.getParent() != null) Files.createDirectories(path.getParent());
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean locked;
+        try {
+            locked = channel.tryLock() != null; // held until the channel is closed
+        } catch (OverlappingFileLockException e) {
+            locked = false; // already open in this process
+        }
+        if (!locked) {
+            channel.close();
+            throw new IOException("Booking journal " + path + " is in use by another desk; set javadoc.journal.path to a file of its own.");
+        }
+        capacity = (int) Math.max(sizeBytes, channel.size());
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+
+        long offset = buffer.getLong(FLUSHED_OFFSET_AT);
+        if (buffer.getInt(0) != MAGIC || offset < HEADER_SIZE || offset > capacity) {
+            buffer.putInt(0, MAGIC);
+            writeHeader(HEADER_SIZE, 0);
+        } else {
+            flushedOffset = (int) offset;
+            flushedSeq = buffer.getLong(FLUSHED_SEQ_AT);
+        }
+        recover();
+    }
+
+    private void recover() {
+        int offset = flushedOffset;
+        long seq = flushedSeq;
+        writeOffset = offset;
+        nextSeq = seq;
+        List<Booking> group = new ArrayList<>();
+        CRC32C crc = new CRC32C();
+        while (offset + RECORD_HEADER_SIZE <= capacity) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + RECORD_HEADER_SIZE + length > capacity || buffer.getLong(offset + 8) != seq) break;
+            byte[] payload = new byte[length];
+            buffer.get(offset + RECORD_HEADER_SIZE, payload);
+            if (buffer.getInt(offset + 4) != checksum(crc, seq, payload)) break;
+
+            Booking booking = decode(payload);
+            if (booking == null) {
+                System.err.println("Booking journal record " + seq + " at offset " + offset + " is corrupt; recovery stops before it.");
+                break;
+            }
+            if (!group.isEmpty() && booking.following != group.get(group.size() - 1).following - 1) break;
+            offset += RECORD_HEADER_SIZE + length;
+            booking.seq = seq++;
+            booking.end = offset;
+            group.add(booking);
+            if (booking.following == 0) {
+                pending.addAll(group);
+                group.clear();
+                writeOffset = offset;
+                nextSeq = seq;
+            }
+        }
+    }
+
+    // durable when this returns; fails if the unflushed bookings fill the file
+    public synchronized void append(Booking booking) throws IOException {
+        appendAll(List.of(booking));
+    }
+
+    // all or none of them, with one force for the lot (a recurring series); see recover()
+    public synchronized void appendAll(List<Booking> bookings) throws IOException {
+        List<byte[]> payloads = new ArrayList<>(bookings.size());
+        int size = 0;
+        for (Booking booking : bookings) {
+            byte[] payload = encode(booking);
+            payloads.add(payload);
+            size += RECORD_HEADER_SIZE + payload.length;
+        }
+        if (writeOffset + size > capacity && !compact(size)) {
+            throw new IOException("Booking journal is full, " + pending.size() + " bookings are waiting for the database.");
+        }
+
+        int start = writeOffset;
+        for (int i = 0; i < bookings.size(); i++) {
+            Booking booking = bookings.get(i);
+            byte[] payload = payloads.get(i);
+            ByteBuffer.wrap(payload).putInt(payload.length - 4, bookings.size() - 1 - i);
+            int offset = writeOffset;
+            buffer.putInt(offset + 4, checksum(new CRC32C(), nextSeq, payload));
+            buffer.putLong(offset + 8, nextSeq);
+            buffer.put(offset + RECORD_HEADER_SIZE, payload);
+            buffer.putInt(offset, payload.length);
+
+            booking.seq = nextSeq++;
+            booking.end = offset + RECORD_HEADER_SIZE + payload.length;
+            booking.following = bookings.size() - 1 - i;
+            writeOffset = booking.end;
+            pending.add(booking);
+        }
+        buffer.force(start, size); // a write torn by a crash fails the checksum on recovery
+    }
+
+    // The oldest unflushed bookings, in order, up to max but never ending inside an appendAll group:
+    // a group that does not fit waits for the next call, and one larger than max comes whole.
+    public synchronized List<Booking> peek(int max) {
+        List<Booking> bookings = new ArrayList<>(Math.min(max, pending.size()));
+        int groupStart = 0;
+        for (Booking booking : pending) {
+            boolean atGroupStart = groupStart == bookings.size();
+            if (atGroupStart && !bookings.isEmpty() && bookings.size() + booking.following + 1 > max) break;
+            bookings.add(booking);
+            if (booking.following == 0) groupStart = bookings.size();
+        }
+        return bookings.subList(0, groupStart > 0 ? groupStart : bookings.size());
+    }
+
+    // the oldest 'count' bookings are in the database (or were rejected by it)
+    public synchronized void markFlushed(int count) {
+        Booking last = null;
+        for (int i = 0; i < count; i++) last = pending.poll();
+        if (last == null) return;
+
+        if (pending.isEmpty()) {
+            // start over at the top; the old records stay behind but their sequence numbers are too low
+            writeOffset = HEADER_SIZE;
+            writeHeader(HEADER_SIZE, last.seq + 1);
+        } else {
+            writeHeader(last.end, last.seq + 1);
+        }
+    }
+
+    public synchronized int getDepth() {
+        return pending.size();
+    }
+
+    public synchronized int getPendingBytes() {
+        return writeOffset - flushedOffset;
+    }
+
+    // Moves the unflushed records to the top of the file to make room. Only done when the copy cannot
+    // overlap them: until the header is rewritten a crash recovers from the old, untouched records.
+    private boolean compact(int needed) {
+        int live = writeOffset - flushedOffset;
+        int shift = flushedOffset - HEADER_SIZE;
+        if (shift < live || HEADER_SIZE + live + needed > capacity) return false;
+
+        byte[] records = new byte[live];
+        buffer.get(flushedOffset, records);
+        buffer.put(HEADER_SIZE, records);
+        buffer.force(HEADER_SIZE, live);
+        writeHeader(HEADER_SIZE, flushedSeq);
+        writeOffset = HEADER_SIZE + live;
+        for (Booking booking : pending) booking.end -= shift;
+        return true;
+    }
+
+    private void writeHeader(int offset, long seq) {
+        buffer.putLong(FLUSHED_OFFSET_AT, offset);
+        buffer.putLong(FLUSHED_SEQ_AT, seq);
+        buffer.force(0, HEADER_SIZE);
+        flushedOffset = offset;
+        flushedSeq = seq;
+    }
+
+    private static int checksum(CRC32C crc, long seq, byte[] payload) {
+        crc.reset();
+        for (int i = 0; i < 8; i++) crc.update((int) (seq >>> (i * 8)));
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] encode(Booking booking) {
+        byte[] reason = booking.reason.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer out = ByteBuffer.allocate(44 + reason.length);
+        out.putLong(booking.key.getMostSignificantBits());
+        out.putLong(booking.key.getLeastSignificantBits());
+        out.putInt(booking.doctorId);
+        out.putInt(booking.clientId);
+        out.putLong(booking.date.toEpochSecond(ZoneOffset.UTC)); // wall-clock time, as the Appointments column
+        out.putInt(booking.durationMinutes);
+        out.putInt(reason.length);
+        out.put(reason);
+        out.putInt(0); // records following in the group, set by appendAll
+        return out.array();
+    }
+
+    // null if the payload is not exactly one encoded booking
+    private static Booking decode(byte[] payload) {
+        if (payload.length < 44) return null;
+        ByteBuffer in = ByteBuffer.wrap(payload);
+        UUID key = new UUID(in.getLong(), in.getLong());
+        int doctorId = in.getInt();
+        int clientId = in.getInt();
+        LocalDateTime date = LocalDateTime.ofEpochSecond(in.getLong(), 0, ZoneOffset.UTC);
+        int duration = in.getInt();
+        int reasonLength = in.getInt();
+        if (reasonLength != payload.length - 44) return null;
+        byte[] reason = new byte[reasonLength];
+        in.get(reason);
+        Booking booking = new Booking(key, doctorId, clientId, date, duration, new String(reason, StandardCharsets.UTF_8), null, null);
+        booking.following = in.getInt();
+        return booking;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
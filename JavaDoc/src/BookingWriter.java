@@ -0,0 +1,292 @@
+import javax.sql.DataSource;
+import javax.swing.*;
+import java.io.IOException;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Write-behind for new appointments. submit() journals the booking locally and returns; a background
+// thread inserts the journaled bookings in batches, one transaction (one log flush on the server) per
+// batch, and retries with backoff while the database is unreachable. Every booking carries a key, so
+// replaying one that was committed just before a crash finds it instead of inserting it again.
+//
+// A batch is inserted set-based: one multi-row INSERT ... SELECT FROM (VALUES ...) that skips keys already
+// present, then one SELECT of the ids by key, per ROWS_PER_STATEMENT bookings. A series from submitAll is
+// never split between batches.
+public class BookingWriter implements AutoCloseable {
+    private static final int OVERLAP_ERROR = 50001; // THROW in TR_Appointments_NoOverlap
+    private static final long MAX_BACKOFF_MS = 30_000;
+    private static final int MAX_REASON_LENGTH = 255; // Appointments.reason
+
+    private static final int ROWS_PER_STATEMENT = 300; // 7 parameters per booking, under SQL Server's 2100 limit
+
+    private static final String INSERT =
+            "INSERT INTO Appointments (doctor_id, client_id, date, duration_minutes, reason, status, booking_key) " +
+            "SELECT v.doctor_id, v.client_id, v.[date], v.duration_minutes, v.reason, 'scheduled', v.booking_key " +
+            "FROM (VALUES %s) v (doctor_id, client_id, [date], duration_minutes, reason, booking_key) " +
+            "WHERE NOT EXISTS (SELECT 1 FROM Appointments a WITH (UPDLOCK, HOLDLOCK) WHERE a.booking_key = v.booking_key)";
+    private static final String INSERT_ROW = "(?, ?, ?, ?, ?, CAST(? AS UNIQUEIDENTIFIER))";
+    // inserted now or by an attempt that committed before a crash
+    private static final String FIND = "SELECT appointment_id, booking_key FROM Appointments WHERE booking_key IN (%s)";
+
+    // called on the EDT
+    public interface Listener {
+        default void onAccepted(BookingJournal.Booking booking) {
+        }
+
+        default void onFlushed(BookingJournal.Booking booking, int appointmentId) {
+        }
+
+        // the database refused the booking (double booking, constraint); it is dropped from the journal
+        default void onRejected(BookingJournal.Booking booking, SQLException e) {
+        }
+    }
+
+    private final DataSource dataSource;
+    private final BookingJournal journal;
+    private final int batchSize;
+    private final long lingerMillis;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Thread thread;
+    private final Object signal = new Object();
+    private volatile boolean closed;
+
+    // guarded by this
+    private long flushed;
+    private long rejected;
+    private long batches;
+    private long flushNanos;
+    private long maxFlushNanos;
+    private long latencyNanos;
+    private long maxLatencyNanos;
+    private String lastError;
+
+    public BookingWriter(DataSource dataSource, BookingJournal journal, int batchSize, long lingerMillis) {
+        this.dataSource = dataSource;
+        this.journal = journal;
+        this.batchSize = batchSize;
+        this.lingerMillis = lingerMillis;
+        thread = new Thread(this::run, "booking-writer");
+        thread.setDaemon(true);
+    }
+
+    // once the listeners are added, so the ones for replayed bookings reach them all
+    public void start() {
+        if (journal.getDepth() > 0) System.out.println("Replaying " + journal.getDepth() + " journaled bookings.");
+        thread.start();
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // the booking is safe on local disk when this returns
+    public void submit(BookingJournal.Booking booking) throws IOException {
+        validate(booking);
+        journal.append(booking);
+        listeners.forEach(listener -> listener.onAccepted(booking));
+        synchronized (signal) {
+            signal.notify();
+        }
+    }
+
+    // a recurring series: journaled with one force and committed in one transaction, however large
+    public void submitAll(List<BookingJournal.Booking> bookings) throws IOException {
+        if (bookings.isEmpty()) return;
+        bookings.forEach(BookingWriter::validate);
+        journal.appendAll(bookings);
+        for (BookingJournal.Booking booking : bookings) listeners.forEach(listener -> listener.onAccepted(booking));
+        synchronized (signal) {
+            signal.notify();
+        }
+    }
+
+    public int getDepth() {
+        return journal.getDepth();
+    }
+
+    // every booking not in the database yet, oldest first
+    public List<BookingJournal.Booking> getPending() {
+        return journal.peek(Integer.MAX_VALUE);
+    }
+
+    // Refuses what the table would refuse before it is journaled: once on disk, a booking the insert
+    // cannot even bind would be replayed on every start.
+    static void validate(BookingJournal.Booking booking) {
+        if (booking.getDate() == null) throw new IllegalArgumentException("An appointment needs a date.");
+        if (booking.getReason() == null || booking.getReason().length() > MAX_REASON_LENGTH) {
+            throw new IllegalArgumentException("The reason is required, at most " + MAX_REASON_LENGTH + " characters.");
+        }
+        if (booking.getDurationMinutes() < 5 || booking.getDurationMinutes() > ScheduleIndex.MAX_DURATION_MINUTES) {
+            throw new IllegalArgumentException("Duration must be between 5 and " + ScheduleIndex.MAX_DURATION_MINUTES + " minutes.");
+        }
+    }
+
+    private void run() {
+        long backoff = 0;
+        while (!closed) {
+            try {
+                synchronized (signal) {
+                    while (journal.getDepth() == 0 && !closed) signal.wait();
+                }
+                if (backoff > 0) {
+                    Thread.sleep(backoff);
+                } else if (lingerMillis > 0 && journal.getDepth() < batchSize) {
+                    Thread.sleep(lingerMillis); // let a burst of bookings share one commit
+                }
+                flush(journal.peek(batchSize));
+                backoff = 0;
+            } catch (SQLException e) {
+                backoff = Math.min(Math.max(backoff * 2, 500), MAX_BACKOFF_MS);
+                synchronized (this) {
+                    lastError = e.getMessage();
+                }
+                System.err.println("Booking flush failed, retrying in " + backoff + " ms: " + e.getMessage());
+            } catch (RuntimeException e) {
+                // a bug or a bad row must not end the only thread that drains the journal
+                backoff = Math.min(Math.max(backoff * 2, 500), MAX_BACKOFF_MS);
+                synchronized (this) {
+                    lastError = e.toString();
+                }
+                System.err.println("Booking flush failed unexpectedly, retrying in " + backoff + " ms: " + e);
+                e.printStackTrace();
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void flush(List<BookingJournal.Booking> batch) throws SQLException {
+        long started = System.nanoTime();
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                List<Integer> ids;
+                try {
+                    ids = insert(conn, batch);
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    if (!isRejection(e)) throw e;
+                    // one of them is refused: go through the batch again one transaction per booking, so the
+                    // occurrences of a series that are still free are booked and only the taken ones reported
+                    flushOneByOne(conn, batch);
+                    recordBatch(started, batch.size());
+                    return;
+                }
+                journal.markFlushed(batch.size());
+                for (int i = 0; i < batch.size(); i++) flushed(batch.get(i), ids.get(i));
+                recordBatch(started, batch.size());
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private void flushOneByOne(Connection conn, List<BookingJournal.Booking> batch) throws SQLException {
+        for (BookingJournal.Booking booking : batch) {
+            try {
+                int id = insert(conn, List.of(booking)).get(0);
+                conn.commit();
+                journal.markFlushed(1);
+                flushed(booking, id);
+            } catch (SQLException e) {
+                conn.rollback();
+                if (!isRejection(e)) throw e;
+                journal.markFlushed(1);
+                synchronized (this) {
+                    rejected++;
+                }
+                SwingUtilities.invokeLater(() -> listeners.forEach(listener -> listener.onRejected(booking, e)));
+            }
+        }
+    }
+
+    // the appointment ids in batch order, whether inserted now or by an earlier attempt
+    private static List<Integer> insert(Connection conn, List<BookingJournal.Booking> batch) throws SQLException {
+        Map<UUID, Integer> ids = new HashMap<>();
+        for (int from = 0; from < batch.size(); from += ROWS_PER_STATEMENT) {
+            List<BookingJournal.Booking> chunk = batch.subList(from, Math.min(from + ROWS_PER_STATEMENT, batch.size()));
+            try (PreparedStatement insert = conn.prepareStatement(String.format(INSERT, String.join(", ", Collections.nCopies(chunk.size(), INSERT_ROW))))) {
+                int i = 1;
+                for (BookingJournal.Booking booking : chunk) {
+                    insert.setInt(i++, booking.getDoctorId());
+                    insert.setInt(i++, booking.getClientId());
+                    insert.setTimestamp(i++, Timestamp.valueOf(booking.getDate()));
+                    insert.setInt(i++, booking.getDurationMinutes());
+                    insert.setString(i++, booking.getReason());
+                    insert.setString(i++, booking.getKey().toString());
+                }
+                insert.executeUpdate();
+            }
+            try (PreparedStatement find = conn.prepareStatement(String.format(FIND, String.join(", ", Collections.nCopies(chunk.size(), "?"))))) {
+                for (int i = 0; i < chunk.size(); i++) find.setString(i + 1, chunk.get(i).getKey().toString());
+                try (ResultSet res = find.executeQuery()) {
+                    while (res.next()) ids.put(UUID.fromString(res.getString(2)), res.getInt(1));
+                }
+            }
+        }
+
+        List<Integer> result = new ArrayList<>(batch.size());
+        for (BookingJournal.Booking booking : batch) {
+            Integer id = ids.get(booking.getKey());
+            if (id == null) throw new SQLException("Booking " + booking.getKey() + " was neither inserted nor found.");
+            result.add(id);
+        }
+        return result;
+    }
+
+    // the database refused the row itself, retrying cannot help
+    static boolean isRejection(SQLException e) {
+        return e.getErrorCode() == OVERLAP_ERROR || (e.getSQLState() != null && e.getSQLState().startsWith("23"));
+    }
+
+    private void flushed(BookingJournal.Booking booking, int appointmentId) {
+        long latency = System.nanoTime() - booking.getAcceptedAt();
+        synchronized (this) {
+            flushed++;
+            latencyNanos += latency;
+            maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+            lastError = null;
+        }
+        SwingUtilities.invokeLater(() -> listeners.forEach(listener -> listener.onFlushed(booking, appointmentId)));
+    }
+
+    private synchronized void recordBatch(long started, int size) {
+        long nanos = System.nanoTime() - started;
+        batches++;
+        flushNanos += nanos;
+        maxFlushNanos = Math.max(maxFlushNanos, nanos);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("BookingWriter[depth=%d (%d bytes), flushed=%d in %d batches, rejected=%d, " +
+                             "batch avg=%.1f ms max=%.1f ms, submit-to-commit avg=%.1f ms max=%.1f ms%s]",
+                journal.getDepth(), journal.getPendingBytes(), flushed, batches, rejected,
+                batches == 0 ? 0.0 : flushNanos / 1e6 / batches, maxFlushNanos / 1e6,
+                flushed == 0 ? 0.0 : latencyNanos / 1e6 / flushed, maxLatencyNanos / 1e6,
+                lastError == null ? "" : ", last error: " + lastError);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+        try {
+            thread.join(1_000);
+            journal.close();
+        } catch (InterruptedException | IOException e) {
+            System.err.println("Closing the booking journal failed: " + e.getMessage());
+        }
+    }
+}
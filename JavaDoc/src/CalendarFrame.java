@@ -0,0 +1,209 @@
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+// Day or week grid of one doctor's appointments, one row per half hour of the working day (widened
+// when something is booked outside it). Weeks come from AppointmentCalendar; the weeks before and
+// after the one shown are prefetched, so paging back and forth shows them at once.
+public class CalendarFrame {
+    private static final int SLOT_MINUTES = 30;
+    private static final DateTimeFormatter DAY = DateTimeFormatter.ofPattern("EEE yyyy-MM-dd");
+    private static final DateTimeFormatter COLUMN = DateTimeFormatter.ofPattern("EEE MM-dd");
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm");
+
+    private final AppointmentCalendar calendar;
+    private final JFrame frame;
+    private final TypeAheadField txtDoctor;
+    private final JComboBox<String> cmbView = new JComboBox<>(new String[]{"Week", "Day"});
+    private final JLabel rangeLabel = new JLabel();
+    private final JLabel status = new JLabel(" ");
+    private final DefaultTableModel model = new DefaultTableModel() {
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    };
+    private final ChangeFeed changeFeed;
+    private final BookingWriter bookingWriter;
+    private final ChangeFeed.Listener changeListener = changes -> {
+        if (changes.touches(ChangeFeed.APPOINTMENTS) || changes.touches(ChangeFeed.CLIENTS)) show();
+    };
+    private final BookingWriter.Listener bookingListener = new BookingWriter.Listener() {
+        @Override
+        public void onFlushed(BookingJournal.Booking booking, int appointmentId) {
+            show();
+        }
+    };
+    private LocalDate day = LocalDate.now();
+    private int shown; // bumped per show(), so a week that arrives after the user paged on is dropped
+
+    public CalendarFrame(AppointmentCalendar calendar, PeopleDirectory doctorIndex, ChangeFeed changeFeed, BookingWriter bookingWriter,
+                         ListItem doctor) {
+        this.calendar = calendar;
+        this.changeFeed = changeFeed;
+        this.bookingWriter = bookingWriter;
+        frame = new JFrame("Appointments Calendar");
+        frame.setSize(900, 550);
+        frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+
+        JPanel searchPanel = new JPanel(new FlowLayout());
+        searchPanel.add(new JLabel("Doctor:"));
+        txtDoctor = new TypeAheadField(doctorIndex, 12);
+        txtDoctor.setSelectedItem(doctor);
+        txtDoctor.addSelectionListener(this::show);
+        searchPanel.add(txtDoctor);
+        searchPanel.add(cmbView);
+
+        JButton btnPrevious = new JButton("<");
+        JButton btnToday = new JButton("Today");
+        JButton btnNext = new JButton(">");
+        searchPanel.add(btnPrevious);
+        searchPanel.add(btnToday);
+        searchPanel.add(btnNext);
+        searchPanel.add(rangeLabel);
+
+        btnPrevious.addActionListener(e -> page(-1));
+        btnNext.addActionListener(e -> page(1));
+        btnToday.addActionListener(e -> {
+            day = LocalDate.now();
+            show();
+        });
+        cmbView.addActionListener(e -> show());
+
+        JTable table = new JTable(model);
+        table.setRowHeight(24);
+        frame.add(searchPanel, BorderLayout.NORTH);
+        frame.add(new JScrollPane(table), BorderLayout.CENTER);
+        frame.add(status, BorderLayout.SOUTH);
+        frame.setVisible(true);
+
+        changeFeed.addListener(changeListener);
+        bookingWriter.addListener(bookingListener);
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                changeFeed.removeListener(changeListener);
+                bookingWriter.removeListener(bookingListener);
+            }
+        });
+        show();
+    }
+
+    private boolean isWeekView() {
+        return "Week".equals(cmbView.getSelectedItem());
+    }
+
+    private void page(int direction) {
+        day = day.plusDays(direction * (isWeekView() ? 7L : 1L));
+        show();
+    }
+
+    // a cached week renders right away; otherwise it is loaded off the EDT
+    private void show() {
+        int requested = ++shown;
+        LocalDate monday = AppointmentCalendar.mondayOf(day);
+        List<LocalDate> days = new ArrayList<>();
+        if (isWeekView()) {
+            for (int i = 0; i < 7; i++) days.add(monday.plusDays(i));
+            rangeLabel.setText("Week of " + monday.format(DAY));
+        } else {
+            days.add(day);
+            rangeLabel.setText(day.format(DAY));
+        }
+
+        ListItem doctor = txtDoctor.getSelectedItem();
+        if (doctor == null) {
+            render(days, List.of());
+            status.setText("Pick a doctor.");
+            return;
+        }
+
+        List<AppointmentCalendar.Entry> cached = calendar.getCached(doctor.getId(), monday);
+        if (cached != null) {
+            render(days, cached);
+        } else {
+            status.setText("Loading...");
+            calendar.get(doctor.getId(), monday).whenComplete((entries, error) -> SwingUtilities.invokeLater(() -> {
+                if (requested != shown) return;
+                if (error != null) {
+                    status.setText(" ");
+                    showErrorDialog("Failed to load the calendar.", unwrap(error));
+                } else {
+                    render(days, entries);
+                }
+            }));
+        }
+        calendar.prefetch(doctor.getId(), monday.minusWeeks(1));
+        calendar.prefetch(doctor.getId(), monday.plusWeeks(1));
+    }
+
+    private void render(List<LocalDate> days, List<AppointmentCalendar.Entry> week) {
+        List<AppointmentCalendar.Entry> entries = new ArrayList<>();
+        for (AppointmentCalendar.Entry entry : week) {
+            if (days.contains(entry.getStart().toLocalDate())) entries.add(entry);
+        }
+
+        // working hours, widened to whole slots around anything booked outside them
+        int first = ScheduleIndex.DAY_START.toSecondOfDay() / 60;
+        int last = ScheduleIndex.DAY_END.toSecondOfDay() / 60;
+        for (AppointmentCalendar.Entry entry : entries) {
+            int start = entry.getStart().toLocalTime().toSecondOfDay() / 60;
+            int end = entry.getEnd().toLocalDate().equals(entry.getStart().toLocalDate()) ? entry.getEnd().toLocalTime().toSecondOfDay() / 60 : 24 * 60;
+            first = Math.min(first, start / SLOT_MINUTES * SLOT_MINUTES);
+            last = Math.max(last, (end + SLOT_MINUTES - 1) / SLOT_MINUTES * SLOT_MINUTES);
+        }
+
+        Object[] columns = new Object[days.size() + 1];
+        columns[0] = "Time";
+        for (int i = 0; i < days.size(); i++) columns[i + 1] = days.get(i).format(COLUMN);
+
+        Object[][] rows = new Object[(last - first) / SLOT_MINUTES][];
+        for (int r = 0; r < rows.length; r++) {
+            LocalTime slot = LocalTime.ofSecondOfDay((first + r * SLOT_MINUTES) * 60L);
+            rows[r] = new Object[columns.length];
+            rows[r][0] = slot.format(TIME);
+            for (int c = 0; c < days.size(); c++) {
+                LocalDateTime from = days.get(c).atTime(slot);
+                rows[r][c + 1] = cell(entries, from, from.plusMinutes(SLOT_MINUTES));
+            }
+        }
+        model.setDataVector(rows, columns);
+        status.setText(entries.size() + " appointments");
+    }
+
+    // appointments starting in the slot in full, ones still running from an earlier slot as a continuation
+    private static String cell(List<AppointmentCalendar.Entry> entries, LocalDateTime from, LocalDateTime to) {
+        StringBuilder text = new StringBuilder();
+        for (AppointmentCalendar.Entry entry : entries) {
+            if (!entry.getStart().isBefore(to) || !entry.getEnd().isAfter(from)) continue;
+            if (text.length() > 0) text.append("; ");
+            if (entry.getStart().isBefore(from)) {
+                text.append("... ").append(entry.getClient());
+            } else {
+                text.append(entry.getStart().format(TIME)).append('-').append(entry.getEnd().format(TIME)).append(' ')
+                        .append(entry.getClient()).append(": ").append(entry.getReason());
+                if (!"scheduled".equals(entry.getStatus())) text.append(" [").append(entry.getStatus()).append(']');
+            }
+        }
+        return text.toString();
+    }
+
+    private static Exception unwrap(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof Exception ? (Exception) cause : new RuntimeException(cause);
+    }
+
+    private void showErrorDialog(String message, Exception e) {
+        JOptionPane.showMessageDialog(null, message + "\nError: " + e.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
+        e.printStackTrace();
+    }
+}
@@ -0,0 +1,169 @@
+import javax.sql.DataSource;
+import javax.swing.*;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Polls Appointments, Clients and Doctors for rows whose rowversion moved past the last one seen,
+// plus DeletedRows tombstones, and hands each batch of changes to every open frame on the EDT.
+// One poller serves all frames, so other desks' edits show up without pressing Reset.
+public class ChangeFeed implements AutoCloseable {
+    public static final String APPOINTMENTS = "Appointments";
+    public static final String CLIENTS = "Clients";
+    public static final String DOCTORS = "Doctors";
+    // appointments AppointmentArchiver moved out of the live table (V008), as deletes under this name
+    public static final String ARCHIVED = "AppointmentsArchive";
+
+    private static final long TOMBSTONE_CLEANUP_MILLIS = 3_600_000;
+    private static final String AFTER = "CAST(CAST(? AS BIGINT) AS BINARY(8))";
+
+    public interface Listener {
+        void onChanges(Changes changes);
+    }
+
+    // changed rows (already mapped like the frames map them) and deleted ids, per table
+    public static class Changes {
+        private final Map<String, Map<Integer, Object[]>> upserts = new HashMap<>();
+        private final Map<String, Set<Integer>> deletes = new HashMap<>();
+
+        public Map<Integer, Object[]> getUpserts(String table) {
+            return upserts.getOrDefault(table, Map.of());
+        }
+
+        public Set<Integer> getDeletes(String table) {
+            return deletes.getOrDefault(table, Set.of());
+        }
+
+        public boolean touches(String table) {
+            return upserts.containsKey(table) || deletes.containsKey(table);
+        }
+
+        boolean isEmpty() {
+            return upserts.isEmpty() && deletes.isEmpty();
+        }
+    }
+
+    private static class Source {
+        final String table;
+        final String query;
+        final TableLoader.RowMapper mapper;
+
+        Source(String table, String query, TableLoader.RowMapper mapper) {
+            this.table = table;
+            this.query = query;
+            this.mapper = mapper;
+        }
+    }
+
+    // deactivated clients and doctors arrive as deletes (TR_*_Deactivated in V005), never as upserts
+    private static final List<Source> SOURCES = List.of(
+            new Source(APPOINTMENTS, "SELECT a.appointment_id AS row_id, " + AppointmentsFrame.APPOINTMENT_ROW_COLUMNS +
+                    " FROM " + AppointmentsFrame.APPOINTMENT_TABLES + " WHERE a.row_version > " + AFTER + " AND a.row_version < " + AFTER,
+                    AppointmentsFrame::mapAppointment),
+            new Source(CLIENTS, "SELECT client_id AS row_id, " + ClientsFrame.CLIENT_COLUMNS +
+                    " FROM Clients WHERE row_version > " + AFTER + " AND row_version < " + AFTER + " AND is_active = 1",
+                    ClientsFrame::mapClient),
+            new Source(DOCTORS, "SELECT d.doctor_id AS row_id, d.doctor_id, d.specialization_id, " + DoctorsFrame.DOCTOR_COLUMNS +
+                    " FROM " + DoctorsFrame.DOCTOR_TABLES + " WHERE d.row_version > " + AFTER + " AND d.row_version < " + AFTER + " AND d.is_active = 1",
+                    DoctorsFrame::mapDoctor));
+
+    private final DataSource dataSource;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService poller;
+    private final long pollIntervalMillis;
+    private long lastVersion = -1; // only touched by the poller thread
+    private long lastCleanup;
+
+    public ChangeFeed(DataSource dataSource, long pollIntervalMillis) {
+        this.dataSource = dataSource;
+        this.pollIntervalMillis = pollIntervalMillis;
+        poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "change-feed");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // after the listeners are added
+    public void start() {
+        poller.scheduleWithFixedDelay(this::poll, 0, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void poll() {
+        try (Connection conn = dataSource.getConnection()) {
+            // rows below MIN_ACTIVE_ROWVERSION are committed, so nothing in (last, upper) can still show up later
+            long upper = queryLong(conn, "SELECT CAST(MIN_ACTIVE_ROWVERSION() AS BIGINT)");
+            if (lastVersion < 0) {
+                lastVersion = upper - 1; // frames load current data themselves, start from now
+                return;
+            }
+            if (upper - 1 <= lastVersion) return;
+
+            Changes changes = new Changes();
+            for (Source source : SOURCES) {
+                try (PreparedStatement statement = conn.prepareStatement(source.query)) {
+                    statement.setLong(1, lastVersion);
+                    statement.setLong(2, upper);
+                    try (ResultSet res = statement.executeQuery()) {
+                        while (res.next()) {
+                            changes.upserts.computeIfAbsent(source.table, t -> new HashMap<>()).put(res.getInt("row_id"), source.mapper.map(res));
+                        }
+                    }
+                }
+            }
+            try (PreparedStatement statement = conn.prepareStatement(
+                    "SELECT table_name, row_id FROM DeletedRows WHERE row_version > " + AFTER + " AND row_version < " + AFTER)) {
+                statement.setLong(1, lastVersion);
+                statement.setLong(2, upper);
+                try (ResultSet res = statement.executeQuery()) {
+                    while (res.next()) {
+                        changes.deletes.computeIfAbsent(res.getString(1), t -> new HashSet<>()).add(res.getInt(2));
+                    }
+                }
+            }
+            lastVersion = upper - 1;
+
+            if (!changes.isEmpty()) {
+                // one EDT task per poll, so a burst of changes repaints once
+                SwingUtilities.invokeLater(() -> listeners.forEach(listener -> listener.onChanges(changes)));
+            }
+            cleanupTombstones(conn);
+        } catch (SQLException e) {
+            // keep lastVersion, the same range is retried on the next poll
+            System.err.println("Change feed poll failed: " + e.getMessage());
+        }
+    }
+
+    private void cleanupTombstones(Connection conn) throws SQLException {
+        long now = System.currentTimeMillis();
+        if (now - lastCleanup < TOMBSTONE_CLEANUP_MILLIS) return;
+        lastCleanup = now;
+        try (Statement statement = conn.createStatement()) {
+            statement.executeUpdate("DELETE FROM DeletedRows WHERE deleted_at < DATEADD(day, -1, GETDATE())");
+        }
+    }
+
+    private static long queryLong(Connection conn, String query) throws SQLException {
+        try (Statement statement = conn.createStatement();
+             ResultSet res = statement.executeQuery(query)) {
+            res.next();
+            return res.getLong(1);
+        }
+    }
+
+    @Override
+    public void close() {
+        poller.shutdownNow();
+    }
+}
@@ -1,29 +1,71 @@
+import javax.sql.DataSource;
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.sql.*;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 public class ClientsFrame {
-    private Connection conn;
+    private DataSource dataSource;
+    private ReferenceCache referenceCache;
+    private SearchCache searchCache;
+    private SpecializationIndex specializationIndex;
     private JFrame frame;
     private JTable table;
-    private DefaultTableModel model;
+    private PagedTableModel model;
+    private IndexedRowSorter sorter;
     private JTextField regDateInput;
-    private JComboBox<String> cmbSpecialization;
+    private TypeAheadField txtFind;
+    private boolean showingFound; // table holds the client picked in txtFind
+    private JComboBox<ListItem> cmbSpecialization;
+    private JProgressBar progress;
+    private ChangeFeed changeFeed;
+    private PeopleDirectory clientIndex;
+    private DeskClient server; // on a desk attached to a DeskServer, which then serves every read and write
+    private final ChangeFeed.Listener changeListener =
+            changes -> model.applyChanges(changes.getUpserts(ChangeFeed.CLIENTS), changes.getDeletes(ChangeFeed.CLIENTS));
+
+    static final String CLIENT_COLUMNS = "first_name, last_name, email, phone, age, registration_date";
+    // first and last names repeat a lot, emails and phones do not
+    static final ColumnBlock.Type[] CLIENT_TYPES = {ColumnBlock.Type.CATEGORY, ColumnBlock.Type.CATEGORY, ColumnBlock.Type.TEXT,
+                                                    ColumnBlock.Type.TEXT, ColumnBlock.Type.INT, ColumnBlock.Type.TIMESTAMP};
 
     private void showErrorDialog(String message, Exception e) {
         JOptionPane.showMessageDialog(null, message + "\nError: " + e.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
         e.printStackTrace();
     }
 
-    public ClientsFrame(Connection conn) {
-        this.conn = conn;
+    // attached to a server: dataSource, the caches, specializationIndex and changeFeed are null, and the
+    // specialization filter and the import, which the server does not offer, are left out
+    public ClientsFrame(DataSource dataSource, ReferenceCache referenceCache, SearchCache searchCache, SpecializationIndex specializationIndex,
+                        ChangeFeed changeFeed, PeopleDirectory clientIndex, DeskClient server) {
+        this.dataSource = dataSource;
+        this.referenceCache = referenceCache;
+        this.searchCache = searchCache;
+        this.specializationIndex = specializationIndex;
+        this.changeFeed = changeFeed;
+        this.clientIndex = clientIndex;
+        this.server = server;
         frame = new JFrame("Clients Management");
         frame.setSize(700, 450);
         frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
 
-        model = new DefaultTableModel(new String[]{"First Name", "Last Name", "Email", "Phone", "Age", "Registration Date"}, 0);
+        progress = new JProgressBar();
+        String[] columns = {"First Name", "Last Name", "Email", "Phone", "Age", "Registration Date"};
+        model = server == null
+                ? new PagedTableModel(dataSource, columns, new ColumnBlock.Schema(CLIENT_TYPES), progress, e -> showErrorDialog("Failed to load clients.", e))
+                : new PagedTableModel(server, columns, new ColumnBlock.Schema(CLIENT_TYPES), progress, e -> showErrorDialog("Failed to load clients.", e));
         table = new JTable(model);
+        sorter = new IndexedRowSorter(model);
+        table.setRowSorter(sorter);
         loadClients();
 
         // Control Panel
@@ -33,64 +75,102 @@ public class ClientsFrame {
         JButton btnDelete = new JButton("Delete");
         JButton btnSearch = new JButton("Search");
         JButton btnReset = new JButton("Reset");
+        JButton btnImport = new JButton("Import");
 
         panel.add(btnAdd);
         panel.add(btnDelete);
         panel.add(btnSearch);
         panel.add(btnReset);
+        if (server == null) panel.add(btnImport);
+        panel.add(progress);
 
         btnAdd.addActionListener(e -> addClient());
         btnDelete.addActionListener(e -> deleteClient());
         btnSearch.addActionListener(e -> searchClients());
         btnReset.addActionListener(e -> loadClients());
+        btnImport.addActionListener(e -> CsvImporter.showImportDialog(frame, CsvImporter.Kind.CLIENTS, dataSource, referenceCache, this::loadClients));
 
         // Search Fields Panel
         JPanel searchPanel = new JPanel(new FlowLayout());
+        searchPanel.add(new JLabel("Find:"));
+        txtFind = new TypeAheadField(clientIndex, 12);
+        txtFind.addSelectionListener(this::findClient);
+        searchPanel.add(txtFind);
+
         searchPanel.add(new JLabel("Registration Date:"));
         regDateInput = new JTextField(10);
+        regDateInput.getDocument().addDocumentListener(IndexedRowSorter.onEdit(this::filterLocally));
         searchPanel.add(regDateInput);
 
-        searchPanel.add(new JLabel("Doctor Specialization:"));
         cmbSpecialization = new JComboBox<>();
-        loadSpecializations();  // Fill specialization dropdown
-        searchPanel.add(cmbSpecialization);
+        if (server == null) {
+            searchPanel.add(new JLabel("Doctor Specialization:"));
+            loadSpecializations();  // Fill specialization dropdown
+            cmbSpecialization.addActionListener(e -> filterLocally());
+            searchPanel.add(cmbSpecialization);
+        }
 
         // Layout
         frame.add(new JScrollPane(table), BorderLayout.CENTER);
         frame.add(searchPanel, BorderLayout.NORTH);
         frame.add(panel, BorderLayout.SOUTH);
         frame.setVisible(true);
+
+        if (changeFeed == null) return; // an attached desk sees other desks' edits on Reset
+        changeFeed.addListener(changeListener);
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                changeFeed.removeListener(changeListener);
+            }
+        });
     }
 
     private void loadClients() {
-        model.setRowCount(0);
-        try (Statement statement = conn.createStatement();
-             ResultSet res = statement.executeQuery("SELECT first_name, last_name, email, phone, age, registration_date FROM Clients")) {
-            while (res.next()) {
-                model.addRow(new Object[]{
-                        res.getString("first_name"),
-                        res.getString("last_name"),
-                        res.getString("email"),
-                        res.getString("phone"),
-                        res.getInt("age"),
-                        res.getTimestamp("registration_date")
-                });
-            }
-        } catch (SQLException e) {
-            showErrorDialog("Failed to load clients.", e);
+        showingFound = false;
+        if (txtFind != null) txtFind.setSelectedItem(null);
+        sorter.setFilters(List.of());
+        model.setQuery(allClients());
+    }
+
+    // shows the client picked by name, email or phone; editing the text again brings the full list back
+    private void findClient() {
+        ListItem client = txtFind.getSelectedItem();
+        if (client != null) {
+            sorter.setFilters(List.of());
+            model.setQuery(clientQuery(client.getId()));
+            showingFound = true;
+        } else if (showingFound) {
+            loadClients();
         }
     }
 
+    // deactivated clients are hidden everywhere; their appointments still reference them
+    static PagedTableModel.Query allClients() {
+        return new PagedTableModel.Query(CLIENT_COLUMNS, "Clients", "is_active = 1", "client_id").servedAt("clients");
+    }
+
+    static PagedTableModel.Query clientQuery(int clientId) {
+        return new PagedTableModel.Query(CLIENT_COLUMNS, "Clients", "client_id = ? AND is_active = 1", List.of(clientId), "client_id", null, false)
+                .servedAt("clients?clientId=" + clientId);
+    }
+
+    static Object[] mapClient(ResultSet res) throws SQLException {
+        return new Object[]{
+                res.getString("first_name"),
+                res.getString("last_name"),
+                res.getString("email"),
+                res.getString("phone"),
+                res.getInt("age"),
+                res.getTimestamp("registration_date")
+        };
+    }
+
     private void loadSpecializations() {
-        try (Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT name FROM Specializations")) {
-            cmbSpecialization.addItem("Any");
-            while (rs.next()) {
-                cmbSpecialization.addItem(rs.getString("name"));
-            }
-        } catch (SQLException e) {
-            showErrorDialog("Failed to load specializations.", e);
-        }
+        cmbSpecialization.addItem(ListItem.ANY);
+        AsyncQuery.run(referenceCache::getSpecializations,
+                names -> names.forEach(cmbSpecialization::addItem),
+                e -> showErrorDialog("Failed to load specializations.", e));
     }
 
     private void addClient() {
@@ -109,17 +189,35 @@ public class ClientsFrame {
             return;
         }
 
-        try (PreparedStatement statement = conn.prepareStatement("INSERT INTO Clients (first_name, last_name, email, phone, age) VALUES (?, ?, ?, ?, ?)")) {
-            statement.setString(1, firstName);
-            statement.setString(2, lastName);
-            statement.setString(3, email);
-            statement.setString(4, phone);
-            statement.setInt(5, age);
-            statement.executeUpdate();
-            loadClients();
-        } catch (SQLException e) {
-            showErrorDialog("Failed to add new client.", e);
-        }
+        AsyncQuery.run(() -> {
+            if (server != null) {
+                Map<?, ?> created = (Map<?, ?>) server.post("clients",
+                        Map.of("firstName", firstName, "lastName", lastName, "email", email, "phone", phone, "age", age));
+                return new Object[]{DeskClient.value(created.get("id"), ColumnBlock.Type.INT),
+                                    DeskClient.value(created.get("registrationDate"), ColumnBlock.Type.TIMESTAMP)};
+            }
+            try (Connection conn = dataSource.getConnection();
+                 PreparedStatement statement = conn.prepareStatement("INSERT INTO Clients (first_name, last_name, email, phone, age) " +
+                         "OUTPUT INSERTED.client_id, INSERTED.registration_date VALUES (?, ?, ?, ?, ?)")) {
+                statement.setString(1, firstName);
+                statement.setString(2, lastName);
+                statement.setString(3, email);
+                statement.setString(4, phone);
+                statement.setInt(5, age);
+                try (ResultSet res = statement.executeQuery()) {
+                    res.next();
+                    return new Object[]{res.getInt("client_id"), res.getTimestamp("registration_date")};
+                }
+            }
+        }, inserted -> {
+            int clientId = (Integer) inserted[0];
+            Timestamp registered = (Timestamp) inserted[1];
+            Object[] row = {firstName, lastName, email, phone, age, registered};
+            clientIndex.put(clientId, firstName, lastName, email, phone);
+            if (searchCache != null) searchCache.rowChanged(ChangeFeed.CLIENTS, clientId, Map.of(SearchCache.REGISTERED, registered));
+            if (!model.appendRow(clientId, row)) model.refresh();
+            if (referenceCache != null) referenceCache.invalidate(ReferenceCache.CLIENTS);
+        }, e -> showErrorDialog("Failed to add new client.", e));
     }
 
     private void deleteClient() {
@@ -128,51 +226,122 @@ public class ClientsFrame {
             JOptionPane.showMessageDialog(frame, "Select a client to delete.");
             return;
         }
-        String email = (String) model.getValueAt(row, 2);
+        Object clientId = model.getRowKey(table.convertRowIndexToModel(row));
+        if (clientId == null) return;
 
-        try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM Clients WHERE email = ?")) {
-            stmt.setString(1, email);
-            stmt.executeUpdate();
-            loadClients();
-        } catch (SQLException e) {
-            showErrorDialog("Failed to delete client.", e);
-        }
+        AsyncQuery.run(() -> {
+            if (server != null) return server.deleteIfPresent("clients/" + clientId);
+            try (Connection conn = dataSource.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement("UPDATE Clients SET is_active = 0 WHERE client_id = ? AND is_active = 1")) {
+                stmt.setInt(1, (Integer) clientId);
+                return stmt.executeUpdate() > 0;
+            }
+        }, deleted -> {
+            if (deleted) {
+                clientIndex.remove((Integer) clientId);
+                if (searchCache != null) searchCache.rowsDeleted(ChangeFeed.CLIENTS, List.of((Integer) clientId));
+                if (!model.removeRows(List.of(clientId))) model.refresh();
+            }
+            if (referenceCache != null) referenceCache.invalidate(ReferenceCache.CLIENTS);
+        }, e -> showErrorDialog("Failed to delete client.", e));
     }
 
     private void searchClients() {
         String regDate = regDateInput.getText().trim();
+        Integer specializationId = selectedSpecialization();
         boolean hasDateFilter = !regDate.isEmpty();
 
-        if (!hasDateFilter) {
+        if (!hasDateFilter && specializationId == null) {
             JOptionPane.showMessageDialog(frame, "Please enter at least one search criteria!", "Warning", JOptionPane.WARNING_MESSAGE);
             return;
         }
 
-        String queryStr = "SELECT first_name, last_name, email, phone, age, registration_date FROM Clients WHERE 1=1 ";
+        if (filterLocally()) return;
+        sorter.setFilters(List.of());
+        String registeredFrom = hasDateFilter ? regDate : null;
+        if (specializationId == null) {
+            model.setQuery(searchQuery(registeredFrom), searchCache, searchCriteria(registeredFrom));
+        } else {
+            // not cached: who has seen a specialization changes with every appointment, which SearchCache does not follow
+            BitSet clients = specializationIndex.isLoaded() ? specializationIndex.getClients(specializationId) : null;
+            model.setQuery(searchQuery(registeredFrom, specializationId, clients));
+        }
+    }
 
-        if (hasDateFilter) queryStr += "AND registration_date >= ? ";
-        queryStr += "ORDER BY registration_date DESC";
+    private Integer selectedSpecialization() {
+        ListItem specialization = (ListItem) cmbSpecialization.getSelectedItem();
+        return specialization == null || specialization.equals(ListItem.ANY) ? null : specialization.getId();
+    }
 
-        try (PreparedStatement statement = conn.prepareStatement(queryStr)) {
-            int index = 1;
-            if (hasDateFilter) statement.setString(index++, regDate);
+    // registration date and specialization filters over the loaded rows, when they are the whole table and
+    // fit in memory; false if only the server can answer
+    private boolean filterLocally() {
+        if (sorter == null || !model.isUnfiltered() || !sorter.canFilterLocally()) return false;
 
-            ResultSet res = statement.executeQuery();
-            model.setRowCount(0);
+        List<IndexedRowSorter.Filter> filters = new ArrayList<>();
+        Integer specializationId = selectedSpecialization();
+        if (specializationId != null) {
+            if (!specializationIndex.isLoaded()) return false; // still building, the server joins instead
+            filters.add(IndexedRowSorter.Filter.keyIn(specializationIndex.getClients(specializationId)));
+        }
+        String regDate = regDateInput.getText().trim();
+        if (!regDate.isEmpty()) {
+            try {
+                LocalDate from = LocalDate.parse(regDate);
+                filters.add(IndexedRowSorter.Filter.between(5, Timestamp.valueOf(from.atStartOfDay()), null));
+            } catch (DateTimeParseException e) {
+                return false; // not a plain date, let the server interpret it
+            }
+        }
+        sorter.setFilters(filters);
+        return true;
+    }
+
+    // a plain date is a lower bound a new registration can be checked against; anything else the server
+    // interprets is kept as text
+    static SearchCache.Criteria searchCriteria(String registeredFrom) {
+        Map<String, Object> equal = new HashMap<>();
+        Map<String, Object> atLeast = new HashMap<>();
+        if (registeredFrom != null) {
+            try {
+                atLeast.put(SearchCache.REGISTERED, Timestamp.valueOf(LocalDate.parse(registeredFrom).atStartOfDay()));
+            } catch (DateTimeParseException e) {
+                equal.put("registeredFrom", registeredFrom);
+            }
+        }
+        return new SearchCache.Criteria(ChangeFeed.CLIENTS, equal, atLeast);
+    }
 
-            while (res.next()) {
-                model.addRow(new Object[]{
-                        res.getString("first_name"),
-                        res.getString("last_name"),
-                        res.getString("email"),
-                        res.getString("phone"),
-                        res.getInt("age"),
-                        res.getTimestamp("registration_date")
-                });
+    static PagedTableModel.Query searchQuery(String registeredFrom) {
+        return searchQuery(registeredFrom, null, null).servedAt("clients?registeredFrom=" + DeskClient.encode(registeredFrom));
+    }
+
+    // Null arguments are not filtered on. Clients of a specialization come from SpecializationIndex's bitmap
+    // as one list parameter when it is given, otherwise from a semi-join over every appointment.
+    static PagedTableModel.Query searchQuery(String registeredFrom, Integer specializationId, BitSet clients) {
+        String where = "is_active = 1 ";
+        List<Object> params = new ArrayList<>();
+
+        if (registeredFrom != null) {
+            where += "AND registration_date >= ? ";
+            params.add(registeredFrom);
+        }
+        if (specializationId != null && clients != null) {
+            if (clients.isEmpty()) {
+                where += "AND 1=0 ";
+            } else {
+                where += "AND client_id IN (SELECT CAST([value] AS INT) FROM STRING_SPLIT(?, ',')) ";
+                params.add(clients.stream().mapToObj(Integer::toString).collect(Collectors.joining(",")));
             }
-        } catch (SQLException e) {
-            showErrorDialog("Failed to search clients.", e);
+        } else if (specializationId != null) {
+            where += "AND EXISTS (SELECT 1 FROM (SELECT client_id, doctor_id, [status] FROM Appointments " +
+                     "UNION ALL SELECT client_id, doctor_id, [status] FROM AppointmentsArchive) a " +
+                     "JOIN Doctors d ON d.doctor_id = a.doctor_id " +
+                     "WHERE a.client_id = Clients.client_id AND d.specialization_id = ? AND a.[status] <> 'cancelled') ";
+            params.add(specializationId);
         }
+
+        return new PagedTableModel.Query(CLIENT_COLUMNS, "Clients", where, params, "client_id", "registration_date", true);
     }
 
 }
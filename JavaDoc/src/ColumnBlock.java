@@ -0,0 +1,289 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.*;
+
+// A block of table rows stored column by column: ints, floats and timestamps (epoch millis) in primitive
+// arrays, low-cardinality strings as int codes into a dictionary shared by all blocks of the same schema,
+// other strings as they are. Nulls are sentinels (MIN_VALUE, NaN, -1 code). Values are boxed again only
+// when the table asks for a cell. PagedTableModel keeps its pages in these.
+public class ColumnBlock {
+    public enum Type {
+        INT,
+        FLOAT,
+        TIMESTAMP,
+        TEXT,
+        CATEGORY // repeated strings: statuses, specializations, the same doctor name on every appointment
+    }
+
+    private static final int NULL_INT = Integer.MIN_VALUE;
+    private static final long NULL_TIMESTAMP = Long.MIN_VALUE;
+    private static final int NULL_CODE = -1;
+
+    // string <-> code, append only; blocks are filled on fetcher threads and read on the EDT
+    private static class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private String[] values = new String[16];
+
+        synchronized int code(String value) {
+            if (value == null) return NULL_CODE;
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = codes.size();
+                if (code == values.length) values = Arrays.copyOf(values, code * 2);
+                values[code] = value;
+                codes.put(value, code);
+            }
+            return code;
+        }
+
+        synchronized String value(int code) {
+            return code == NULL_CODE ? null : values[code];
+        }
+
+        synchronized int size() {
+            return codes.size();
+        }
+
+        synchronized long estimateBytes() {
+            long bytes = 16 + 4L * values.length + 48L * codes.size(); // array, map entries with boxed codes
+            for (int i = 0; i < codes.size(); i++) bytes += stringBytes(values[i]);
+            return bytes;
+        }
+    }
+
+    // column types plus the dictionaries of the CATEGORY columns; one per model and query
+    public static class Schema {
+        private final Type[] types;
+        private final Dictionary[] dictionaries;
+
+        public Schema(Type... types) {
+            this.types = types.clone();
+            this.dictionaries = new Dictionary[types.length];
+            for (int i = 0; i < types.length; i++) {
+                if (types[i] == Type.CATEGORY) dictionaries[i] = new Dictionary();
+            }
+        }
+
+        // same types, empty dictionaries: nothing in the old ones is referenced after a reload
+        public Schema fresh() {
+            return new Schema(types);
+        }
+
+        public int getColumnCount() {
+            return types.length;
+        }
+
+        public Type getType(int column) {
+            return types[column];
+        }
+
+        public int getDictionarySize(int column) {
+            return dictionaries[column] == null ? 0 : dictionaries[column].size();
+        }
+
+        // rough heap size of the dictionaries
+        public long estimateBytes() {
+            long bytes = 0;
+            for (Dictionary dictionary : dictionaries) {
+                if (dictionary != null) bytes += dictionary.estimateBytes();
+            }
+            return bytes;
+        }
+    }
+
+    private final Schema schema;
+    private final Object[] columns; // int[] for INT and CATEGORY, float[], long[] or String[]
+    private int size;
+    private int capacity;
+
+    public ColumnBlock(Schema schema, int capacity) {
+        this.schema = schema;
+        this.capacity = capacity;
+        this.columns = new Object[schema.types.length];
+        for (int c = 0; c < columns.length; c++) {
+            switch (schema.types[c]) {
+                case INT:
+                case CATEGORY:
+                    columns[c] = new int[capacity];
+                    break;
+                case FLOAT:
+                    columns[c] = new float[capacity];
+                    break;
+                case TIMESTAMP:
+                    columns[c] = new long[capacity];
+                    break;
+                default:
+                    columns[c] = new String[capacity];
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Appends the current row of the result set; column c of the block is column c + 1 of the result set,
+    // so the select list has to start with the table's columns in order.
+    public void read(ResultSet res) throws SQLException {
+        int row = grow();
+        for (int c = 0; c < columns.length; c++) {
+            int index = c + 1;
+            switch (schema.types[c]) {
+                case INT: {
+                    int value = res.getInt(index);
+                    ((int[]) columns[c])[row] = res.wasNull() ? NULL_INT : value;
+                    break;
+                }
+                case FLOAT: {
+                    float value = res.getFloat(index);
+                    ((float[]) columns[c])[row] = res.wasNull() ? Float.NaN : value;
+                    break;
+                }
+                case TIMESTAMP: {
+                    Timestamp value = res.getTimestamp(index);
+                    ((long[]) columns[c])[row] = value == null ? NULL_TIMESTAMP : value.getTime();
+                    break;
+                }
+                case CATEGORY:
+                    ((int[]) columns[c])[row] = schema.dictionaries[c].code(res.getString(index));
+                    break;
+                default:
+                    ((String[]) columns[c])[row] = res.getString(index);
+            }
+        }
+        size++;
+    }
+
+    // appends a row given as objects, the way the frames' row mappers produce them
+    public void add(Object[] values) {
+        int row = grow();
+        size++;
+        set(row, values);
+    }
+
+    // appends row 'row' of another block with the same schema
+    public void add(ColumnBlock other, int row) {
+        int to = grow();
+        for (int c = 0; c < columns.length; c++) {
+            System.arraycopy(other.columns[c], row, columns[c], to, 1);
+        }
+        size++;
+    }
+
+    public void set(int row, Object[] values) {
+        for (int c = 0; c < columns.length; c++) {
+            Object value = values[c];
+            switch (schema.types[c]) {
+                case INT:
+                    ((int[]) columns[c])[row] = value == null ? NULL_INT : ((Number) value).intValue();
+                    break;
+                case FLOAT:
+                    ((float[]) columns[c])[row] = value == null ? Float.NaN : ((Number) value).floatValue();
+                    break;
+                case TIMESTAMP:
+                    ((long[]) columns[c])[row] = value == null ? NULL_TIMESTAMP : ((Date) value).getTime();
+                    break;
+                case CATEGORY:
+                    ((int[]) columns[c])[row] = schema.dictionaries[c].code((String) value);
+                    break;
+                default:
+                    ((String[]) columns[c])[row] = (String) value;
+            }
+        }
+    }
+
+    public Object get(int row, int column) {
+        switch (schema.types[column]) {
+            case INT: {
+                int value = ((int[]) columns[column])[row];
+                return value == NULL_INT ? null : value;
+            }
+            case FLOAT: {
+                float value = ((float[]) columns[column])[row];
+                return Float.isNaN(value) ? null : value;
+            }
+            case TIMESTAMP: {
+                long value = ((long[]) columns[column])[row];
+                return value == NULL_TIMESTAMP ? null : new Timestamp(value);
+            }
+            case CATEGORY:
+                return schema.dictionaries[column].value(((int[]) columns[column])[row]);
+            default:
+                return ((String[]) columns[column])[row];
+        }
+    }
+
+    // a copy with room for at least 'capacity' rows
+    public ColumnBlock copy(int capacity) {
+        ColumnBlock copy = new ColumnBlock(schema, Math.max(capacity, size));
+        for (int c = 0; c < columns.length; c++) {
+            System.arraycopy(columns[c], 0, copy.columns[c], 0, size);
+        }
+        copy.size = size;
+        return copy;
+    }
+
+    // rows [from, to) as a block of their own
+    public ColumnBlock slice(int from, int to) {
+        ColumnBlock slice = new ColumnBlock(schema, to - from);
+        for (int c = 0; c < columns.length; c++) {
+            System.arraycopy(columns[c], from, slice.columns[c], 0, to - from);
+        }
+        slice.size = to - from;
+        return slice;
+    }
+
+    // the rows encoded against another schema of the same types, so they hold on to none of this one's
+    // dictionary entries (SearchCache keeps blocks longer than the model they came from)
+    public ColumnBlock recode(Schema target) {
+        ColumnBlock copy = new ColumnBlock(target, size);
+        for (int c = 0; c < columns.length; c++) {
+            if (schema.types[c] == Type.CATEGORY) {
+                int[] from = (int[]) columns[c];
+                int[] to = (int[]) copy.columns[c];
+                for (int row = 0; row < size; row++) to[row] = target.dictionaries[c].code(schema.dictionaries[c].value(from[row]));
+            } else {
+                System.arraycopy(columns[c], 0, copy.columns[c], 0, size);
+            }
+        }
+        copy.size = size;
+        return copy;
+    }
+
+    // rough heap size of the column arrays and their strings, without the schema's dictionaries
+    public long estimateBytes() {
+        long bytes = 16 + 4L * columns.length;
+        for (Object column : columns) {
+            if (column instanceof long[]) {
+                bytes += 16 + 8L * capacity;
+            } else if (column instanceof String[]) {
+                bytes += 16 + 4L * capacity;
+                for (int row = 0; row < size; row++) bytes += stringBytes(((String[]) column)[row]);
+            } else {
+                bytes += 16 + 4L * capacity;
+            }
+        }
+        return bytes;
+    }
+
+    // header, hash and value array of a compact (Latin-1) string
+    private static long stringBytes(String value) {
+        return value == null ? 0 : 40 + value.length();
+    }
+
+    // index of the next row, growing the arrays when full
+    private int grow() {
+        if (size == capacity) {
+            capacity = Math.max(8, capacity * 2);
+            for (int c = 0; c < columns.length; c++) {
+                Object column = columns[c];
+                if (column instanceof int[]) columns[c] = Arrays.copyOf((int[]) column, capacity);
+                else if (column instanceof float[]) columns[c] = Arrays.copyOf((float[]) column, capacity);
+                else if (column instanceof long[]) columns[c] = Arrays.copyOf((long[]) column, capacity);
+                else columns[c] = Arrays.copyOf((String[]) column, capacity);
+            }
+        }
+        return size;
+    }
+}
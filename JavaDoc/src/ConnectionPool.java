@@ -0,0 +1,340 @@
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+// Fixed-bound pool of JDBC connections shared by all frames.
+// Connections are validated on borrow, idle ones above minSize are evicted, and broken ones are
+// replaced on the next borrow, so a dropped server link recovers without restarting the app.
+public class ConnectionPool implements DataSource, AutoCloseable {
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    private static final long EVICTION_INTERVAL_MILLIS = 30_000;
+
+    private final String url;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+    private final long maxWaitMillis;
+
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final ScheduledExecutorService evictor;
+    private int total; // physical connections, borrowed or idle
+    private boolean closed;
+
+    // metrics
+    private long borrowCount;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+    private long createdCount;
+    private long discardedCount;
+
+    public ConnectionPool(String url, int minSize, int maxSize, long idleTimeoutMillis, long maxWaitMillis) throws SQLException {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.url = url;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxWaitMillis = maxWaitMillis;
+
+        fill();
+
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "connection-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        evictor.scheduleWithFixedDelay(this::evict, EVICTION_INTERVAL_MILLIS, EVICTION_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        QueryMonitor.checkThread("getConnection");
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+
+        while (true) {
+            PooledConnection candidate = null;
+            boolean create = false;
+
+            synchronized (this) {
+                while (!closed && idle.isEmpty() && total >= maxSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw new SQLTransientConnectionException("Timed out after " + maxWaitMillis + " ms waiting for a database connection.");
+                    }
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a database connection.", e);
+                    }
+                }
+                if (closed) throw new SQLException("Connection pool is closed.");
+
+                if (!idle.isEmpty()) {
+                    candidate = idle.pollFirst();
+                } else {
+                    total++;
+                    create = true;
+                }
+            }
+
+            if (create) {
+                try {
+                    candidate = new PooledConnection(DriverManager.getConnection(url));
+                    synchronized (this) {
+                        createdCount++;
+                    }
+                } catch (SQLException e) {
+                    synchronized (this) {
+                        total--;
+                        notifyAll();
+                    }
+                    throw e;
+                }
+            } else if (!isUsable(candidate.physical)) {
+                discard(candidate);
+                continue;
+            }
+
+            recordWait(System.nanoTime() - start);
+            return candidate.lease();
+        }
+    }
+
+    private boolean isUsable(Connection conn) {
+        try {
+            return conn.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void release(PooledConnection pooled) {
+        Connection conn = pooled.physical;
+        try {
+            if (conn.isClosed()) {
+                discard(pooled);
+                return;
+            }
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            discard(pooled);
+            return;
+        }
+
+        synchronized (this) {
+            if (closed) {
+                total--;
+                closeQuietly(conn);
+                return;
+            }
+            pooled.lastUsed = System.currentTimeMillis();
+            idle.addFirst(pooled);
+            notifyAll();
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        closeQuietly(pooled.physical);
+        synchronized (this) {
+            total--;
+            discardedCount++;
+            notifyAll();
+        }
+    }
+
+    // close connections idle for too long, then top the pool back up to minSize
+    private void evict() {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext() && total > minSize) {
+                PooledConnection pooled = it.next();
+                if (now - pooled.lastUsed > idleTimeoutMillis) {
+                    it.remove();
+                    total--;
+                    discardedCount++;
+                    closeQuietly(pooled.physical);
+                }
+            }
+        }
+        try {
+            fill();
+        } catch (SQLException e) {
+            // server unavailable, the next borrow will try again
+        }
+    }
+
+    private void fill() throws SQLException {
+        while (true) {
+            synchronized (this) {
+                if (closed || total >= minSize) return;
+                total++;
+            }
+            try {
+                PooledConnection pooled = new PooledConnection(DriverManager.getConnection(url));
+                synchronized (this) {
+                    createdCount++;
+                    pooled.lastUsed = System.currentTimeMillis();
+                    idle.addLast(pooled);
+                    notifyAll();
+                }
+            } catch (SQLException e) {
+                synchronized (this) {
+                    total--;
+                }
+                throw e;
+            }
+        }
+    }
+
+    private synchronized void recordWait(long nanos) {
+        borrowCount++;
+        totalWaitNanos += nanos;
+        maxWaitNanos = Math.max(maxWaitNanos, nanos);
+    }
+
+    public synchronized int getActiveCount() {
+        return total - idle.size();
+    }
+
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    public synchronized double getAverageWaitMillis() {
+        return borrowCount == 0 ? 0 : totalWaitNanos / 1_000_000.0 / borrowCount;
+    }
+
+    public synchronized double getMaxWaitMillis() {
+        return maxWaitNanos / 1_000_000.0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("ConnectionPool[active=%d, idle=%d, max=%d, borrows=%d, avgWait=%.2fms, maxWait=%.2fms, created=%d, discarded=%d]",
+                total - idle.size(), idle.size(), maxSize, borrowCount, getAverageWaitMillis(), getMaxWaitMillis(), createdCount, discardedCount);
+    }
+
+    @Override
+    public void close() {
+        evictor.shutdownNow();
+        synchronized (this) {
+            closed = true;
+            for (PooledConnection pooled : idle) {
+                closeQuietly(pooled.physical);
+                total--;
+            }
+            idle.clear();
+            notifyAll();
+        }
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    // a physical connection; each borrow hands out a fresh proxy whose close() returns it to the pool
+    private class PooledConnection {
+        final Connection physical;
+        long lastUsed;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        Connection lease() {
+            boolean[] released = {false};
+            return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "close":
+                                synchronized (released) {
+                                    if (released[0]) return null;
+                                    released[0] = true;
+                                }
+                                release(this);
+                                return null;
+                            case "isClosed":
+                                return released[0] || physical.isClosed();
+                            case "unwrap":
+                                return ((Class<?>) args[0]).isInstance(proxy) ? proxy : physical.unwrap((Class<?>) args[0]);
+                            case "isWrapperFor":
+                                return ((Class<?>) args[0]).isInstance(proxy) || physical.isWrapperFor((Class<?>) args[0]);
+                            case "equals":
+                                return proxy == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "toString":
+                                return "Pooled" + physical;
+                        }
+                        if (released[0]) throw new SQLException("Connection has been returned to the pool.");
+                        try {
+                            // statements come back instrumented, see QueryMonitor
+                            return QueryMonitor.wrap(method.invoke(physical, args), method, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+    }
+
+    // DataSource plumbing
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Credentials are configured in the pool URL.");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return DriverManager.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        DriverManager.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        DriverManager.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) return iface.cast(this);
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+}
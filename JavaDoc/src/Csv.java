@@ -0,0 +1,109 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Minimal RFC 4180 CSV support: quoted fields, doubled quotes and line breaks inside quotes.
+public class Csv {
+    // Streams records from a reader; only the current record is held in memory.
+    public static class Reader implements AutoCloseable {
+        private final java.io.Reader in;
+        private long lineNumber = 1;
+        private long recordLine;
+        private int peeked = -2;
+
+        public Reader(java.io.Reader in) {
+            this.in = in;
+        }
+
+        // line the last returned record started on
+        public long getLineNumber() {
+            return recordLine;
+        }
+
+        // next record, or null at end of input
+        public List<String> next() throws IOException {
+            int c = read();
+            while (c == '\r' || c == '\n') { // skip blank lines
+                endLine(c);
+                c = read();
+            }
+            if (c == -1) return null;
+            recordLine = lineNumber;
+
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+
+            while (true) {
+                if (quoted) {
+                    if (c == -1) throw new IOException("Unterminated quoted field at line " + lineNumber);
+                    if (c == '"') {
+                        if (peek() == '"') {
+                            field.append('"');
+                            read();
+                        } else {
+                            quoted = false;
+                        }
+                    } else {
+                        if (c == '\n' || (c == '\r' && peek() != '\n')) lineNumber++;
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n' || c == '\r' || c == -1) {
+                    endLine(c);
+                    fields.add(field.toString());
+                    return fields;
+                } else {
+                    field.append((char) c);
+                }
+                c = read();
+            }
+        }
+
+        private void endLine(int c) throws IOException {
+            if (c == -1) return;
+            if (c == '\r' && peek() == '\n') read();
+            lineNumber++;
+        }
+
+        private int read() throws IOException {
+            if (peeked != -2) {
+                int c = peeked;
+                peeked = -2;
+                return c;
+            }
+            return in.read();
+        }
+
+        private int peek() throws IOException {
+            if (peeked == -2) peeked = in.read();
+            return peeked;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    public static String escape(String value) {
+        if (value == null) return "";
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    public static String join(List<String> values) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) line.append(',');
+            line.append(escape(values.get(i)));
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,370 @@
+import javax.sql.DataSource;
+import javax.swing.*;
+import java.awt.*;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.List;
+
+// Bulk import of clients, doctors and appointments from CSV files with a header row.
+// The file is streamed record by record and written with JDBC batches, one transaction per batch.
+// Rows that cannot be parsed or inserted are written with the reason to a separate rejects file.
+//
+//   clients:      first_name,last_name,email,phone,age[,registration_date]
+//   doctors:      first_name,last_name,specialization,email,phone,years_of_exp
+//   appointments: doctor_email,client_email,date,reason[,status]
+public class CsvImporter {
+    public static final int DEFAULT_BATCH_SIZE = Integer.getInteger("javadoc.import.batchSize", 1000);
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd[ HH:mm[:ss]]");
+
+    public enum Kind {
+        CLIENTS("INSERT INTO Clients (first_name, last_name, email, phone, age, registration_date) VALUES (?, ?, ?, ?, ?, COALESCE(?, GETDATE()))",
+                "first_name", "last_name", "email", "phone", "age"),
+        DOCTORS("INSERT INTO Doctors (first_name, last_name, specialization_id, email, phone, years_of_exp) VALUES (?, ?, ?, ?, ?, ?)",
+                "first_name", "last_name", "specialization", "email", "phone", "years_of_exp"),
+        APPOINTMENTS("INSERT INTO Appointments (doctor_id, client_id, date, reason, status) VALUES (?, ?, ?, ?, ?)",
+                "doctor_email", "client_email", "date", "reason");
+
+        final String insert;
+        final String[] required;
+
+        Kind(String insert, String... required) {
+            this.insert = insert;
+            this.required = required;
+        }
+    }
+
+    public interface Progress {
+        void update(long read, long imported, long rejected);
+    }
+
+    public static class Result {
+        public final long read;
+        public final long imported;
+        public final long rejected;
+        public final long elapsedMillis;
+        public final Path rejectFile;
+
+        Result(long read, long imported, long rejected, long elapsedMillis, Path rejectFile) {
+            this.read = read;
+            this.imported = imported;
+            this.rejected = rejected;
+            this.elapsedMillis = elapsedMillis;
+            this.rejectFile = rejectFile;
+        }
+
+        public double getRowsPerSecond() {
+            return elapsedMillis == 0 ? imported : imported * 1000.0 / elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Read %d rows, imported %d, rejected %d in %.1f s (%.0f rows/s)%s",
+                    read, imported, rejected, elapsedMillis / 1000.0, getRowsPerSecond(),
+                    rejected > 0 ? "\nRejected rows: " + rejectFile : "");
+        }
+    }
+
+    // a parsed row waiting in the current batch, kept so a failed batch can be retried row by row
+    private static class Pending {
+        final List<String> fields;
+        final Object[] values;
+
+        Pending(List<String> fields, Object[] values) {
+            this.fields = fields;
+            this.values = values;
+        }
+    }
+
+    private final DataSource dataSource;
+    private final ReferenceCache referenceCache; // optional
+    private final int batchSize;
+
+    // lookups resolved once per import instead of a query per row
+    private Map<String, Integer> specializations;
+    private Map<String, Integer> doctorsByEmail;
+    private Map<String, Integer> clientsByEmail;
+
+    private Map<String, Integer> header;
+    private BufferedWriter rejects;
+    private Path rejectFile;
+    private List<String> headerRow;
+    private long rejected;
+
+    public CsvImporter(DataSource dataSource, ReferenceCache referenceCache, int batchSize) {
+        this.dataSource = dataSource;
+        this.referenceCache = referenceCache;
+        this.batchSize = batchSize;
+    }
+
+    public Result importFile(Kind kind, Path input, Progress progress) throws IOException, SQLException {
+        long start = System.currentTimeMillis();
+        long read = 0, imported = 0;
+        rejected = 0;
+        rejects = null;
+        rejectFile = input.resolveSibling(input.getFileName() + ".rejected.csv");
+
+        try (Csv.Reader csv = new Csv.Reader(Files.newBufferedReader(input, StandardCharsets.UTF_8));
+             Connection conn = dataSource.getConnection()) {
+            headerRow = csv.next();
+            if (headerRow == null) throw new IOException("File is empty: " + input);
+            header = new HashMap<>();
+            for (int i = 0; i < headerRow.size(); i++) {
+                header.put(headerRow.get(i).trim().toLowerCase(), i);
+            }
+            for (String column : kind.required) {
+                if (!header.containsKey(column)) throw new IOException("Missing column '" + column + "' in " + input);
+            }
+
+            loadLookups(kind, conn);
+            conn.setAutoCommit(false);
+
+            List<Pending> batch = new ArrayList<>(batchSize);
+            try (PreparedStatement statement = conn.prepareStatement(kind.insert)) {
+                List<String> fields;
+                while ((fields = csv.next()) != null) {
+                    read++;
+                    Object[] values;
+                    try {
+                        values = parse(kind, fields);
+                    } catch (IllegalArgumentException e) {
+                        reject(fields, e.getMessage());
+                        continue;
+                    }
+
+                    bind(statement, values);
+                    statement.addBatch();
+                    batch.add(new Pending(fields, values));
+
+                    if (batch.size() >= batchSize) {
+                        imported += flush(conn, statement, batch);
+                        if (progress != null) progress.update(read, imported, rejected);
+                    }
+                }
+                imported += flush(conn, statement, batch);
+                if (progress != null) progress.update(read, imported, rejected);
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } finally {
+            if (rejects != null) rejects.close();
+            if (referenceCache != null && kind != Kind.APPOINTMENTS) {
+                referenceCache.invalidate(kind == Kind.DOCTORS ? ReferenceCache.DOCTORS : ReferenceCache.CLIENTS);
+                if (kind == Kind.DOCTORS) referenceCache.invalidate(ReferenceCache.SPECIALIZATIONS);
+            }
+        }
+
+        return new Result(read, imported, rejected, System.currentTimeMillis() - start, rejectFile);
+    }
+
+    private int flush(Connection conn, PreparedStatement statement, List<Pending> batch) throws SQLException, IOException {
+        if (batch.isEmpty()) return 0;
+        int imported;
+        try {
+            statement.executeBatch();
+            conn.commit();
+            imported = batch.size();
+        } catch (SQLException e) {
+            // one bad row fails the whole batch; redo it row by row to find which
+            conn.rollback();
+            statement.clearBatch();
+            imported = 0;
+            for (Pending row : batch) {
+                try {
+                    bind(statement, row.values);
+                    statement.executeUpdate();
+                    conn.commit();
+                    imported++;
+                } catch (SQLException rowError) {
+                    conn.rollback();
+                    reject(row.fields, rowError.getMessage());
+                }
+            }
+        }
+        batch.clear();
+        return imported;
+    }
+
+    private void loadLookups(Kind kind, Connection conn) throws SQLException {
+        if (kind == Kind.DOCTORS) {
+            specializations = loadMap(conn, "SELECT name, specialization_id FROM Specializations");
+        } else if (kind == Kind.APPOINTMENTS) {
+            doctorsByEmail = loadMap(conn, "SELECT email, doctor_id FROM Doctors");
+            clientsByEmail = loadMap(conn, "SELECT email, client_id FROM Clients");
+        }
+    }
+
+    private static Map<String, Integer> loadMap(Connection conn, String query) throws SQLException {
+        Map<String, Integer> map = new HashMap<>();
+        try (Statement statement = conn.createStatement();
+             ResultSet res = statement.executeQuery(query)) {
+            while (res.next()) {
+                map.put(res.getString(1).toLowerCase(), res.getInt(2));
+            }
+        }
+        return map;
+    }
+
+    private Object[] parse(Kind kind, List<String> fields) throws SQLException {
+        switch (kind) {
+            case CLIENTS:
+                return new Object[]{
+                        text(fields, "first_name"), text(fields, "last_name"), text(fields, "email"), text(fields, "phone"),
+                        number(fields, "age"), optionalTimestamp(fields, "registration_date")
+                };
+            case DOCTORS:
+                return new Object[]{
+                        text(fields, "first_name"), text(fields, "last_name"), specializationId(text(fields, "specialization")),
+                        text(fields, "email"), text(fields, "phone"), number(fields, "years_of_exp")
+                };
+            default:
+                Integer doctorId = doctorsByEmail.get(text(fields, "doctor_email").toLowerCase());
+                Integer clientId = clientsByEmail.get(text(fields, "client_email").toLowerCase());
+                if (doctorId == null) throw new IllegalArgumentException("Unknown doctor " + text(fields, "doctor_email"));
+                if (clientId == null) throw new IllegalArgumentException("Unknown client " + text(fields, "client_email"));
+                String status = value(fields, "status");
+                Timestamp date = optionalTimestamp(fields, "date");
+                if (date == null) throw new IllegalArgumentException("Missing date");
+                return new Object[]{doctorId, clientId, date, text(fields, "reason"), status == null || status.isEmpty() ? "scheduled" : status};
+        }
+    }
+
+    // new specializations are committed on their own connection so a rolled back batch cannot orphan an id in the map
+    private int specializationId(String name) throws SQLException {
+        Integer id = specializations.get(name.toLowerCase());
+        if (id != null) return id;
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement statement = conn.prepareStatement("INSERT INTO Specializations (name) VALUES (?)", Statement.RETURN_GENERATED_KEYS)) {
+            statement.setString(1, name);
+            statement.executeUpdate();
+            try (ResultSet keys = statement.getGeneratedKeys()) {
+                if (!keys.next()) throw new SQLException("Failed to create specialization.");
+                specializations.put(name.toLowerCase(), keys.getInt(1));
+                return keys.getInt(1);
+            }
+        }
+    }
+
+    private String value(List<String> fields, String column) {
+        Integer index = header.get(column);
+        return index == null || index >= fields.size() ? null : fields.get(index).trim();
+    }
+
+    private String text(List<String> fields, String column) {
+        String value = value(fields, column);
+        if (value == null || value.isEmpty()) throw new IllegalArgumentException("Missing " + column);
+        return value;
+    }
+
+    private int number(List<String> fields, String column) {
+        String value = text(fields, column);
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + column + ": " + value);
+        }
+    }
+
+    private Timestamp optionalTimestamp(List<String> fields, String column) {
+        String value = value(fields, column);
+        if (value == null || value.isEmpty()) return null;
+        try {
+            return Timestamp.valueOf(value.length() <= 10 ? LocalDate.parse(value).atStartOfDay() : LocalDateTime.parse(value, DATE_TIME));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid " + column + ": " + value);
+        }
+    }
+
+    private static void bind(PreparedStatement statement, Object[] values) throws SQLException {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                statement.setNull(i + 1, Types.TIMESTAMP);
+            } else {
+                statement.setObject(i + 1, values[i]);
+            }
+        }
+    }
+
+    private void reject(List<String> fields, String reason) throws IOException {
+        if (rejects == null) {
+            rejects = Files.newBufferedWriter(rejectFile, StandardCharsets.UTF_8);
+            List<String> columns = new ArrayList<>(headerRow);
+            columns.add("error");
+            rejects.write(Csv.join(columns));
+            rejects.newLine();
+        }
+        List<String> row = new ArrayList<>(fields);
+        row.add(reason);
+        rejects.write(Csv.join(row));
+        rejects.newLine();
+        rejected++;
+    }
+
+    // Import button handler: pick a file and import it in the background while a progress dialog is shown
+    public static void showImportDialog(Component parent, Kind kind, DataSource dataSource, ReferenceCache referenceCache, Runnable onDone) {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(parent) != JFileChooser.APPROVE_OPTION) return;
+        File file = chooser.getSelectedFile();
+
+        JProgressBar bar = new JProgressBar();
+        bar.setIndeterminate(true);
+        bar.setStringPainted(true);
+        bar.setString("Starting...");
+        JDialog dialog = new JDialog(SwingUtilities.getWindowAncestor(parent), "Importing " + file.getName());
+        dialog.add(bar);
+        dialog.setSize(350, 80);
+        dialog.setLocationRelativeTo(parent);
+        dialog.setVisible(true);
+
+        long started = System.currentTimeMillis();
+        AsyncQuery.run(() -> new CsvImporter(dataSource, referenceCache, DEFAULT_BATCH_SIZE).importFile(kind, file.toPath(),
+                (read, imported, rejected) -> {
+                    double seconds = Math.max(1, System.currentTimeMillis() - started) / 1000.0;
+                    String text = String.format("%d imported, %d rejected (%.0f rows/s)", imported, rejected, imported / seconds);
+                    SwingUtilities.invokeLater(() -> bar.setString(text));
+                }),
+                result -> {
+                    dialog.dispose();
+                    JOptionPane.showMessageDialog(parent, result.toString(), "Import finished", JOptionPane.INFORMATION_MESSAGE);
+                    onDone.run();
+                },
+                e -> {
+                    dialog.dispose();
+                    JOptionPane.showMessageDialog(parent, "Import failed.\nError: " + e.getMessage(), "Import Error", JOptionPane.ERROR_MESSAGE);
+                    e.printStackTrace();
+                });
+    }
+
+    // java CsvImporter <clients|doctors|appointments> <file.csv> [batchSize]
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: CsvImporter <clients|doctors|appointments> <file.csv> [batchSize]");
+            System.exit(2);
+        }
+        Kind kind = Kind.valueOf(args[0].toUpperCase());
+        Path input = Paths.get(args[1]);
+        int batchSize = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_BATCH_SIZE;
+
+        Class.forName("com.microsoft.sqlserver.jdbc.SQLServerDriver");
+        try (ConnectionPool pool = new ConnectionPool(Main.DB_URL, 1, 2, 60_000, 10_000)) {
+            long started = System.currentTimeMillis();
+            Result result = new CsvImporter(pool, null, batchSize).importFile(kind, input, (read, imported, rejected) -> {
+                double seconds = Math.max(1, System.currentTimeMillis() - started) / 1000.0;
+                System.out.printf("\r%d read, %d imported, %d rejected (%.0f rows/s)", read, imported, rejected, imported / seconds);
+            });
+            System.out.println();
+            System.out.println(result);
+        }
+    }
+}
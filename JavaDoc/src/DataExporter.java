@@ -0,0 +1,186 @@
+import javax.sql.DataSource;
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.*;
+import java.util.zip.GZIPOutputStream;
+
+// Streams appointments, clients or doctors to a CSV or JSON file for billing/reporting extracts.
+// Rows go straight from a forward-only, read-only cursor to a buffered file channel, so memory use
+// does not depend on the table size.
+public class DataExporter {
+    private static final int FETCH_SIZE = Integer.getInteger("javadoc.export.fetchSize", 5000);
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    // same joins as the frames, plus the primary key
+    public enum Kind {
+        APPOINTMENTS("SELECT a.appointment_id, a.doctor_id, a.client_id, " + AppointmentsFrame.APPOINTMENT_COLUMNS +
+                     " FROM " + AppointmentsFrame.APPOINTMENT_TABLES + " ORDER BY a.appointment_id"),
+        CLIENTS("SELECT client_id, " + ClientsFrame.CLIENT_COLUMNS + " FROM Clients ORDER BY client_id"),
+        DOCTORS("SELECT d.doctor_id, " + DoctorsFrame.DOCTOR_COLUMNS + " FROM " + DoctorsFrame.DOCTOR_TABLES + " ORDER BY d.doctor_id");
+
+        final String query;
+
+        Kind(String query) {
+            this.query = query;
+        }
+    }
+
+    public enum Format { CSV, JSON }
+
+    public static class Result {
+        public final long rows;
+        public final long bytes;
+        public final long elapsedMillis;
+
+        Result(long rows, long bytes, long elapsedMillis) {
+            this.rows = rows;
+            this.bytes = bytes;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public double getRowsPerSecond() {
+            return elapsedMillis == 0 ? rows : rows * 1000.0 / elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            double seconds = Math.max(1, elapsedMillis) / 1000.0;
+            return String.format("Exported %d rows, %.1f MB in %.1f s (%.0f rows/s, %.1f MB/s)",
+                    rows, bytes / 1048576.0, elapsedMillis / 1000.0, getRowsPerSecond(), bytes / 1048576.0 / seconds);
+        }
+    }
+
+    private final DataSource dataSource;
+
+    public DataExporter(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public Result export(Kind kind, Format format, Path output, boolean gzip) throws IOException, SQLException {
+        long start = System.currentTimeMillis();
+        long rows = 0;
+
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             Connection conn = dataSource.getConnection();
+             PreparedStatement statement = conn.prepareStatement(kind.query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            statement.setFetchSize(FETCH_SIZE);
+
+            OutputStream stream = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+            if (gzip) stream = new GZIPOutputStream(stream, BUFFER_SIZE);
+
+            try (Writer out = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+                 ResultSet res = statement.executeQuery()) {
+                ResultSetMetaData meta = res.getMetaData();
+                int columns = meta.getColumnCount();
+                String[] labels = new String[columns];
+                for (int i = 0; i < columns; i++) {
+                    labels[i] = meta.getColumnLabel(i + 1);
+                }
+
+                if (format == Format.CSV) {
+                    writeCsvHeader(out, labels);
+                } else {
+                    out.write("[\n");
+                }
+
+                while (res.next()) {
+                    if (format == Format.CSV) {
+                        writeCsvRow(out, res, columns);
+                    } else {
+                        if (rows > 0) out.write(",\n");
+                        writeJsonRow(out, res, labels);
+                    }
+                    rows++;
+                }
+
+                if (format == Format.JSON) out.write("\n]\n");
+            }
+        }
+        return new Result(rows, Files.size(output), System.currentTimeMillis() - start);
+    }
+
+    private static void writeCsvHeader(Writer out, String[] labels) throws IOException {
+        for (int i = 0; i < labels.length; i++) {
+            if (i > 0) out.write(',');
+            out.write(Csv.escape(labels[i]));
+        }
+        out.write('\n');
+    }
+
+    private static void writeCsvRow(Writer out, ResultSet res, int columns) throws IOException, SQLException {
+        for (int i = 1; i <= columns; i++) {
+            if (i > 1) out.write(',');
+            Object value = res.getObject(i);
+            if (value != null) out.write(Csv.escape(format(value)));
+        }
+        out.write('\n');
+    }
+
+    private static void writeJsonRow(Writer out, ResultSet res, String[] labels) throws IOException, SQLException {
+        out.write('{');
+        for (int i = 0; i < labels.length; i++) {
+            if (i > 0) out.write(',');
+            writeJsonString(out, labels[i]);
+            out.write(':');
+            Object value = res.getObject(i + 1);
+            if (value == null) {
+                out.write("null");
+            } else if (value instanceof Number || value instanceof Boolean) {
+                out.write(value.toString());
+            } else {
+                writeJsonString(out, format(value));
+            }
+        }
+        out.write('}');
+    }
+
+    private static String format(Object value) {
+        if (value instanceof Timestamp) return ((Timestamp) value).toLocalDateTime().toString();
+        return value.toString();
+    }
+
+    private static void writeJsonString(Writer out, String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': out.write("\\\""); break;
+                case '\\': out.write("\\\\"); break;
+                case '\n': out.write("\\n"); break;
+                case '\r': out.write("\\r"); break;
+                case '\t': out.write("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        out.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+            }
+        }
+        out.write('"');
+    }
+
+    // java DataExporter <appointments|clients|doctors> <output> [csv|json]
+    // the output is gzipped when its name ends with .gz
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: DataExporter <appointments|clients|doctors> <output[.gz]> [csv|json]");
+            System.exit(2);
+        }
+        Kind kind = Kind.valueOf(args[0].toUpperCase());
+        Path output = Paths.get(args[1]);
+        Format format = args.length > 2 ? Format.valueOf(args[2].toUpperCase()) : Format.CSV;
+        boolean gzip = output.getFileName().toString().endsWith(".gz");
+
+        Class.forName("com.microsoft.sqlserver.jdbc.SQLServerDriver");
+        try (ConnectionPool pool = new ConnectionPool(Main.DB_URL, 1, 1, 60_000, 10_000)) {
+            System.out.println(new DataExporter(pool).export(kind, format, output, gzip));
+        }
+    }
+}
@@ -0,0 +1,120 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Calls a DeskServer. Answers are parsed with Json; a response other than 2xx becomes an IOException
+// carrying the server's error message and status.
+public class DeskClient {
+    private static final Duration TIMEOUT = Duration.ofSeconds(Long.getLong("javadoc.server.timeoutSeconds", 15L));
+
+    public static class HttpStatusException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        HttpStatusException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+    }
+
+    private final URI base;
+    private final HttpClient http;
+
+    public DeskClient(String baseUrl) {
+        this.base = URI.create(baseUrl.endsWith("/") ? baseUrl : baseUrl + "/");
+        this.http = HttpClient.newBuilder().connectTimeout(TIMEOUT).build();
+    }
+
+    public Object get(String path) throws IOException, InterruptedException {
+        return send(request(path).GET());
+    }
+
+    public Object post(String path, Map<String, ?> body) throws IOException, InterruptedException {
+        return send(request(path).header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(Json.write(body), StandardCharsets.UTF_8)));
+    }
+
+    public Object delete(String path) throws IOException, InterruptedException {
+        return send(request(path).DELETE());
+    }
+
+    // false if the server has no such entry (404), e.g. another desk deleted it first
+    public boolean deleteIfPresent(String path) throws IOException, InterruptedException {
+        try {
+            delete(path);
+            return true;
+        } catch (HttpStatusException e) {
+            if (e.getStatus() == 404) return false;
+            throw e;
+        }
+    }
+
+    public List<ListItem> getSpecializations() throws IOException, InterruptedException {
+        List<ListItem> specializations = new ArrayList<>();
+        for (Object entry : (List<?>) get("specializations")) {
+            Map<?, ?> item = (Map<?, ?>) entry;
+            specializations.add(new ListItem(((Number) item.get("id")).intValue(), (String) item.get("name")));
+        }
+        return specializations;
+    }
+
+    // people lookup on the server's index; kind is "clients" or "doctors"
+    public List<PeopleIndex.Match> lookup(String kind, String text, int limit) throws IOException, InterruptedException {
+        List<PeopleIndex.Match> matches = new ArrayList<>();
+        for (Object entry : (List<?>) get(kind + "/lookup?q=" + encode(text) + "&limit=" + limit)) {
+            Map<?, ?> match = (Map<?, ?>) entry;
+            ListItem item = new ListItem(((Number) match.get("id")).intValue(), (String) match.get("name"));
+            matches.add(new PeopleIndex.Match(item, (String) match.get("detail")));
+        }
+        return matches;
+    }
+
+    // a served value back in the type the frames' row mappers produce: JSON numbers parse as Long or Double,
+    // and dates come as ISO strings
+    public static Object value(Object json, ColumnBlock.Type type) {
+        if (json == null) return null;
+        switch (type) {
+            case INT:
+                return ((Number) json).intValue();
+            case FLOAT:
+                return ((Number) json).floatValue();
+            case TIMESTAMP:
+                return Timestamp.valueOf(LocalDateTime.parse(json.toString()));
+            default:
+                return json.toString();
+        }
+    }
+
+    public static String encode(String value) {
+        return URLEncoder.encode(value == null ? "" : value, StandardCharsets.UTF_8);
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(base.resolve(path.startsWith("/") ? path.substring(1) : path)).timeout(TIMEOUT);
+    }
+
+    private Object send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        HttpResponse<String> response = http.send(request.build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        Object json = response.body().isEmpty() ? null : Json.parse(response.body());
+        if (response.statusCode() / 100 != 2) {
+            Object error = json instanceof Map ? ((Map<?, ?>) json).get("error") : null;
+            throw new HttpStatusException(response.statusCode(), "HTTP " + response.statusCode() + (error != null ? ": " + error : ""));
+        }
+        return json;
+    }
+}
@@ -0,0 +1,485 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Headless backend for many desks: what the clients, doctors and appointments frames list, search, add and
+// delete, as HTTP/JSON over one connection pool, one ReferenceCache and one set of in-memory indexes. Every
+// request runs on its own virtual thread (JDK 21 or later). Database work first takes a permit from a semaphore sized to the
+// pool: ConnectionPool waits for a free connection inside synchronized, which would pin the virtual thread
+// to its carrier, while a thread waiting on the semaphore unmounts.
+//
+//   GET /specializations
+//   GET /clients?registeredFrom=|clientId=&afterKey=&afterSort=        POST /clients       DELETE /clients/{id}
+//   GET /clients/lookup?q=&limit=
+//   GET /doctors?specializationId=&minExp=&minRating=        POST /doctors       DELETE /doctors/{id}
+//   GET /doctors/lookup?q=&limit=
+//   GET /appointments?doctorId=&clientId=&day=&afterKey=&afterSort=   POST /appointments   DELETE /appointments/{id}
+//   GET /appointments/free-slots?doctorId=|specializationId=&from=&duration=&count=
+//   GET /stats
+//
+// Pages hold PagedTableModel.PAGE_SIZE rows of [columns..., key, sort value]; "next" has the afterKey and
+// afterSort for the following page, or is null on the last one. page=N instead reads page N by offset,
+// and count=true answers {"count", "maxKey"} for the same filter. Errors come back as {"error": message}.
+public class DeskServer implements AutoCloseable {
+    private static final int MAX_LOOKUP = 50;
+    private static final int MAX_FREE_SLOTS = 50;
+
+    // status and message of a request that cannot be served
+    private static class HttpError extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private static class Request {
+        final String method;
+        final List<String> path; // segments after the context, e.g. ["42"] for DELETE /clients/42
+        final Map<String, String> params = new HashMap<>();
+        final Map<String, Object> body;
+
+        Request(HttpExchange exchange) throws IOException {
+            method = exchange.getRequestMethod();
+            String context = exchange.getHttpContext().getPath();
+            path = new ArrayList<>();
+            for (String segment : exchange.getRequestURI().getPath().substring(context.length()).split("/")) {
+                if (!segment.isEmpty()) path.add(segment);
+            }
+            String query = exchange.getRequestURI().getRawQuery();
+            if (query != null) {
+                for (String pair : query.split("&")) {
+                    int eq = pair.indexOf('=');
+                    if (eq > 0) params.put(decode(pair.substring(0, eq)), decode(pair.substring(eq + 1)));
+                }
+            }
+            body = "POST".equals(method) ? readBody(exchange) : Map.of();
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Map<String, Object> readBody(HttpExchange exchange) throws IOException {
+            try (InputStream in = exchange.getRequestBody()) {
+                Object json = Json.parse(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                if (!(json instanceof Map)) throw new IllegalArgumentException("Expected a JSON object");
+                return (Map<String, Object>) json;
+            }
+        }
+
+        private static String decode(String s) {
+            return URLDecoder.decode(s, StandardCharsets.UTF_8);
+        }
+
+        String param(String name) {
+            String value = params.get(name);
+            return value == null || value.isBlank() ? null : value.trim();
+        }
+
+        Integer intParam(String name) {
+            String value = param(name);
+            return value == null ? null : Integer.valueOf(value);
+        }
+
+        String string(String name) {
+            Object value = body.get(name);
+            if (value == null) throw new IllegalArgumentException("Missing " + name);
+            return value.toString();
+        }
+
+        int integer(String name) {
+            Object value = body.get(name);
+            if (!(value instanceof Number)) throw new IllegalArgumentException("Missing or non-numeric " + name);
+            return ((Number) value).intValue();
+        }
+
+        int id() throws HttpError {
+            if (path.size() != 1) throw new HttpError(404, "Not found");
+            return Integer.parseInt(path.get(0));
+        }
+    }
+
+    private interface Route {
+        // the response body, turned into JSON
+        Object handle(Request request) throws Exception;
+    }
+
+    private interface DbWork<T> {
+        T run(Connection conn) throws SQLException;
+    }
+
+    private final ConnectionPool pool;
+    private final ReferenceCache referenceCache;
+    private final PeopleIndex clientIndex;
+    private final PeopleIndex doctorIndex;
+    private final ScheduleIndex scheduleIndex;
+    private final Semaphore connections;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public DeskServer(ConnectionPool pool, ReferenceCache referenceCache, PeopleIndex clientIndex, PeopleIndex doctorIndex,
+                      ScheduleIndex scheduleIndex, int maxConnections, int port) throws IOException {
+        this.pool = pool;
+        this.referenceCache = referenceCache;
+        this.clientIndex = clientIndex;
+        this.doctorIndex = doctorIndex;
+        this.scheduleIndex = scheduleIndex;
+        this.connections = new Semaphore(maxConnections, true);
+
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        route("/specializations", request -> gated(referenceCache::getSpecializations).stream().map(DeskServer::item).toList());
+        route("/clients", this::clients);
+        route("/doctors", this::doctors);
+        route("/appointments", this::appointments);
+        route("/stats", request -> stats());
+    }
+
+    public void start() {
+        server.start();
+        System.out.println("Desk server listening on port " + getPort());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void route(String context, Route route) {
+        server.createContext(context, exchange -> {
+            requests.incrementAndGet();
+            int status = 200;
+            Object response;
+            try {
+                Request request = new Request(exchange);
+                response = route.handle(request);
+                if ("POST".equals(request.method)) status = 201;
+            } catch (HttpError e) {
+                status = e.status;
+                response = error(e.getMessage());
+            } catch (IllegalArgumentException | DateTimeParseException e) { // NumberFormatException too
+                status = 400;
+                response = error(e.getMessage());
+            } catch (SQLTransientConnectionException e) {
+                status = 503;
+                response = error(e.getMessage());
+            } catch (SQLException e) {
+                status = BookingWriter.isRejection(e) ? 409 : 500;
+                response = error(e.getMessage());
+            } catch (Exception e) {
+                status = 500;
+                response = error(e.toString());
+                e.printStackTrace();
+            }
+            if (status >= 500) failures.incrementAndGet();
+
+            byte[] bytes = Json.write(response).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+    }
+
+    private static Map<String, Object> error(String message) {
+        return Map.of("error", message == null ? "" : message);
+    }
+
+    // database work, queued on the semaphore rather than inside the pool
+    private <T> T gated(AsyncQuery.Task<T> task) throws Exception {
+        connections.acquire();
+        try {
+            return task.call();
+        } finally {
+            connections.release();
+        }
+    }
+
+    private <T> T withConnection(DbWork<T> work) throws Exception {
+        return gated(() -> {
+            try (Connection conn = pool.getConnection()) {
+                return work.run(conn);
+            }
+        });
+    }
+
+    private Object clients(Request request) throws Exception {
+        if (request.path.equals(List.of("lookup"))) return lookup(clientIndex, request);
+        switch (request.method) {
+            case "GET": {
+                if (!request.path.isEmpty()) throw new HttpError(404, "Not found");
+                String registeredFrom = request.param("registeredFrom");
+                Integer clientId = request.intParam("clientId");
+                PagedTableModel.Query q = clientId != null ? ClientsFrame.clientQuery(clientId)
+                        : registeredFrom == null ? ClientsFrame.allClients() : ClientsFrame.searchQuery(registeredFrom);
+                return page(q, ClientsFrame.CLIENT_TYPES, request);
+            }
+            case "POST": {
+                String firstName = request.string("firstName");
+                String lastName = request.string("lastName");
+                String email = request.string("email");
+                String phone = request.string("phone");
+                int age = request.integer("age");
+                Map<String, Object> created = withConnection(conn -> {
+                    try (PreparedStatement statement = conn.prepareStatement("INSERT INTO Clients (first_name, last_name, email, phone, age) " +
+                            "OUTPUT INSERTED.client_id, INSERTED.registration_date VALUES (?, ?, ?, ?, ?)")) {
+                        statement.setString(1, firstName);
+                        statement.setString(2, lastName);
+                        statement.setString(3, email);
+                        statement.setString(4, phone);
+                        statement.setInt(5, age);
+                        try (ResultSet res = statement.executeQuery()) {
+                            res.next();
+                            return Map.of("id", res.getInt("client_id"), "registrationDate", res.getTimestamp("registration_date"));
+                        }
+                    }
+                });
+                clientIndex.put((Integer) created.get("id"), firstName, lastName, email, phone);
+                referenceCache.invalidate(ReferenceCache.CLIENTS);
+                return created;
+            }
+            case "DELETE":
+                return deactivate("UPDATE Clients SET is_active = 0 WHERE client_id = ? AND is_active = 1", request.id(),
+                        clientIndex, ReferenceCache.CLIENTS);
+            default:
+                throw new HttpError(405, "Method not allowed");
+        }
+    }
+
+    private Object doctors(Request request) throws Exception {
+        if (request.path.equals(List.of("lookup"))) return lookup(doctorIndex, request);
+        switch (request.method) {
+            case "GET": {
+                if (!request.path.isEmpty()) throw new HttpError(404, "Not found");
+                String minRating = request.param("minRating");
+                List<Object> params = new ArrayList<>();
+                String query = DoctorsFrame.searchQuery(request.intParam("specializationId"), request.intParam("minExp"),
+                        minRating == null ? null : Float.valueOf(minRating), params);
+                return withConnection(conn -> {
+                    List<Object[]> rows = new ArrayList<>();
+                    try (PreparedStatement statement = conn.prepareStatement(query)) {
+                        for (int i = 0; i < params.size(); i++) statement.setObject(i + 1, params.get(i));
+                        statement.setFetchSize(TableLoader.CHUNK_SIZE);
+                        try (ResultSet res = statement.executeQuery()) {
+                            while (res.next()) rows.add(DoctorsFrame.mapDoctor(res));
+                        }
+                    }
+                    return Map.of("rows", rows);
+                });
+            }
+            case "POST": {
+                String firstName = request.string("firstName");
+                String lastName = request.string("lastName");
+                String email = request.string("email");
+                String phone = request.string("phone");
+                // an id, or a name that is added to Specializations when new, as the doctors frame does
+                String specialization = request.body.containsKey("specializationId") ? null : request.string("specialization");
+                Integer givenSpecialization = specialization == null ? request.integer("specializationId") : null;
+                int experience = request.integer("yearsOfExp");
+                Map<String, Object> created = withConnection(conn -> {
+                    int specializationId = givenSpecialization != null ? givenSpecialization
+                            : DoctorsFrame.getOrCreateSpecialization(conn, specialization, referenceCache);
+                    try (PreparedStatement statement = conn.prepareStatement("INSERT INTO Doctors (first_name, last_name, specialization_id, email, phone, years_of_exp) " +
+                            "OUTPUT INSERTED.doctor_id, INSERTED.rating VALUES (?, ?, ?, ?, ?, ?)")) {
+                        statement.setString(1, firstName);
+                        statement.setString(2, lastName);
+                        statement.setInt(3, specializationId);
+                        statement.setString(4, email);
+                        statement.setString(5, phone);
+                        statement.setInt(6, experience);
+                        try (ResultSet res = statement.executeQuery()) {
+                            res.next();
+                            return Map.of("id", res.getInt("doctor_id"), "rating", res.getFloat("rating"), "specializationId", specializationId);
+                        }
+                    }
+                });
+                doctorIndex.put((Integer) created.get("id"), firstName, lastName, email, phone);
+                referenceCache.invalidate(ReferenceCache.DOCTORS);
+                return created;
+            }
+            case "DELETE":
+                return deactivate("UPDATE Doctors SET is_active = 0 WHERE doctor_id = ? AND is_active = 1", request.id(),
+                        doctorIndex, ReferenceCache.DOCTORS);
+            default:
+                throw new HttpError(405, "Method not allowed");
+        }
+    }
+
+    private Object appointments(Request request) throws Exception {
+        if (request.path.equals(List.of("free-slots"))) return freeSlots(request);
+        switch (request.method) {
+            case "GET": {
+                if (!request.path.isEmpty()) throw new HttpError(404, "Not found");
+                Integer doctorId = request.intParam("doctorId");
+                Integer clientId = request.intParam("clientId");
+                String day = request.param("day");
+                PagedTableModel.Query q = doctorId == null && clientId == null && day == null ? AppointmentsFrame.allAppointments()
+                        : AppointmentsFrame.searchQuery(doctorId, clientId, day == null ? null : LocalDate.parse(day));
+                return page(q, AppointmentsFrame.APPOINTMENT_TYPES, request);
+            }
+            case "POST": {
+                int doctorId = request.integer("doctorId");
+                int clientId = request.integer("clientId");
+                LocalDateTime date = LocalDateTime.parse(request.string("date"));
+                int duration = request.body.containsKey("durationMinutes") ? request.integer("durationMinutes") : ScheduleIndex.DEFAULT_DURATION_MINUTES;
+                String reason = request.string("reason");
+                // the overlap trigger answers 50001, turned into 409 like any other rejection
+                int id = withConnection(conn -> {
+                    try (PreparedStatement statement = conn.prepareStatement(
+                            "INSERT INTO Appointments (doctor_id, client_id, date, duration_minutes, reason, status) " +
+                            "OUTPUT INSERTED.appointment_id VALUES (?, ?, ?, ?, ?, 'scheduled')")) {
+                        statement.setInt(1, doctorId);
+                        statement.setInt(2, clientId);
+                        statement.setTimestamp(3, Timestamp.valueOf(date));
+                        statement.setInt(4, duration);
+                        statement.setString(5, reason);
+                        try (ResultSet res = statement.executeQuery()) {
+                            res.next();
+                            return res.getInt(1);
+                        }
+                    }
+                });
+                scheduleIndex.put(id, doctorId, date, duration);
+                return Map.of("id", id);
+            }
+            case "DELETE": {
+                int id = request.id();
+                List<Integer> deleted = withConnection(conn -> AppointmentsFrame.deleteAppointments(conn, List.of(id)));
+                if (deleted.isEmpty()) throw new HttpError(404, "No appointment " + id);
+                scheduleIndex.remove(id);
+                return Map.of("id", id);
+            }
+            default:
+                throw new HttpError(405, "Method not allowed");
+        }
+    }
+
+    // one keyset page, continuing after afterKey/afterSort when given; or the count of the rows
+    private Map<String, Object> page(PagedTableModel.Query q, ColumnBlock.Type[] types, Request request) throws Exception {
+        if (request.param("count") != null) {
+            Object[] count = gated(() -> PagedTableModel.count(pool, q));
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("count", count[0]);
+            json.put("maxKey", count[1]);
+            return json;
+        }
+        Integer afterKey = request.intParam("afterKey");
+        String afterSort = request.param("afterSort");
+        Object sortValue = afterSort == null ? null : Timestamp.valueOf(LocalDateTime.parse(afterSort)); // both sort columns are dates
+        Integer index = request.intParam("page");
+        if (index != null && index < 0) throw new IllegalArgumentException("Negative page");
+        List<Object[]> rows = gated(() -> PagedTableModel.fetchPage(pool, q, new ColumnBlock.Schema(types), index == null ? 0 : index, sortValue, afterKey));
+
+        Map<String, Object> next = null;
+        if (rows.size() == PagedTableModel.PAGE_SIZE) {
+            Object[] last = rows.get(rows.size() - 1);
+            next = new LinkedHashMap<>();
+            next.put("afterKey", last[types.length]);
+            next.put("afterSort", last[types.length + 1]);
+        }
+        Map<String, Object> page = new LinkedHashMap<>();
+        page.put("rows", rows);
+        page.put("next", next);
+        return page;
+    }
+
+    private Map<String, Object> deactivate(String update, int id, PeopleIndex index, String cacheKey) throws Exception {
+        int updated = withConnection(conn -> {
+            try (PreparedStatement statement = conn.prepareStatement(update)) {
+                statement.setInt(1, id);
+                return statement.executeUpdate();
+            }
+        });
+        if (updated == 0) throw new HttpError(404, "No active entry " + id);
+        index.remove(id);
+        referenceCache.invalidate(cacheKey);
+        return Map.of("id", id);
+    }
+
+    // answered from memory, no connection needed
+    private static List<Map<String, Object>> lookup(PeopleIndex index, Request request) throws HttpError {
+        String text = request.param("q");
+        if (text == null) throw new HttpError(400, "Missing q");
+        Integer limit = request.intParam("limit");
+        List<Map<String, Object>> matches = new ArrayList<>();
+        for (PeopleIndex.Match match : index.search(text, Math.min(limit == null ? 10 : limit, MAX_LOOKUP))) {
+            Map<String, Object> json = item(match.getItem());
+            json.put("detail", match.getDetail());
+            matches.add(json);
+        }
+        return matches;
+    }
+
+    private Object freeSlots(Request request) throws HttpError {
+        if (!scheduleIndex.isLoaded()) throw new HttpError(503, "The schedule is still loading");
+        Integer doctorId = request.intParam("doctorId");
+        Integer specializationId = request.intParam("specializationId");
+        String from = request.param("from");
+        LocalDateTime start = from == null ? LocalDateTime.now() : LocalDateTime.parse(from);
+        Integer duration = request.intParam("duration");
+        Integer count = request.intParam("count");
+        int minutes = duration == null ? ScheduleIndex.DEFAULT_DURATION_MINUTES : duration;
+        if (minutes < 5 || minutes > ScheduleIndex.MAX_DURATION_MINUTES) {
+            throw new HttpError(400, "Duration must be between 5 and " + ScheduleIndex.MAX_DURATION_MINUTES + " minutes");
+        }
+        int slots = Math.min(count == null ? 10 : count, MAX_FREE_SLOTS);
+
+        List<ScheduleIndex.Slot> found;
+        if (doctorId != null) found = scheduleIndex.nextFreeSlots(doctorId, start, minutes, slots);
+        else if (specializationId != null) found = scheduleIndex.nextFreeSlotsForSpecialization(specializationId, start, minutes, slots);
+        else throw new IllegalArgumentException("Give a doctorId or a specializationId");
+
+        List<Map<String, Object>> json = new ArrayList<>();
+        for (ScheduleIndex.Slot slot : found) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("doctorId", slot.getDoctorId());
+            entry.put("doctor", doctorIndex.getName(slot.getDoctorId()));
+            entry.put("start", slot.getStart());
+            entry.put("end", slot.getEnd());
+            json.add(entry);
+        }
+        return json;
+    }
+
+    private Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("requests", requests.get());
+        stats.put("failures", failures.get());
+        stats.put("waitingForConnection", connections.getQueueLength());
+        stats.put("pool", pool.toString());
+        stats.put("cache", referenceCache.toString());
+        return stats;
+    }
+
+    private static Map<String, Object> item(ListItem item) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", item.getId());
+        json.put("name", item.getName());
+        return json;
+    }
+
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+    }
+}
@@ -1,25 +1,70 @@
+import javax.sql.DataSource;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
 
 public class DoctorsFrame {
-    private Connection conn; //database conn
+    private DataSource dataSource; //pooled database connections
+    private ReferenceCache referenceCache; //shared specialization/doctor lists
+    private SearchCache searchCache; // results of earlier searches
     private JFrame frame; // main frame for doctors
     private JTable table; // table with data
     private DefaultTableModel model; //default col/row titles
-    private JComboBox<String> cmbSpecialization; //combo box for spec criteria
+    private IndexedRowSorter sorter; // in-memory filter and sort
+    private JComboBox<ListItem> cmbSpecialization; //combo box for spec criteria
     private JTextField minExperienceInput; //mix exp criteria
     private JTextField minRatingInput; //min rating criteria
-
-    public DoctorsFrame(Connection conn) {
-        this.conn = conn;
+    private JProgressBar progress; // load progress
+    private TableLoader loader; // background loader for the table
+    private ChangeFeed changeFeed; // live updates from other desks
+    private PeopleDirectory doctorIndex; // type-ahead lookup shared with the appointments frame
+    private DeskClient server; // set on a desk attached to a DeskServer, which then serves every read and write
+    private final ChangeFeed.Listener changeListener = this::applyChanges;
+
+    private static final int ID_COLUMN = 7; // hidden, in the model only
+    private static final int SPECIALIZATION_ID_COLUMN = 8; // hidden, what the specialization filter matches
+
+    static final String DOCTOR_COLUMNS = "d.first_name, d.last_name, s.name, d.email, d.phone, d.years_of_exp, d.rating";
+    static final String DOCTOR_TABLES = "Doctors d JOIN Specializations s ON d.specialization_id = s.specialization_id";
+    static final String SELECT_DOCTORS = "SELECT d.doctor_id, d.specialization_id, " + DOCTOR_COLUMNS + " FROM " + DOCTOR_TABLES + " WHERE d.is_active = 1 ";
+    // the model's columns including the hidden ids, for search results kept in the SearchCache
+    static final ColumnBlock.Type[] DOCTOR_TYPES = {ColumnBlock.Type.CATEGORY, ColumnBlock.Type.CATEGORY, ColumnBlock.Type.CATEGORY,
+                                                    ColumnBlock.Type.TEXT, ColumnBlock.Type.TEXT, ColumnBlock.Type.INT,
+                                                    ColumnBlock.Type.FLOAT, ColumnBlock.Type.INT, ColumnBlock.Type.INT};
+
+    // attached to a server: dataSource, the caches and changeFeed are null, and there is no import
+    public DoctorsFrame(DataSource dataSource, ReferenceCache referenceCache, SearchCache searchCache, ChangeFeed changeFeed, PeopleDirectory doctorIndex,
+                        DeskClient server) {
+        this.dataSource = dataSource;
+        this.referenceCache = referenceCache;
+        this.searchCache = searchCache;
+        this.changeFeed = changeFeed;
+        this.doctorIndex = doctorIndex;
+        this.server = server;
         frame = new JFrame("Doctors Management");
         frame.setSize(700, 450);
         frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
 
-        model = new DefaultTableModel(new String[]{"First Name", "Last Name", "Specialization", "Email", "Phone", "Experience", "Rating"}, 0);
+        model = new DefaultTableModel(new String[]{"First Name", "Last Name", "Specialization", "Email", "Phone", "Experience", "Rating", "ID",
+                                                   "Specialization ID"}, 0);
         table = new JTable(model);
+        table.removeColumn(table.getColumnModel().getColumn(SPECIALIZATION_ID_COLUMN));
+        table.removeColumn(table.getColumnModel().getColumn(ID_COLUMN));
+        sorter = new IndexedRowSorter(model);
+        table.setRowSorter(sorter);
+        progress = new JProgressBar();
+        loader = new TableLoader(dataSource, model, progress, e -> showErrorDialog("Failed to load doctors.", e));
         loadDoctors();
 
         JPanel panel = new JPanel(new FlowLayout());
@@ -27,70 +72,125 @@ public class DoctorsFrame {
         JButton btnDelete = new JButton("Delete");
         JButton btnSearch = new JButton("Search");
         JButton btnReset = new JButton("Reset");
+        JButton btnImport = new JButton("Import");
 
         panel.add(btnAdd);
         panel.add(btnDelete);
         panel.add(btnSearch);
         panel.add(btnReset);
+        if (server == null) panel.add(btnImport);
+        panel.add(progress);
 
         btnAdd.addActionListener(e -> addDoctor());
         btnDelete.addActionListener(e -> deleteDoctor());
         btnSearch.addActionListener(e -> searchDoctors());
         btnReset.addActionListener(e -> loadDoctors());
+        btnImport.addActionListener(e -> CsvImporter.showImportDialog(frame, CsvImporter.Kind.DOCTORS, dataSource, referenceCache, this::loadDoctors));
 
         JPanel searchPanel = new JPanel(new FlowLayout());
         searchPanel.add(new JLabel("Specialization:"));
         cmbSpecialization = new JComboBox<>();
         loadSpecializations();
+        cmbSpecialization.addActionListener(e -> filterLocally());
         searchPanel.add(cmbSpecialization);
 
         searchPanel.add(new JLabel("Min Exp:"));
         minExperienceInput = new JTextField(5);
+        minExperienceInput.getDocument().addDocumentListener(IndexedRowSorter.onEdit(this::filterLocally));
         searchPanel.add(minExperienceInput);
 
         searchPanel.add(new JLabel("Min Rating:"));
         minRatingInput = new JTextField(5);
+        minRatingInput.getDocument().addDocumentListener(IndexedRowSorter.onEdit(this::filterLocally));
         searchPanel.add(minRatingInput);
 
         frame.add(new JScrollPane(table), BorderLayout.CENTER);
         frame.add(searchPanel, BorderLayout.NORTH);
         frame.add(panel, BorderLayout.SOUTH);
         frame.setVisible(true);
+
+        if (changeFeed == null) return; // an attached desk sees other desks' edits on Reset
+        changeFeed.addListener(changeListener);
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                changeFeed.removeListener(changeListener);
+            }
+        });
     }
 
-    private void loadDoctors() {
-        model.setRowCount(0);
-        String queryStr = "SELECT d.first_name, d.last_name, s.name, d.email, d.phone, d.years_of_exp, d.rating " +
-                          "FROM Doctors d JOIN Specializations s ON d.specialization_id = s.specialization_id";
-
-        try (Statement stmt = conn.createStatement(); ResultSet res = stmt.executeQuery(queryStr)) {
-            while (res.next()) {
-                model.addRow(new Object[]{
-                        res.getString("first_name"),
-                        res.getString("last_name"),
-                        res.getString("name"),
-                        res.getString("email"),
-                        res.getString("phone"),
-                        res.getInt("years_of_exp"),
-                        res.getFloat("rating")
-                });
+    // doctors are few, so rows are matched by scanning the hidden id column
+    private void applyChanges(ChangeFeed.Changes changes) {
+        Map<Integer, Object[]> upserts = changes.getUpserts(ChangeFeed.DOCTORS);
+        Set<Integer> deletes = changes.getDeletes(ChangeFeed.DOCTORS);
+        if (upserts.isEmpty() && deletes.isEmpty()) return;
+
+        Set<Integer> seen = new HashSet<>();
+        List<Integer> updated = new ArrayList<>();
+        for (int row = model.getRowCount() - 1; row >= 0; row--) {
+            Integer id = (Integer) model.getValueAt(row, ID_COLUMN);
+            if (deletes.contains(id)) {
+                model.removeRow(row);
+                updated.replaceAll(r -> r - 1); // rows below this one moved up
+            } else if (upserts.containsKey(id)) {
+                // written into the row directly: setValueAt would fire an event, and a sorter update, per cell
+                @SuppressWarnings("unchecked")
+                Vector<Object> cells = (Vector<Object>) model.getDataVector().get(row);
+                Object[] values = upserts.get(id);
+                for (int col = 0; col < values.length; col++) cells.set(col, values[col]);
+                updated.add(row);
+                seen.add(id);
             }
-        } catch (SQLException e) {
-            showErrorDialog("Failed to load doctors.", e);
+        }
+        if (!updated.isEmpty()) model.fireTableRowsUpdated(Collections.min(updated), Collections.max(updated));
+        // only the complete list picks up new doctors, a search result would need its filter re-run
+        if (loader.isLoaded(SELECT_DOCTORS)) {
+            upserts.forEach((id, values) -> {
+                if (!seen.contains(id)) model.addRow(values);
+            });
         }
     }
 
-    private void loadSpecializations() {
-        try (Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT name FROM Specializations")) {
-            //default
-            cmbSpecialization.addItem("Any");
-            while (rs.next()) {
-                cmbSpecialization.addItem(rs.getString("name"));
-            }
-        } catch (SQLException e) {
-            showErrorDialog("Failed to load specializations.", e);
+    // every active doctor; the search fields filter them in memory once the last row is in
+    private void loadDoctors() {
+        sorter.setFilters(List.of());
+        if (server != null) loader.loadRows(SELECT_DOCTORS, () -> fetchDoctors("doctors"));
+        else loader.load(SELECT_DOCTORS, DoctorsFrame::mapDoctor);
+    }
+
+    // the rows of GET /doctors, typed like mapDoctor's
+    private List<Object[]> fetchDoctors(String path) throws Exception {
+        List<Object[]> rows = new ArrayList<>();
+        for (Object served : (List<?>) ((Map<?, ?>) server.get(path)).get("rows")) {
+            List<?> cells = (List<?>) served;
+            Object[] row = new Object[DOCTOR_TYPES.length];
+            for (int col = 0; col < row.length; col++) row[col] = DeskClient.value(cells.get(col), DOCTOR_TYPES[col]);
+            rows.add(row);
         }
+        return rows;
+    }
+
+    static Object[] mapDoctor(ResultSet res) throws SQLException {
+        return new Object[]{
+                res.getString("first_name"),
+                res.getString("last_name"),
+                res.getString("name"),
+                res.getString("email"),
+                res.getString("phone"),
+                res.getInt("years_of_exp"),
+                res.getFloat("rating"),
+                res.getInt("doctor_id"),
+                res.getInt("specialization_id")
+        };
+    }
+
+    private void loadSpecializations() {
+        //default
+        cmbSpecialization.addItem(ListItem.ANY);
+        AsyncQuery.Task<List<ListItem>> specializations = server != null ? server::getSpecializations : referenceCache::getSpecializations;
+        AsyncQuery.run(specializations,
+                names -> names.forEach(cmbSpecialization::addItem),
+                e -> showErrorDialog("Failed to load specializations.", e));
     }
 
     private void addDoctor() {
@@ -103,31 +203,61 @@ public class DoctorsFrame {
 
         if (firstName == null || lastName == null || email == null || phone == null || expStr == null || specialization == null) return;
 
+        int experience;
         try {
-            int experience = Integer.parseInt(expStr);
-            int spec_id = getOrCreateSpecialization(specialization);
-
-            String insertDoctor = "INSERT INTO Doctors (first_name, last_name, specialization_id, email, phone, years_of_exp) VALUES (?, ?, ?, ?, ?, ?)";
-            try (PreparedStatement stmt = conn.prepareStatement(insertDoctor)) {
-                stmt.setString(1, firstName);
-                stmt.setString(2, lastName);
-                stmt.setInt(3, spec_id);
-                stmt.setString(4, email);
-                stmt.setString(5, phone);
-                stmt.setInt(6, experience);
-                stmt.executeUpdate();
-            }
-
-            loadDoctors();
-        } catch (SQLException e) {
-            showErrorDialog("Failed to add doctor.", e);
+            experience = Integer.parseInt(expStr);
         } catch (NumberFormatException e) {
             showErrorDialog("Invalid experience value.", e);
+            return;
         }
+
+        AsyncQuery.run(() -> {
+            if (server != null) {
+                Map<String, Object> body = new HashMap<>();
+                body.put("firstName", firstName);
+                body.put("lastName", lastName);
+                body.put("email", email);
+                body.put("phone", phone);
+                body.put("yearsOfExp", experience);
+                body.put("specialization", specialization);
+                Map<?, ?> created = (Map<?, ?>) server.post("doctors", body);
+                return new Object[]{DeskClient.value(created.get("id"), ColumnBlock.Type.INT), DeskClient.value(created.get("rating"), ColumnBlock.Type.FLOAT),
+                                    DeskClient.value(created.get("specializationId"), ColumnBlock.Type.INT)};
+            }
+            try (Connection conn = dataSource.getConnection()) {
+                int spec_id = getOrCreateSpecialization(conn, specialization, referenceCache);
+
+                String insertDoctor = "INSERT INTO Doctors (first_name, last_name, specialization_id, email, phone, years_of_exp) " +
+                                      "OUTPUT INSERTED.doctor_id, INSERTED.rating VALUES (?, ?, ?, ?, ?, ?)";
+                try (PreparedStatement stmt = conn.prepareStatement(insertDoctor)) {
+                    stmt.setString(1, firstName);
+                    stmt.setString(2, lastName);
+                    stmt.setInt(3, spec_id);
+                    stmt.setString(4, email);
+                    stmt.setString(5, phone);
+                    stmt.setInt(6, experience);
+                    try (ResultSet res = stmt.executeQuery()) {
+                        res.next();
+                        return new Object[]{res.getInt("doctor_id"), res.getFloat("rating"), spec_id};
+                    }
+                }
+            }
+        }, inserted -> {
+            // append just the new row instead of reloading the table
+            int doctorId = (Integer) inserted[0];
+            float rating = (Float) inserted[1];
+            model.addRow(new Object[]{firstName, lastName, specialization, email, phone, experience, rating, doctorId, inserted[2]});
+            doctorIndex.put(doctorId, firstName, lastName, email, phone);
+            if (searchCache != null) {
+                searchCache.rowChanged(ChangeFeed.DOCTORS, doctorId,
+                        Map.of(SearchCache.SPECIALIZATION, inserted[2], SearchCache.EXPERIENCE, experience, SearchCache.RATING, rating));
+            }
+            if (referenceCache != null) referenceCache.invalidate(ReferenceCache.DOCTORS);
+        }, e -> showErrorDialog("Failed to add doctor.", e));
     }
 
-    // use when creating doctors to avioid complication
-    private int getOrCreateSpecialization(String specialization) throws SQLException {
+    // use when creating doctors to avioid complication; DeskServer does the same for attached desks
+    static int getOrCreateSpecialization(Connection conn, String specialization, ReferenceCache referenceCache) throws SQLException {
         int specializationId;
 
         String specQuery = "SELECT specialization_id FROM Specializations WHERE name = ?";
@@ -143,6 +273,7 @@ public class DoctorsFrame {
         try (PreparedStatement statement = conn.prepareStatement(insertSpec, Statement.RETURN_GENERATED_KEYS)) {
             statement.setString(1, specialization);
             statement.executeUpdate();
+            referenceCache.invalidate(ReferenceCache.SPECIALIZATIONS);
             ResultSet keys = statement.getGeneratedKeys();
             if (keys.next()) {
                 return keys.getInt(1);
@@ -159,22 +290,33 @@ public class DoctorsFrame {
             return;
         }
 
-        String email = (String) model.getValueAt(row, 3);
-        try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM Doctors WHERE email = ?")) {
-            stmt.setString(1, email);
-            stmt.executeUpdate();
-            loadDoctors();
-        } catch (SQLException e) {
-            showErrorDialog("Failed to delete doctor.", e);
-        }
+        int doctorId = (Integer) model.getValueAt(table.convertRowIndexToModel(row), ID_COLUMN);
+        AsyncQuery.run(() -> {
+            if (server != null) return server.deleteIfPresent("doctors/" + doctorId);
+            try (Connection conn = dataSource.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement("UPDATE Doctors SET is_active = 0 WHERE doctor_id = ? AND is_active = 1")) {
+                stmt.setInt(1, doctorId);
+                return stmt.executeUpdate() > 0;
+            }
+        }, deleted -> {
+            if (deleted) {
+                // the table may have changed meanwhile, so the row is found again by id
+                for (int i = model.getRowCount() - 1; i >= 0; i--) {
+                    if (model.getValueAt(i, ID_COLUMN).equals(doctorId)) model.removeRow(i);
+                }
+                doctorIndex.remove(doctorId);
+                if (searchCache != null) searchCache.rowsDeleted(ChangeFeed.DOCTORS, List.of(doctorId));
+            }
+            if (referenceCache != null) referenceCache.invalidate(ReferenceCache.DOCTORS);
+        }, e -> showErrorDialog("Failed to delete doctor.", e));
     }
 
     private void searchDoctors() {
-        String specialization = (String)cmbSpecialization.getSelectedItem();
+        ListItem specialization = (ListItem) cmbSpecialization.getSelectedItem();
         String minExpStr = minExperienceInput.getText().trim();
         String minRatingStr = minRatingInput.getText().trim();
 
-        boolean hasSpecFilter = specialization != null && !specialization.equals("Any");
+        boolean hasSpecFilter = specialization != null && !specialization.equals(ListItem.ANY);
         boolean hasExpFilter = !minExpStr.isEmpty();
         boolean hasRatingFilter = !minRatingStr.isEmpty();
 
@@ -183,33 +325,112 @@ public class DoctorsFrame {
             return;
         }
 
-        String queryStr = "SELECT d.first_name, d.last_name, s.name, d.email, d.phone, d.years_of_exp, d.rating " +
-                          "FROM Doctors d JOIN Specializations s ON d.specialization_id = s.specialization_id WHERE 1=1";
+        int minExp;
+        float minRating;
+        try {
+            minExp = hasExpFilter ? Integer.parseInt(minExpStr) : 0;
+            minRating = hasRatingFilter ? Float.parseFloat(minRatingStr) : 0;
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(frame, "Invalid number entered.", "Warning", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        // the full list is still loading or was replaced by a search result: the cache or the server answers
+        if (filterLocally()) return;
+        sorter.setFilters(List.of());
+        Integer specializationId = hasSpecFilter ? specialization.getId() : null;
+        Integer experience = hasExpFilter ? minExp : null;
+        Float rating = hasRatingFilter ? minRating : null;
+
+        if (server != null) {
+            String path = "doctors?specializationId=" + (specializationId == null ? "" : specializationId) +
+                          "&minExp=" + (experience == null ? "" : experience) + "&minRating=" + (rating == null ? "" : rating);
+            loader.loadRows(path, () -> fetchDoctors(path));
+            return;
+        }
+        SearchCache.Criteria criteria = searchCriteria(specializationId, experience, rating);
+        SearchCache.Result cached = searchCache.get(criteria);
+        if (cached != null) {
+            List<Object[]> rows = new ArrayList<>(cached.size());
+            for (int row = 0; row < cached.size(); row++) {
+                Object[] values = new Object[DOCTOR_TYPES.length];
+                for (int col = 0; col < values.length; col++) values[col] = cached.getRows().get(row, col);
+                rows.add(values);
+            }
+            loader.show(rows);
+            return;
+        }
 
-        if (hasSpecFilter) queryStr += "AND s.name LIKE ? ";
-        if (hasExpFilter) queryStr += "AND d.years_of_exp >= ? ";
-        if (hasRatingFilter) queryStr += "AND d.rating >= ? ";
-        queryStr += "ORDER BY d.years_of_exp DESC";
+        List<Object> params = new ArrayList<>();
+        String queryStr = searchQuery(specializationId, experience, rating, params);
+        long stamp = searchCache.stamp();
+        loader.load(queryStr, statement -> {
+            for (int i = 0; i < params.size(); i++) statement.setObject(i + 1, params.get(i));
+        }, DoctorsFrame::mapDoctor, () -> searchCache.put(criteria, snapshot(), stamp));
+    }
 
-        try (PreparedStatement statement = conn.prepareStatement(queryStr)) {
-            int index = 1;
-            if (hasSpecFilter) statement.setString(index++, "%" + specialization + "%");
-            if (hasExpFilter) statement.setInt(index++, Integer.parseInt(minExpStr));
-            if (hasRatingFilter) statement.setFloat(index, Float.parseFloat(minRatingStr));
+    // the loaded rows as a cache entry keyed by doctor id
+    private SearchCache.Result snapshot() {
+        ColumnBlock.Schema schema = new ColumnBlock.Schema(DOCTOR_TYPES);
+        ColumnBlock rows = new ColumnBlock(schema, model.getRowCount());
+        Object[] keys = new Object[model.getRowCount()];
+        for (int row = 0; row < keys.length; row++) {
+            Object[] values = new Object[DOCTOR_TYPES.length];
+            for (int col = 0; col < values.length; col++) values[col] = model.getValueAt(row, col);
+            rows.add(values);
+            keys[row] = values[ID_COLUMN];
+        }
+        return new SearchCache.Result(rows, schema, keys, null);
+    }
 
-            ResultSet rs = statement.executeQuery();
-            model.setRowCount(0);
-            while (rs.next()) {
-                model.addRow(new Object[] {
-                        rs.getString("first_name"), rs.getString("last_name"),
-                        rs.getString("name"), rs.getString("email"),
-                        rs.getString("phone"), rs.getInt("years_of_exp"),
-                        rs.getFloat("rating")
-                });
-            }
-        } catch (SQLException e) {
-            showErrorDialog("Failed to search doctors.", e);
+    static SearchCache.Criteria searchCriteria(Integer specializationId, Integer minExp, Float minRating) {
+        Map<String, Object> equal = new HashMap<>();
+        equal.put(SearchCache.SPECIALIZATION, specializationId);
+        Map<String, Object> atLeast = new HashMap<>();
+        atLeast.put(SearchCache.EXPERIENCE, minExp);
+        atLeast.put(SearchCache.RATING, minRating);
+        return new SearchCache.Criteria(ChangeFeed.DOCTORS, equal, atLeast);
+    }
+
+    // Applies the search fields to the loaded doctors when they are the complete active list, on every change.
+    // Returns false if the list is still loading or the table holds a search result; Search then asks the server.
+    private boolean filterLocally() {
+        if (sorter == null || !loader.isLoaded(SELECT_DOCTORS)) return false;
+
+        ListItem specialization = (ListItem) cmbSpecialization.getSelectedItem();
+        String minExpStr = minExperienceInput.getText().trim();
+        String minRatingStr = minRatingInput.getText().trim();
+        List<IndexedRowSorter.Filter> filters = new ArrayList<>();
+        if (specialization != null && !specialization.equals(ListItem.ANY)) {
+            filters.add(IndexedRowSorter.Filter.equalTo(SPECIALIZATION_ID_COLUMN, specialization.getId()));
+        }
+        try {
+            if (!minExpStr.isEmpty()) filters.add(IndexedRowSorter.Filter.between(5, Integer.parseInt(minExpStr), null));
+            if (!minRatingStr.isEmpty()) filters.add(IndexedRowSorter.Filter.between(6, Float.parseFloat(minRatingStr), null));
+        } catch (NumberFormatException e) {
+            return true; // still typing, keep the current filter
+        }
+        sorter.setFilters(filters);
+        return true;
+    }
+
+    // null arguments are not filtered on; the values to bind are added to params
+    static String searchQuery(Integer specializationId, Integer minExp, Float minRating, List<Object> params) {
+        String queryStr = SELECT_DOCTORS;
+
+        if (specializationId != null) {
+            queryStr += "AND d.specialization_id = ? ";
+            params.add(specializationId);
+        }
+        if (minExp != null) {
+            queryStr += "AND d.years_of_exp >= ? ";
+            params.add(minExp);
+        }
+        if (minRating != null) {
+            queryStr += "AND d.rating >= ? ";
+            params.add(minRating);
         }
+        return queryStr + "ORDER BY d.years_of_exp DESC";
     }
 
     private void showErrorDialog(String message, Exception e) {
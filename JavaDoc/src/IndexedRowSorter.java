@@ -0,0 +1,548 @@
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.TableModel;
+import java.util.*;
+
+// Row sorter for the frames' tables that filters and sorts the rows already in memory, without a query.
+// Each column gets an index the first time a filter or sort needs it: the model rows in value order
+// (numbers and dates by value, text case-insensitively) for sorting, range and prefix lookups, and a
+// value -> rows hash for exact matches. Indexes are dropped whenever the model changes, except that a
+// single updated row is patched into them in place, in O(log n) comparisons plus an array shift.
+// Models report a batch of updates (one change feed poll) as one range, which is sorted again once.
+//
+// Drop-in for TableRowSorter as far as JTable is concerned (header clicks, view/model conversion).
+// While a Partial model holds only some of its rows, the sorter passes rows through unsorted and
+// unfiltered, and canFilterLocally() tells the frame to search on the server instead.
+public class IndexedRowSorter extends RowSorter<TableModel> {
+    // order of normalized keys: nulls first, then by value; mixed types fall back to their text
+    private static final Comparator<Object> KEY_ORDER = (a, b) -> {
+        if (a == b) return 0;
+        if (a == null) return -1;
+        if (b == null) return 1;
+        if (a instanceof Comparable && a.getClass() == b.getClass()) return compare((Comparable<?>) a, b);
+        return a.toString().compareTo(b.toString());
+    };
+
+    // models that may hold only part of their rows in memory (PagedTableModel)
+    public interface Partial {
+        boolean isFullyLoaded();
+
+        // starts loading the missing rows if they fit in memory; false if there are too many
+        boolean loadFully();
+
+        // the row's primary key, null while its page is not loaded
+        Object getRowKey(int row);
+    }
+
+    // a filter is answered from the column indexes as a set of model rows
+    public abstract static class Filter {
+        abstract BitSet matches(IndexedRowSorter sorter);
+
+        // the same test for one row, without building the set
+        abstract boolean matches(IndexedRowSorter sorter, int row);
+
+        // text starting with the prefix, ignoring case
+        public static Filter prefix(int column, String prefix) {
+            String lower = prefix.toLowerCase();
+            return new Filter() {
+                @Override
+                BitSet matches(IndexedRowSorter sorter) {
+                    Index index = sorter.index(column);
+                    BitSet rows = new BitSet();
+                    int[] order = index.order();
+                    for (int i = index.lowerBound(lower); i < order.length && index.startsWith(i, lower); i++) {
+                        rows.set(order[i]);
+                    }
+                    return rows;
+                }
+
+                @Override
+                boolean matches(IndexedRowSorter sorter, int row) {
+                    Object key = sorter.index(column).keys[row];
+                    return key instanceof String && ((String) key).startsWith(lower);
+                }
+            };
+        }
+
+        public static Filter equalTo(int column, Object value) {
+            return new Filter() {
+                @Override
+                BitSet matches(IndexedRowSorter sorter) {
+                    BitSet rows = sorter.index(column).byValue().get(key(value));
+                    return rows == null ? new BitSet() : (BitSet) rows.clone();
+                }
+
+                @Override
+                boolean matches(IndexedRowSorter sorter, int row) {
+                    return Objects.equals(sorter.index(column).keys[row], key(value));
+                }
+            };
+        }
+
+        // from inclusive, to exclusive; a null bound is open
+        public static Filter between(int column, Object from, Object to) {
+            return new Filter() {
+                @Override
+                BitSet matches(IndexedRowSorter sorter) {
+                    Index index = sorter.index(column);
+                    int start = from == null ? index.firstNonNull() : index.lowerBound(from);
+                    int[] order = index.order();
+                    int end = to == null ? order.length : index.lowerBound(to);
+                    BitSet rows = new BitSet();
+                    for (int i = start; i < end; i++) rows.set(order[i]);
+                    return rows;
+                }
+
+                @Override
+                boolean matches(IndexedRowSorter sorter, int row) {
+                    Object key = sorter.index(column).keys[row];
+                    if (from == null ? key == null : KEY_ORDER.compare(key, key(from)) < 0) return false;
+                    return to == null || KEY_ORDER.compare(key, key(to)) < 0;
+                }
+            };
+        }
+
+        // rows whose integer key is set in the bitmap, e.g. clients from SpecializationIndex
+        public static Filter keyIn(BitSet keys) {
+            return new Filter() {
+                @Override
+                BitSet matches(IndexedRowSorter sorter) {
+                    BitSet rows = new BitSet();
+                    if (!(sorter.model instanceof Partial)) return rows;
+                    Partial model = (Partial) sorter.model;
+                    for (int i = 0; i < sorter.model.getRowCount(); i++) {
+                        Object key = model.getRowKey(i);
+                        if (key instanceof Integer && keys.get((Integer) key)) rows.set(i);
+                    }
+                    return rows;
+                }
+
+                @Override
+                boolean matches(IndexedRowSorter sorter, int row) {
+                    if (!(sorter.model instanceof Partial)) return false;
+                    Object key = ((Partial) sorter.model).getRowKey(row);
+                    return key instanceof Integer && keys.get((Integer) key);
+                }
+            };
+        }
+
+        // rows matching any of the filters
+        public static Filter anyOf(Filter... filters) {
+            return new Filter() {
+                @Override
+                BitSet matches(IndexedRowSorter sorter) {
+                    BitSet rows = new BitSet();
+                    for (Filter filter : filters) rows.or(filter.matches(sorter));
+                    return rows;
+                }
+
+                @Override
+                boolean matches(IndexedRowSorter sorter, int row) {
+                    for (Filter filter : filters) {
+                        if (filter.matches(sorter, row)) return true;
+                    }
+                    return false;
+                }
+            };
+        }
+    }
+
+    private class Index {
+        private int[] order; // model rows by value, then by model row; sorted on first use
+        private int[] rank;  // model row -> position of its value, equal values share a rank; computed on use
+        private final Object[] keys; // normalized values by model row, see key()
+        private double[] numbers;    // the same keys unboxed, when the column holds only numbers or dates
+        private String[] texts;      // or cast, when it holds only text
+        private Map<Object, BitSet> byValue;
+
+        Index(int column) {
+            int n = model.getRowCount();
+            keys = new Object[n];
+            boolean numeric = true, text = true;
+            for (int i = 0; i < n; i++) {
+                Object key = key(model.getValueAt(i, column));
+                keys[i] = key;
+                numeric &= key == null || key instanceof Double || key instanceof Long;
+                text &= key == null || key instanceof String;
+            }
+            if (numeric) {
+                numbers = new double[n];
+                for (int i = 0; i < n; i++) if (keys[i] != null) numbers[i] = ((Number) keys[i]).doubleValue();
+            } else if (text) {
+                texts = new String[n];
+                for (int i = 0; i < n; i++) texts[i] = (String) keys[i];
+            }
+
+        }
+
+        int[] order() {
+            if (order == null) {
+                int n = keys.length;
+                order = new int[n];
+                for (int i = 0; i < n; i++) order[i] = i;
+                mergeSort(order, new int[n], 0, n, this::compareRows);
+                rank = null;
+            }
+            return order;
+        }
+
+        int[] rank() {
+            int[] order = order();
+            if (rank == null) {
+                rank = new int[order.length];
+                for (int i = 0; i < order.length; i++) {
+                    rank[order[i]] = i > 0 && compareRows(order[i - 1], order[i]) == 0 ? rank[order[i - 1]] : i;
+                }
+            }
+            return rank;
+        }
+
+        // where the row belongs in order under its current key: equal values stay in model order, as
+        // after the merge sort
+        private int position(int row, int length) {
+            int low = 0, high = length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                int c = compareRows(order[mid], row);
+                if (c < 0 || (c == 0 && order[mid] < row)) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+
+        private int compareRows(int a, int b) {
+            boolean nullA = keys[a] == null, nullB = keys[b] == null;
+            if (nullA || nullB) return nullA == nullB ? 0 : nullA ? -1 : 1;
+            if (numbers != null) return Double.compare(numbers[a], numbers[b]);
+            if (texts != null) return texts[a].compareTo(texts[b]);
+            return KEY_ORDER.compare(keys[a], keys[b]);
+        }
+
+        // first position whose value is not below the given one
+        int lowerBound(Object value) {
+            Object key = key(value);
+            int[] order = order();
+            int low = 0, high = order.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (KEY_ORDER.compare(keys[order[mid]], key) < 0) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+
+        int firstNonNull() {
+            int[] order = order();
+            int i = 0;
+            while (i < order.length && keys[order[i]] == null) i++;
+            return i;
+        }
+
+        boolean startsWith(int position, String prefix) {
+            Object key = keys[order()[position]];
+            return key instanceof String && ((String) key).startsWith(prefix);
+        }
+
+        // Re-reads one row after an update and moves it to its new place, without sorting again. False if the
+        // new value no longer fits the unboxed form, then the index is rebuilt on next use.
+        boolean update(int row, int column) {
+            Object key = key(model.getValueAt(row, column));
+            if (Objects.equals(key, keys[row])) return true;
+            if (numbers != null && key != null && !(key instanceof Double || key instanceof Long)) return false;
+            if (texts != null && key != null && !(key instanceof String)) return false;
+
+            int n = order == null ? 0 : order.length;
+            int from = order == null ? 0 : position(row, n); // found under the old key
+            if (byValue != null) {
+                BitSet old = byValue.get(keys[row]);
+                old.clear(row);
+                if (old.isEmpty()) byValue.remove(keys[row]);
+                byValue.computeIfAbsent(key, v -> new BitSet()).set(row);
+            }
+            keys[row] = key;
+            if (numbers != null) numbers[row] = key == null ? 0 : ((Number) key).doubleValue();
+            if (texts != null) texts[row] = (String) key;
+            if (order == null) return true;
+
+            System.arraycopy(order, from + 1, order, from, n - from - 1);
+            int to = position(row, n - 1);
+            System.arraycopy(order, to, order, to + 1, n - to - 1);
+            order[to] = row;
+            rank = null;
+            return true;
+        }
+
+        Map<Object, BitSet> byValue() {
+            if (byValue == null) {
+                byValue = new HashMap<>();
+                for (int row = 0; row < keys.length; row++) {
+                    byValue.computeIfAbsent(keys[row], v -> new BitSet()).set(row);
+                }
+            }
+            return byValue;
+        }
+    }
+
+    private final TableModel model;
+    private final Map<Integer, Index> indexes = new HashMap<>();
+    private List<SortKey> sortKeys = List.of();
+    private List<Filter> filters = List.of();
+    private int[] viewToModel; // null while rows pass through unchanged
+    private int[] modelToView;
+
+    public IndexedRowSorter(TableModel model) {
+        this.model = model;
+    }
+
+    @Override
+    public TableModel getModel() {
+        return model;
+    }
+
+    // true if filters can be answered here, possibly after the missing rows arrive
+    public boolean canFilterLocally() {
+        return !(model instanceof Partial) || ((Partial) model).isFullyLoaded() || ((Partial) model).loadFully();
+    }
+
+    // all filters must match; an empty list shows every row
+    public void setFilters(List<Filter> filters) {
+        this.filters = List.copyOf(filters);
+        if (!filters.isEmpty() && model instanceof Partial) ((Partial) model).loadFully();
+        sort();
+    }
+
+    @Override
+    public void toggleSortOrder(int column) {
+        if (!canFilterLocally()) return; // too many rows to sort here, the server order stays
+        List<SortKey> keys = new ArrayList<>(sortKeys);
+        SortOrder order = SortOrder.ASCENDING;
+        if (!keys.isEmpty() && keys.get(0).getColumn() == column) {
+            order = keys.get(0).getSortOrder() == SortOrder.ASCENDING ? SortOrder.DESCENDING : SortOrder.ASCENDING;
+        }
+        keys.removeIf(key -> key.getColumn() == column);
+        keys.add(0, new SortKey(column, order));
+        setSortKeys(keys.size() > 3 ? keys.subList(0, 3) : keys);
+    }
+
+    @Override
+    public void setSortKeys(List<? extends SortKey> keys) {
+        sortKeys = keys == null ? List.of() : List.copyOf(keys);
+        if (!sortKeys.isEmpty() && model instanceof Partial) ((Partial) model).loadFully();
+        fireSortOrderChanged();
+        sort();
+    }
+
+    @Override
+    public List<? extends SortKey> getSortKeys() {
+        return sortKeys;
+    }
+
+    @Override
+    public int convertRowIndexToModel(int index) {
+        return viewToModel == null ? index : viewToModel[index];
+    }
+
+    @Override
+    public int convertRowIndexToView(int index) {
+        if (modelToView == null) return index;
+        return index < 0 || index >= modelToView.length ? -1 : modelToView[index];
+    }
+
+    @Override
+    public int getViewRowCount() {
+        return viewToModel == null ? model.getRowCount() : viewToModel.length;
+    }
+
+    @Override
+    public int getModelRowCount() {
+        return model.getRowCount();
+    }
+
+    @Override
+    public void modelStructureChanged() {
+        sortKeys = List.of();
+        filters = List.of();
+        changed();
+    }
+
+    @Override
+    public void allRowsChanged() {
+        changed();
+    }
+
+    @Override
+    public void rowsInserted(int firstRow, int endRow) {
+        changed();
+    }
+
+    @Override
+    public void rowsDeleted(int firstRow, int endRow) {
+        changed();
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow) {
+        if (firstRow == endRow) updated(firstRow);
+        else changed();
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow, int column) {
+        rowsUpdated(firstRow, endRow);
+    }
+
+    private void changed() {
+        indexes.clear();
+        sort();
+    }
+
+    // One row edited (a ChangeFeed update): its indexes are patched and the row is taken out of the view
+    // and put back where the filters and sort keys place it now, testing and comparing only that row.
+    private void updated(int row) {
+        if (row < 0 || row >= model.getRowCount() || (model instanceof Partial && !((Partial) model).isFullyLoaded())) {
+            changed();
+            return;
+        }
+        indexes.entrySet().removeIf(entry -> !entry.getValue().update(row, entry.getKey()));
+        if (viewToModel == null) return; // rows pass through, the table repaints the row itself
+
+        boolean visible = true;
+        for (Filter filter : filters) visible &= filter.matches(this, row);
+        Index[] columns = new Index[sortKeys.size()];
+        boolean[] descending = new boolean[sortKeys.size()];
+        for (int k = 0; k < sortKeys.size(); k++) {
+            columns[k] = index(sortKeys.get(k).getColumn());
+            descending[k] = sortKeys.get(k).getSortOrder() == SortOrder.DESCENDING;
+        }
+        RowOrder order = (a, b) -> {
+            for (int k = 0; k < columns.length; k++) {
+                int c = columns[k].compareRows(a, b);
+                if (c != 0) return descending[k] ? -c : c;
+            }
+            return Integer.compare(a, b);
+        };
+
+        int[] previous = viewToModel;
+        int old = modelToView[row];
+        int size = previous.length - (old >= 0 ? 1 : 0);
+        int[] rows = new int[size + (visible ? 1 : 0)];
+        for (int i = 0, j = 0; i < previous.length; i++) {
+            if (i != old) rows[j++] = previous[i];
+        }
+        if (visible) {
+            int low = 0, high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (order.compare(rows[mid], row) < 0) low = mid + 1;
+                else high = mid;
+            }
+            System.arraycopy(rows, low, rows, low + 1, size - low);
+            rows[low] = row;
+        }
+
+        viewToModel = rows;
+        modelToView = new int[model.getRowCount()];
+        Arrays.fill(modelToView, -1);
+        for (int i = 0; i < rows.length; i++) modelToView[rows[i]] = i;
+        fireRowSorterChanged(previous);
+    }
+
+    private Index index(int column) {
+        return indexes.computeIfAbsent(column, Index::new);
+    }
+
+    private void sort() {
+        int[] previous = viewToModel;
+        boolean complete = !(model instanceof Partial) || ((Partial) model).isFullyLoaded();
+        if (!complete || (sortKeys.isEmpty() && filters.isEmpty())) {
+            viewToModel = null;
+            modelToView = null;
+        } else {
+            int n = model.getRowCount();
+            BitSet visible = new BitSet(n);
+            visible.set(0, n);
+            for (Filter filter : filters) visible.and(filter.matches(this));
+
+            // compare on precomputed ranks, so a multi-column sort never touches the values again
+            int[][] ranks = new int[sortKeys.size()][];
+            boolean[] descending = new boolean[sortKeys.size()];
+            for (int k = 0; k < sortKeys.size(); k++) {
+                ranks[k] = index(sortKeys.get(k).getColumn()).rank();
+                descending[k] = sortKeys.get(k).getSortOrder() == SortOrder.DESCENDING;
+            }
+            int[] rows = visible.stream().toArray();
+            if (ranks.length > 0) {
+                // stable, so rows with equal keys keep the model order
+                mergeSort(rows, new int[rows.length], 0, rows.length, (a, b) -> {
+                    for (int k = 0; k < ranks.length; k++) {
+                        int c = Integer.compare(ranks[k][a], ranks[k][b]);
+                        if (c != 0) return descending[k] ? -c : c;
+                    }
+                    return 0;
+                });
+            }
+
+            viewToModel = rows;
+            modelToView = new int[n];
+            Arrays.fill(modelToView, -1);
+            for (int i = 0; i < rows.length; i++) modelToView[rows[i]] = i;
+        }
+        if (previous != null || viewToModel != null) fireRowSorterChanged(previous);
+    }
+
+    private interface RowOrder {
+        int compare(int a, int b);
+    }
+
+    // stable merge sort of row numbers, without boxing them
+    private static void mergeSort(int[] rows, int[] scratch, int from, int to, RowOrder order) {
+        if (to - from < 2) return;
+        int mid = (from + to) >>> 1;
+        mergeSort(rows, scratch, from, mid, order);
+        mergeSort(rows, scratch, mid, to, order);
+        if (order.compare(rows[mid - 1], rows[mid]) <= 0) return;
+        System.arraycopy(rows, from, scratch, from, to - from);
+        for (int i = from, left = from, right = mid; i < to; i++) {
+            if (right >= to || (left < mid && order.compare(scratch[left], scratch[right]) <= 0)) {
+                rows[i] = scratch[left++];
+            } else {
+                rows[i] = scratch[right++];
+            }
+        }
+    }
+
+    // re-filter on every keystroke of a filter text field
+    public static DocumentListener onEdit(Runnable action) {
+        return new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                action.run();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                action.run();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                action.run();
+            }
+        };
+    }
+
+    // text compares ignoring case, numbers of any type by value, timestamps and dates by time
+    private static Object key(Object value) {
+        if (value instanceof String) return ((String) value).toLowerCase();
+        if (value instanceof Number) return ((Number) value).doubleValue();
+        if (value instanceof java.util.Date) return ((java.util.Date) value).getTime();
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compare(Comparable<?> a, Object b) {
+        return ((Comparable<Object>) a).compareTo(b);
+    }
+}
@@ -0,0 +1,197 @@
+import java.util.*;
+
+// Minimal JSON for DeskServer and DeskClient. Writes maps, lists, arrays, strings, numbers, booleans and
+// dates (as ISO strings); reads objects into LinkedHashMaps, arrays into ArrayLists, integral numbers into
+// Longs and the others into Doubles.
+public class Json {
+    private final String text;
+    private int pos;
+
+    private Json(String text) {
+        this.text = text;
+    }
+
+    public static String write(Object value) {
+        StringBuilder out = new StringBuilder();
+        write(out, value);
+        return out.toString();
+    }
+
+    private static void write(StringBuilder out, Object value) {
+        if (value == null) {
+            out.append("null");
+        } else if (value instanceof String) {
+            quote(out, (String) value);
+        } else if (value instanceof Number) {
+            Number number = value instanceof Float ? (Number) Double.valueOf(value.toString()) : (Number) value; // 4.2f, not 4.199999809
+            double d = number.doubleValue();
+            out.append(Double.isNaN(d) || Double.isInfinite(d) ? "null" : number.toString());
+        } else if (value instanceof Boolean) {
+            out.append(value);
+        } else if (value instanceof java.sql.Timestamp) {
+            quote(out, ((java.sql.Timestamp) value).toLocalDateTime().toString());
+        } else if (value instanceof java.sql.Date) {
+            quote(out, ((java.sql.Date) value).toLocalDate().toString());
+        } else if (value instanceof Map) {
+            out.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) out.append(',');
+                first = false;
+                quote(out, String.valueOf(entry.getKey()));
+                out.append(':');
+                write(out, entry.getValue());
+            }
+            out.append('}');
+        } else if (value instanceof Collection || value instanceof Object[]) {
+            out.append('[');
+            boolean first = true;
+            for (Object item : value instanceof Object[] ? Arrays.asList((Object[]) value) : (Collection<?>) value) {
+                if (!first) out.append(',');
+                first = false;
+                write(out, item);
+            }
+            out.append(']');
+        } else {
+            quote(out, value.toString()); // LocalDate, LocalDateTime, enums
+        }
+    }
+
+    private static void quote(StringBuilder out, String s) {
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20) out.append(String.format("\\u%04x", (int) c));
+                    else out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    public static Object parse(String text) {
+        Json parser = new Json(text);
+        Object value = parser.value();
+        parser.skipSpace();
+        if (parser.pos != text.length()) throw parser.error("Unexpected trailing characters");
+        return value;
+    }
+
+    private Object value() {
+        skipSpace();
+        if (pos >= text.length()) throw error("Unexpected end of input");
+        char c = text.charAt(pos);
+        switch (c) {
+            case '{': return object();
+            case '[': return array();
+            case '"': return string();
+            case 't': return literal("true", Boolean.TRUE);
+            case 'f': return literal("false", Boolean.FALSE);
+            case 'n': return literal("null", null);
+            default: return number();
+        }
+    }
+
+    private Map<String, Object> object() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        pos++;
+        skipSpace();
+        if (consume('}')) return map;
+        do {
+            skipSpace();
+            String key = string();
+            skipSpace();
+            expect(':');
+            map.put(key, value());
+            skipSpace();
+        } while (consume(','));
+        expect('}');
+        return map;
+    }
+
+    private List<Object> array() {
+        List<Object> list = new ArrayList<>();
+        pos++;
+        skipSpace();
+        if (consume(']')) return list;
+        do {
+            list.add(value());
+            skipSpace();
+        } while (consume(','));
+        expect(']');
+        return list;
+    }
+
+    private String string() {
+        expect('"');
+        StringBuilder out = new StringBuilder();
+        while (pos < text.length()) {
+            char c = text.charAt(pos++);
+            if (c == '"') return out.toString();
+            if (c != '\\') {
+                out.append(c);
+                continue;
+            }
+            if (pos >= text.length()) break;
+            char escaped = text.charAt(pos++);
+            switch (escaped) {
+                case 'n': out.append('\n'); break;
+                case 'r': out.append('\r'); break;
+                case 't': out.append('\t'); break;
+                case 'b': out.append('\b'); break;
+                case 'f': out.append('\f'); break;
+                case 'u':
+                    if (pos + 4 > text.length()) throw error("Bad unicode escape");
+                    out.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                    pos += 4;
+                    break;
+                default: out.append(escaped); // \" \\ \/
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    private Number number() {
+        int start = pos;
+        while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) pos++;
+        String n = text.substring(start, pos);
+        if (n.isEmpty()) throw error("Unexpected character '" + text.charAt(pos) + "'");
+        try {
+            return n.contains(".") || n.contains("e") || n.contains("E") ? (Number) Double.valueOf(n) : (Number) Long.valueOf(n);
+        } catch (NumberFormatException e) {
+            throw error("Bad number " + n);
+        }
+    }
+
+    private Object literal(String word, Object value) {
+        if (!text.startsWith(word, pos)) throw error("Unexpected token");
+        pos += word.length();
+        return value;
+    }
+
+    private void skipSpace() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+    }
+
+    private boolean consume(char c) {
+        if (pos < text.length() && text.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) {
+        if (!consume(c)) throw error("Expected '" + c + "'");
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + pos);
+    }
+}
@@ -0,0 +1,36 @@
+// An entity id paired with its display name, used as a combo box item so the id travels with the selection.
+public class ListItem {
+    // "no filter" entry for search combo boxes; identity columns start at 1
+    public static final ListItem ANY = new ListItem(0, "Any");
+
+    private final int id;
+    private final String name;
+
+    public ListItem(int id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ListItem && ((ListItem) o).id == id;
+    }
+
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(id);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
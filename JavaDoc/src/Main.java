@@ -1,55 +1,324 @@
 import javax.swing.*;
 import java.awt.*;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
 import java.sql.*;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class Main {
-    private static final String DB_URL = "jdbc:sqlserver://localhost;databaseName=JavaDoc;user=JavaDoc;password=JavaDoc123;trustServerCertificate=true;";
-    private static Connection conn;
+    static final String DB_URL = "jdbc:sqlserver://localhost;databaseName=JavaDoc;user=JavaDoc;password=JavaDoc123;trustServerCertificate=true;";
+
+    // pool settings, overridable with -Djavadoc.pool.min=... etc.
+    private static final int POOL_MIN = Integer.getInteger("javadoc.pool.min", 2);
+    private static final int POOL_MAX = Integer.getInteger("javadoc.pool.max", 8);
+    private static final long POOL_IDLE_TIMEOUT_MS = Long.getLong("javadoc.pool.idleTimeoutMs", 300_000L);
+    private static final long POOL_MAX_WAIT_MS = Long.getLong("javadoc.pool.maxWaitMs", 10_000L);
+
+    private static final int CACHE_MAX_ENTRIES = Integer.getInteger("javadoc.cache.maxEntries", 32);
+    private static final long CACHE_TTL_MS = Long.getLong("javadoc.cache.ttlMs", 300_000L);
+
+    private static final long SEARCH_CACHE_MAX_BYTES = Long.getLong("javadoc.searchCache.maxBytes", 16L << 20);
+
+    // weeks of one doctor's appointments kept for the calendar, and the threads loading and prefetching them
+    private static final int CALENDAR_MAX_WEEKS = Integer.getInteger("javadoc.calendar.maxWeeks", 64);
+    private static final int CALENDAR_THREADS = Integer.getInteger("javadoc.calendar.threads", 2);
+
+    private static final long SYNC_POLL_MS = Long.getLong("javadoc.sync.pollMs", 2_000L);
+
+    // horizon: -Djavadoc.archive.horizonDays, see AppointmentArchiver
+    private static final int ARCHIVE_BATCH_SIZE = Integer.getInteger("javadoc.archive.batchSize", 1000);
+    private static final long ARCHIVE_INTERVAL_MS = Long.getLong("javadoc.archive.intervalMs", 3_600_000L);
+
+    // write-behind journal for new appointments
+    private static final String JOURNAL_PATH = System.getProperty("javadoc.journal.path",
+            Path.of(System.getProperty("user.home"), ".javadoc", "bookings.journal").toString());
+    private static final int JOURNAL_SIZE_BYTES = Integer.getInteger("javadoc.journal.sizeBytes", 4 << 20);
+    private static final int JOURNAL_BATCH_SIZE = Integer.getInteger("javadoc.journal.batchSize", 100);
+    private static final long JOURNAL_LINGER_MS = Long.getLong("javadoc.journal.lingerMs", 5L);
+
+    private static final int WARMUP_THREADS = Integer.getInteger("javadoc.startup.warmupThreads", 4);
+
+    // "--server [port]" runs a headless DeskServer; -Djavadoc.server=http://host:port attaches this desk to
+    // that server: the frames list, search, add and delete through it, and the desk opens no connection
+    // of its own and loads no caches or indexes. Reports, imports, the calendar and series bookings
+    // need the database and are not offered there.
+    private static final int SERVER_PORT = Integer.getInteger("javadoc.server.port", 8080);
+    private static final String SERVER_URL = System.getProperty("javadoc.server");
+
+    // pool through bookingWriter stay null on a desk attached to a DeskServer
+    private static ConnectionPool pool;
+    private static ReferenceCache referenceCache;
+    private static SearchCache searchCache;
+    private static AppointmentCalendar calendar;
+    private static SpecializationIndex specializationIndex;
+    private static ChangeFeed changeFeed;
+    private static ScheduleIndex scheduleIndex;
+    private static PeopleIndex clientIndex;
+    private static PeopleIndex doctorIndex;
+    private static PeopleDirectory clientDirectory; // clientIndex, or the server's index on an attached desk
+    private static PeopleDirectory doctorDirectory;
+    private static AppointmentArchiver archiver;
+    private static BookingWriter bookingWriter;
+    private static DeskClient deskClient; // set on an attached desk
+    private static DeskServer server;
+    private static StartupSplash splash;
+    private static ExecutorService warmup;
 
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--server")) {
+            runServer(args.length > 1 ? Integer.parseInt(args[1]) : SERVER_PORT);
+            return;
+        }
+        // the splash goes up first; driver loading, the TLS handshake and migrations happen behind it
         SwingUtilities.invokeLater(() -> {
-            connectDb();
-            createUI();
+            splash = new StartupSplash();
+            splash.setStatus(SERVER_URL != null ? "Connecting to desk server..." : "Connecting to database...");
+            AsyncQuery.run(() -> {
+                connectDb();
+                return null;
+            }, ignored -> {
+                JButton[] buttons = createUI();
+                splash.close();
+                System.out.println("Time to first window: " + sinceJvmStart() + " ms");
+                warmUp(buttons);
+            }, Main::connectFailed);
         });
     }
 
-    private static void connectDb() {
+    // One pool, cache and set of indexes for all the desks that connect; the change feed still keeps them
+    // current with edits made behind the server's back (imports, older desks).
+    private static void runServer(int port) {
+        System.setProperty("java.awt.headless", "true");
         try {
-            Class.forName("com.microsoft.sqlserver.jdbc.SQLServerDriver");
-            conn = DriverManager.getConnection(DB_URL);
-            System.out.println("Connected to database successfully.");
-        } catch (ClassNotFoundException e) {
-            System.err.println("JDBC driver not found.");
+            connectShared();
+            changeFeed.start();
+            archiver.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                if (server != null) server.close();
+                System.out.println(pool);
+                System.out.println(referenceCache);
+                System.out.println(QueryMonitor.report());
+                archiver.close();
+                changeFeed.close();
+                pool.close();
+            }));
+            long started = System.currentTimeMillis();
+            clientIndex.load();
+            doctorIndex.load();
+            scheduleIndex.load();
+            System.out.println("Loaded indexes in " + (System.currentTimeMillis() - started) + " ms");
+            // the change feed and the archiver take connections outside the server's requests
+            server = new DeskServer(pool, referenceCache, clientIndex, doctorIndex, scheduleIndex, Math.max(1, POOL_MAX - 2), port);
+            server.start();
+        } catch (Exception e) {
             e.printStackTrace();
             System.exit(1);
-        } catch (SQLException e) {
-            e.printStackTrace();
+        }
+    }
+
+    private static void connectShared() throws ClassNotFoundException, SQLException {
+        Class.forName("com.microsoft.sqlserver.jdbc.SQLServerDriver");
+        pool = new ConnectionPool(DB_URL, POOL_MIN, POOL_MAX, POOL_IDLE_TIMEOUT_MS, POOL_MAX_WAIT_MS);
+        new SchemaMigrator(pool).migrate();
+        referenceCache = new ReferenceCache(pool, CACHE_MAX_ENTRIES, CACHE_TTL_MS);
+        changeFeed = new ChangeFeed(pool, SYNC_POLL_MS);
+        // combo box lists go stale when another desk adds or removes people
+        changeFeed.addListener(changes -> {
+            if (changes.touches(ChangeFeed.CLIENTS)) referenceCache.invalidate(ReferenceCache.CLIENTS);
+            if (changes.touches(ChangeFeed.DOCTORS)) referenceCache.invalidate(ReferenceCache.DOCTORS);
+        });
+        scheduleIndex = new ScheduleIndex(pool);
+        changeFeed.addListener(scheduleIndex);
+        clientIndex = PeopleIndex.clients(pool);
+        doctorIndex = PeopleIndex.doctors(pool);
+        for (PeopleIndex index : List.of(clientIndex, doctorIndex)) changeFeed.addListener(index);
+        clientDirectory = clientIndex;
+        doctorDirectory = doctorIndex;
+        archiver = new AppointmentArchiver(pool, ARCHIVE_BATCH_SIZE, ARCHIVE_INTERVAL_MS);
+    }
+
+    // runs off the EDT
+    private static void connectDb() throws ClassNotFoundException, SQLException, IOException, InterruptedException {
+        if (SERVER_URL != null) {
+            attach();
+            return;
+        }
+        connectShared();
+        searchCache = new SearchCache(SEARCH_CACHE_MAX_BYTES);
+        changeFeed.addListener(searchCache);
+        calendar = new AppointmentCalendar(pool, CALENDAR_MAX_WEEKS, CALENDAR_THREADS);
+        changeFeed.addListener(calendar);
+        specializationIndex = new SpecializationIndex(pool);
+        changeFeed.addListener(specializationIndex);
+        bookingWriter = new BookingWriter(pool, new BookingJournal(Path.of(JOURNAL_PATH), JOURNAL_SIZE_BYTES),
+                JOURNAL_BATCH_SIZE, JOURNAL_LINGER_MS);
+        bookingWriter.addListener(scheduleIndex);
+        scheduleIndex.setPending(bookingWriter::getPending);
+        bookingWriter.addListener(searchCache);
+        bookingWriter.addListener(calendar);
+        bookingWriter.addListener(specializationIndex);
+        // the desk was told the booking is saved, so a refusal has to be reported even with the frame closed
+        bookingWriter.addListener(new BookingWriter.Listener() {
+            @Override
+            public void onRejected(BookingJournal.Booking booking, SQLException e) {
+                JOptionPane.showMessageDialog(null, "The appointment " + booking + " could not be booked.\nError: " + e.getMessage(),
+                        "Booking Rejected", JOptionPane.WARNING_MESSAGE);
+            }
+        });
+        bookingWriter.start();
+        changeFeed.start();
+        archiver.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println(pool);
+            System.out.println(referenceCache);
+            System.out.println(searchCache);
+            System.out.println(calendar);
+            System.out.println(specializationIndex);
+            System.out.println(bookingWriter);
+            System.out.println(QueryMonitor.report());
+            bookingWriter.close();
+            calendar.close();
+            archiver.close();
+            changeFeed.close();
+            pool.close();
+        }));
+        System.out.println("Connected to database successfully.");
+    }
+
+    // the server answers everything the frames ask, so there is nothing to connect or load here
+    private static void attach() throws IOException, InterruptedException {
+        deskClient = new DeskClient(SERVER_URL);
+        deskClient.get("stats"); // fails now rather than in the first frame if the server is unreachable
+        clientDirectory = new RemotePeople(deskClient, "clients");
+        doctorDirectory = new RemotePeople(deskClient, "doctors");
+        System.out.println("Attached to desk server " + SERVER_URL);
+    }
+
+    private static void connectFailed(Exception e) {
+        splash.close();
+        e.printStackTrace();
+        if (e instanceof ClassNotFoundException) {
+            System.err.println("JDBC driver not found.");
+        } else if (SERVER_URL != null) {
+            JOptionPane.showMessageDialog(null, "Cannot reach the desk server " + SERVER_URL + "\nError: " + e.getMessage(), "err", JOptionPane.ERROR_MESSAGE);
+        } else if (e instanceof IOException) {
+            JOptionPane.showMessageDialog(null, "Cannot open the booking journal " + JOURNAL_PATH + "\nError: " + e.getMessage(), "err", JOptionPane.ERROR_MESSAGE);
+        } else {
             JOptionPane.showMessageDialog(null, "Database connection failed!", "err", JOptionPane.ERROR_MESSAGE);
-            System.exit(1);
         }
+        System.exit(1);
     }
 
-    private static void createUI() {
+    // buttons start disabled, warmUp enables each one once the data its frame opens with is ready
+    private static JButton[] createUI() {
         JFrame mainFrame = new JFrame("JavaDoc - Medical Appointments");
         mainFrame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         mainFrame.setSize(600, 400);
 
         JPanel mainPanel = new JPanel();
-        mainPanel.setLayout(new GridLayout(3, 1));
+        mainPanel.setLayout(new GridLayout(4, 1));
 
         JButton btnClients = new JButton("Clients");
         JButton btnDoctors = new JButton("Doctors");
         JButton btnAppointments = new JButton("Appointments");
+        JButton btnReports = new JButton("Reports");
 
-        btnClients.addActionListener(e -> new ClientsFrame(conn));
-        btnDoctors.addActionListener(e -> new DoctorsFrame(conn));
-        btnAppointments.addActionListener(e -> new AppointmentsFrame(conn));
+        btnClients.addActionListener(e -> new ClientsFrame(pool, referenceCache, searchCache, specializationIndex, changeFeed, clientDirectory, deskClient));
+        btnDoctors.addActionListener(e -> new DoctorsFrame(pool, referenceCache, searchCache, changeFeed, doctorDirectory, deskClient));
+        btnAppointments.addActionListener(e -> new AppointmentsFrame(pool, referenceCache, searchCache, calendar, specializationIndex, changeFeed, scheduleIndex, clientDirectory, doctorDirectory, bookingWriter, deskClient));
+        btnReports.addActionListener(e -> new ReportsFrame(pool));
 
-        mainPanel.add(btnClients);
-        mainPanel.add(btnDoctors);
-        mainPanel.add(btnAppointments);
+        JButton[] buttons = {btnClients, btnDoctors, btnAppointments, btnReports};
+        for (JButton button : buttons) {
+            button.setEnabled(false);
+            mainPanel.add(button);
+        }
 
         mainFrame.add(mainPanel);
         mainFrame.setVisible(true);
+        return buttons;
+    }
+
+    // Loads the reference lists and indexes and reads the first page of every table, all at once on separate
+    // pooled connections. The page reads are thrown away: they open the pool's connections and leave the
+    // plans and data pages cached on the server, so the frame's own first query is quick.
+    private static void warmUp(JButton[] buttons) {
+        if (deskClient != null) {
+            // nothing is loaded on an attached desk; reports read the database, which it does not connect to
+            for (int i = 0; i < 3; i++) buttons[i].setEnabled(true);
+            buttons[3].setToolTipText("Reports need a database connection; this desk is attached to " + SERVER_URL);
+            return;
+        }
+        warmup = Executors.newFixedThreadPool(WARMUP_THREADS, r -> {
+            Thread t = new Thread(r, "startup-warmup");
+            t.setDaemon(true);
+            return t;
+        });
+
+        CompletableFuture<Void> specializations = warm("specializations", referenceCache::getSpecializations);
+        CompletableFuture<Void> clients = warm("client index", () -> {
+            clientIndex.load();
+            return null;
+        });
+        CompletableFuture<Void> doctors = warm("doctor index", () -> {
+            doctorIndex.load();
+            return null;
+        });
+        CompletableFuture<Void> clientPage = warm("clients page", () -> PagedTableModel.loadFirstPage(pool,
+                ClientsFrame.allClients(), new ColumnBlock.Schema(ClientsFrame.CLIENT_TYPES)));
+        CompletableFuture<Void> doctorPage = warm("doctors page", () -> TableLoader.loadFirstChunk(pool,
+                DoctorsFrame.SELECT_DOCTORS, DoctorsFrame::mapDoctor));
+        CompletableFuture<Void> appointmentPage = warm("appointments page", () -> PagedTableModel.loadFirstPage(pool,
+                AppointmentsFrame.allAppointments(), new ColumnBlock.Schema(AppointmentsFrame.APPOINTMENT_TYPES)));
+        // the appointments frame checks free slots against the database until this is done
+        CompletableFuture<Void> schedule = warm("schedule index", () -> {
+            scheduleIndex.load();
+            return null;
+        });
+        // the clients frame filters by specialization with a join until this is done
+        CompletableFuture<Void> specializationClients = warm("specialization index", () -> {
+            specializationIndex.load();
+            return null;
+        });
+
+        CompletableFuture<Void> interactive = CompletableFuture.allOf(
+                enableWhenReady(buttons[0], clientPage, clients, specializations),
+                enableWhenReady(buttons[1], doctorPage, doctors, specializations),
+                enableWhenReady(buttons[2], appointmentPage, clients, doctors, specializations),
+                enableWhenReady(buttons[3]));
+        interactive.thenRun(() -> System.out.println("Time to interactive: " + sinceJvmStart() + " ms"));
+        CompletableFuture.allOf(interactive, schedule, specializationClients).whenComplete((ignored, e) -> warmup.shutdown());
+    }
+
+    private static CompletableFuture<Void> warm(String name, AsyncQuery.Task<?> task) {
+        return CompletableFuture.runAsync(() -> {
+            long started = System.currentTimeMillis();
+            try {
+                task.call();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+            System.out.println("Warmed up " + name + " in " + (System.currentTimeMillis() - started) + " ms");
+        }, warmup);
+    }
+
+    // a failed warm-up still enables the button; the frame then reports the error when it loads
+    private static CompletableFuture<Void> enableWhenReady(JButton button, CompletableFuture<?>... dependencies) {
+        CompletableFuture<Void> enabled = new CompletableFuture<>();
+        CompletableFuture.allOf(dependencies).whenComplete((ignored, e) -> SwingUtilities.invokeLater(() -> {
+            if (e != null) System.err.println("Warm-up for " + button.getText() + " failed: " + e.getCause().getMessage());
+            button.setEnabled(true);
+            enabled.complete(null);
+        }));
+        return enabled;
+    }
+
+    private static long sinceJvmStart() {
+        return System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,653 @@
+import javax.sql.DataSource;
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.io.IOException;
+import java.sql.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+// Lazy table model for large tables. Rows are fetched a page at a time as the table asks for them,
+// using keyset pagination on the primary key (plus an optional sort column), and only the most
+// recently used pages are kept in memory, column by column (see ColumnBlock). The row count comes
+// from a separate COUNT(*) query. On a desk attached to a DeskServer the same pages and count come from
+// the server instead, through a DeskClient.
+@SuppressWarnings("serial") // holds a DataSource and cached pages, never serialized
+public class PagedTableModel extends AbstractTableModel implements IndexedRowSorter.Partial {
+    static final int PAGE_SIZE = 200;
+    private static final int MAX_CACHED_PAGES = 16;
+    // a dictionary this much larger than the cached rows mostly holds strings of evicted pages
+    private static final int MAX_DICTIONARY_SIZE = 2 * MAX_CACHED_PAGES * PAGE_SIZE;
+    private static final ExecutorService FETCHER = Executors.newFixedThreadPool(4, r -> {
+        Thread t = new Thread(r, "page-fetcher");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // SELECT <select> FROM <from> WHERE <where> ORDER BY [<sortColumn>,] <keyColumn>
+    public static class Query {
+        final String select;
+        final String from;
+        final String where;
+        final List<Object> params;
+        final String keyColumn;
+        final String sortColumn;
+        final boolean descending;
+        final boolean unfiltered; // every row the frame shows, see isUnfiltered()
+        final String resource; // the same rows on a DeskServer, e.g. "clients?registeredFrom=2024-01-01"
+
+        public Query(String select, String from, String keyColumn) {
+            this(select, from, "1=1", keyColumn);
+        }
+
+        // the full list, where 'where' only hides rows the frame never shows (deactivated ones)
+        public Query(String select, String from, String where, String keyColumn) {
+            this(select, from, where, List.of(), keyColumn, null, false, true, null);
+        }
+
+        public Query(String select, String from, String where, List<Object> params, String keyColumn, String sortColumn, boolean descending) {
+            this(select, from, where, params, keyColumn, sortColumn, descending, false, null);
+        }
+
+        private Query(String select, String from, String where, List<Object> params, String keyColumn, String sortColumn, boolean descending,
+                      boolean unfiltered, String resource) {
+            this.select = select;
+            this.from = from;
+            this.where = where;
+            this.params = params;
+            this.keyColumn = keyColumn;
+            this.sortColumn = sortColumn;
+            this.descending = descending;
+            this.unfiltered = unfiltered;
+            this.resource = resource;
+        }
+
+        // where a model reading through a DeskClient asks for these rows
+        Query servedAt(String resource) {
+            return new Query(select, from, where, params, keyColumn, sortColumn, descending, unfiltered, resource);
+        }
+    }
+
+    // last row of a page, used as the keyset cursor for the next one
+    private static class Boundary {
+        final Object sortValue;
+        final Object key;
+
+        Boundary(Object sortValue, Object key) {
+            this.sortValue = sortValue;
+            this.key = key;
+        }
+    }
+
+    private static class Page {
+        final ColumnBlock rows;
+        final Object[] keys;
+        final Object[] sortValues; // null without a sort column
+
+        Page(ColumnBlock rows, Object[] keys, Object[] sortValues) {
+            this.rows = rows;
+            this.keys = keys;
+            this.sortValues = sortValues;
+        }
+
+        Boundary last() {
+            int n = keys.length;
+            return n == 0 ? null : new Boundary(sortValues == null ? null : sortValues[n - 1], keys[n - 1]);
+        }
+    }
+
+    private final DataSource dataSource;
+    private final DeskClient server; // instead of dataSource on an attached desk
+    private final String[] columns;
+    private final JProgressBar progress;
+    private final Consumer<Exception> onError;
+
+    // all state below is only touched on the EDT
+    private final Map<Integer, Page> pages = new LinkedHashMap<>(MAX_CACHED_PAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Page> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+    private final Map<Integer, Boundary> boundaries = new HashMap<>();
+    private final Set<Integer> pending = new HashSet<>();
+    private Query query;
+    private ColumnBlock.Schema schema;
+    private int rowCount;
+    private boolean counted;
+    private Object maxKey; // highest key when counted; anything above it is a new row
+    private int generation;
+    private SearchCache searchCache;
+    private SearchCache.Criteria cacheAs; // the search being loaded, stored in searchCache once every row is in
+    private long cacheStamp;
+
+    // the query's select list holds the columns in the schema's order
+    public PagedTableModel(DataSource dataSource, String[] columns, ColumnBlock.Schema schema, JProgressBar progress, Consumer<Exception> onError) {
+        this(dataSource, null, columns, schema, progress, onError);
+    }
+
+    // pages from a DeskServer; every query set on this model needs a resource (Query.servedAt)
+    public PagedTableModel(DeskClient server, String[] columns, ColumnBlock.Schema schema, JProgressBar progress, Consumer<Exception> onError) {
+        this(null, server, columns, schema, progress, onError);
+    }
+
+    private PagedTableModel(DataSource dataSource, DeskClient server, String[] columns, ColumnBlock.Schema schema, JProgressBar progress,
+                            Consumer<Exception> onError) {
+        this.dataSource = dataSource;
+        this.server = server;
+        this.columns = columns;
+        this.schema = schema;
+        this.progress = progress;
+        this.onError = onError;
+        progress.setStringPainted(true);
+        progress.setString("");
+    }
+
+    public void setQuery(Query query) {
+        this.query = query;
+        refresh();
+    }
+
+    // A search: shown straight from the cache when it holds the result for these criteria, otherwise
+    // queried, read in full when it fits in the page cache, and then stored in the cache. A desk without
+    // a cache (attached to a DeskServer) just queries.
+    public void setQuery(Query query, SearchCache cache, SearchCache.Criteria criteria) {
+        if (cache == null) {
+            setQuery(query);
+            return;
+        }
+        this.query = query;
+        SearchCache.Result cached = cache.get(criteria);
+        if (cached != null) {
+            show(cached);
+            return;
+        }
+        long stamp = cache.stamp();
+        refresh();
+        searchCache = cache;
+        cacheAs = criteria;
+        cacheStamp = stamp;
+    }
+
+    private void show(SearchCache.Result cached) {
+        ++generation;
+        schema = schema.fresh();
+        pages.clear();
+        boundaries.clear();
+        pending.clear();
+        cacheAs = null;
+
+        ColumnBlock rows = cached.getRows().recode(schema);
+        rowCount = cached.size();
+        maxKey = cached.getMaxKey();
+        counted = true;
+        for (int from = 0, index = 0; from < rowCount; from += PAGE_SIZE, index++) {
+            int to = Math.min(from + PAGE_SIZE, rowCount);
+            Object[] keys = new Object[to - from];
+            Object[] sortValues = query.sortColumn == null ? null : new Object[to - from];
+            for (int i = from; i < to; i++) {
+                keys[i - from] = cached.getKey(i);
+                if (sortValues != null) sortValues[i - from] = cached.getSortValue(i);
+            }
+            Page page = new Page(rows.slice(from, to), keys, sortValues);
+            pages.put(index, page);
+            boundaries.put(index, page.last());
+        }
+        fireTableDataChanged();
+        updateProgress();
+    }
+
+    // hands the search to the cache once its count and every page are in, before any local change touches them
+    private void storeIfComplete() {
+        if (cacheAs == null || !isFullyLoaded()) return;
+        int loaded = 0;
+        for (int index = 0; index * PAGE_SIZE < rowCount; index++) loaded += pages.get(index).keys.length;
+        // rows came or went between the count and the pages
+        if (loaded != rowCount) {
+            cacheAs = null;
+            return;
+        }
+        ColumnBlock rows = new ColumnBlock(schema, rowCount);
+        Object[] keys = new Object[rowCount];
+        Object[] sortValues = query.sortColumn == null ? null : new Object[rowCount];
+        for (int index = 0; index * PAGE_SIZE < rowCount; index++) {
+            Page page = pages.get(index);
+            for (int i = 0; i < page.keys.length; i++) {
+                int row = index * PAGE_SIZE + i;
+                rows.add(page.rows, i);
+                keys[row] = page.keys[i];
+                if (sortValues != null) sortValues[row] = page.sortValues[i];
+            }
+        }
+        searchCache.put(cacheAs, new SearchCache.Result(rows, schema, keys, sortValues), cacheStamp);
+        cacheAs = null;
+    }
+
+    // drop everything cached and start over with the current query
+    public void refresh() {
+        int gen = ++generation;
+        cacheAs = null;
+        schema = schema.fresh(); // drops the dictionary entries of the old rows
+        pages.clear();
+        boundaries.clear();
+        pending.clear();
+        rowCount = 0;
+        counted = false;
+        fireTableDataChanged();
+        updateProgress();
+
+        Query q = query;
+        AsyncQuery.run(() -> server == null ? count(dataSource, q) : count(server, q), count -> {
+            if (gen != generation) return;
+            rowCount = ((Number) count[0]).intValue();
+            maxKey = count[1];
+            counted = true;
+            fireTableDataChanged();
+            updateProgress();
+            if (cacheAs != null && !loadFully()) cacheAs = null; // too big to keep
+            storeIfComplete();
+        }, this::fail);
+        requestPage(0);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columns[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Page page = page(row);
+        if (page == null) return null;
+        int offset = row % PAGE_SIZE;
+        return offset < page.rows.size() ? page.rows.get(offset, column) : null;
+    }
+
+    // the query is a frame's full list, so the rows are every row the frame shows
+    public boolean isUnfiltered() {
+        return query != null && query.unfiltered;
+    }
+
+    @Override
+    public boolean isFullyLoaded() {
+        if (!counted) return false;
+        for (int index = 0; index * PAGE_SIZE < rowCount; index++) {
+            if (!pages.containsKey(index)) return false;
+        }
+        return true;
+    }
+
+    // small results fit in the page cache as a whole; fetch the pages that are missing
+    @Override
+    public boolean loadFully() {
+        if (!counted || rowCount > MAX_CACHED_PAGES * PAGE_SIZE) return false;
+        for (int index = 0; index * PAGE_SIZE < rowCount; index++) {
+            if (!pages.containsKey(index)) requestPage(index);
+        }
+        return true;
+    }
+
+    // primary key of the row, or null if its page is not loaded
+    @Override
+    public Object getRowKey(int row) {
+        Page page = page(row);
+        if (page == null) return null;
+        int offset = row % PAGE_SIZE;
+        return offset < page.keys.length ? page.keys[offset] : null;
+    }
+
+    // Adds a row the frame has just inserted without reloading. Only possible while the unfiltered table
+    // is shown in key order, where a new identity value always goes last; otherwise returns false
+    // and the caller should refresh().
+    public boolean appendRow(Object key, Object[] row) {
+        if (!counted || query.sortColumn != null || query.descending || !isUnfiltered()) {
+            return false;
+        }
+        discardInFlight();
+
+        int index = rowCount / PAGE_SIZE;
+        int offset = rowCount % PAGE_SIZE;
+        Page page = pages.get(index);
+        if (offset == 0 || page != null) {
+            ColumnBlock rows = page == null ? new ColumnBlock(schema, 1) : page.rows.copy(offset + 1);
+            Object[] keys = page == null ? new Object[1] : Arrays.copyOf(page.keys, offset + 1);
+            rows.add(row);
+            keys[offset] = key;
+            Page updated = new Page(rows, keys, null);
+            pages.put(index, updated);
+            boundaries.put(index, updated.last());
+        }
+
+        if (isAfterMaxKey(key)) maxKey = key;
+        rowCount++;
+        fireTableRowsInserted(rowCount - 1, rowCount - 1);
+        updateProgress();
+        return true;
+    }
+
+    // Removes deleted rows from the loaded pages and shifts the rows after them up, so the table keeps
+    // its scroll position and selection. Returns false if the model is still loading and should be refreshed.
+    public boolean removeRows(Collection<?> keys) {
+        if (!counted) return false;
+
+        Set<Object> removed = new HashSet<>(keys);
+        List<Integer> rows = new ArrayList<>();
+        for (Map.Entry<Integer, Page> entry : pages.entrySet()) {
+            Object[] pageKeys = entry.getValue().keys;
+            for (int i = 0; i < pageKeys.length; i++) {
+                if (removed.contains(pageKeys[i])) rows.add(entry.getKey() * PAGE_SIZE + i);
+            }
+        }
+        if (rows.isEmpty()) return true;
+        Collections.sort(rows);
+        discardInFlight();
+
+        // splice the loaded pages from the first affected one on, then cut them back into whole pages
+        int firstPage = rows.get(0) / PAGE_SIZE;
+        ColumnBlock keptRows = new ColumnBlock(schema, PAGE_SIZE);
+        List<Object> keptKeys = new ArrayList<>();
+        List<Object> keptSorts = new ArrayList<>();
+        int index = firstPage;
+        for (Page page = pages.get(index); page != null; page = pages.get(++index)) {
+            for (int i = 0; i < page.keys.length; i++) {
+                if (removed.contains(page.keys[i])) continue;
+                keptRows.add(page.rows, i);
+                keptKeys.add(page.keys[i]);
+                if (page.sortValues != null) keptSorts.add(page.sortValues[i]);
+            }
+        }
+        boolean reachedEnd = index * PAGE_SIZE >= rowCount;
+        boolean sorted = query.sortColumn != null;
+
+        pages.keySet().removeIf(i -> i >= firstPage);
+        boundaries.keySet().removeIf(i -> i >= firstPage);
+        for (int from = 0, page = firstPage; from < keptRows.size(); from += PAGE_SIZE, page++) {
+            int to = Math.min(from + PAGE_SIZE, keptRows.size());
+            if (to - from < PAGE_SIZE && !reachedEnd) break; // the rest is refetched on demand
+            Page rebuilt = new Page(keptRows.slice(from, to), keptKeys.subList(from, to).toArray(),
+                    sorted ? keptSorts.subList(from, to).toArray() : null);
+            pages.put(page, rebuilt);
+            boundaries.put(page, rebuilt.last());
+        }
+
+        rowCount -= rows.size();
+        // fire from the bottom up so each event's indexes are still valid
+        for (int i = rows.size() - 1; i >= 0; ) {
+            int last = rows.get(i);
+            int first = last;
+            while (i > 0 && rows.get(i - 1) == first - 1) {
+                first = rows.get(--i);
+            }
+            i--;
+            fireTableRowsDeleted(first, last);
+        }
+        updateProgress();
+        return true;
+    }
+
+    // Applies rows changed elsewhere (see ChangeFeed). Loaded rows are updated in place, deleted ones removed,
+    // and rows newer than anything counted are appended when the table is in key order. Changes to rows on
+    // pages that are not loaded need no work, those pages are fetched fresh when scrolled to.
+    public void applyChanges(Map<Integer, Object[]> upserts, Collection<Integer> deletes) {
+        if (!counted) return;
+        cacheAs = null;
+        if (!deletes.isEmpty()) removeRows(deletes);
+
+        // events go out after the loop: a listener reading the rows back would reorder the access-ordered pages under it
+        Map<Object, Object[]> remaining = new HashMap<>(upserts);
+        List<Integer> updated = new ArrayList<>();
+        for (Map.Entry<Integer, Page> entry : pages.entrySet()) {
+            Page page = entry.getValue();
+            for (int i = 0; i < page.keys.length && !remaining.isEmpty(); i++) {
+                Object[] row = remaining.remove(page.keys[i]);
+                if (row != null) {
+                    page.rows.set(i, row);
+                    updated.add(entry.getKey() * PAGE_SIZE + i);
+                }
+            }
+        }
+        // one event for the poll: a single row is patched into the sorter, a range sorts again once
+        if (!updated.isEmpty()) fireTableRowsUpdated(Collections.min(updated), Collections.max(updated));
+
+        List<Object> added = new ArrayList<>();
+        for (Object key : remaining.keySet()) {
+            if (isAfterMaxKey(key)) added.add(key);
+        }
+        added.sort(null);
+        for (Object key : added) {
+            if (!appendRow(key, remaining.get(key))) break;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean isAfterMaxKey(Object key) {
+        return maxKey == null || ((Comparable<Object>) key).compareTo(maxKey) > 0;
+    }
+
+    // page fetches started before a local change would land at the wrong offsets
+    private void discardInFlight() {
+        generation++;
+        pending.clear();
+        cacheAs = null;
+    }
+
+    private Page page(int row) {
+        int index = row / PAGE_SIZE;
+        Page page = pages.get(index);
+        if (page == null) {
+            requestPage(index);
+        } else if ((index + 1) * PAGE_SIZE < rowCount && !pages.containsKey(index + 1)) {
+            requestPage(index + 1); // prefetch the next page while this one is on screen
+        }
+        return page;
+    }
+
+    private void requestPage(int index) {
+        if (query == null || !pending.add(index)) return;
+        updateProgress();
+
+        int gen = generation;
+        Query q = query;
+        ColumnBlock.Schema s = schema;
+        Boundary after = index == 0 ? null : boundaries.get(index - 1);
+        FETCHER.execute(() -> {
+            try {
+                Page page = server == null ? fetch(dataSource, s, q, index, after) : fetch(server, s, q, index, after);
+                SwingUtilities.invokeLater(() -> loaded(gen, index, page, s));
+            } catch (Exception e) {
+                SwingUtilities.invokeLater(() -> {
+                    if (gen != generation) return;
+                    pending.remove(index);
+                    fail(e);
+                });
+            }
+        });
+    }
+
+    private void loaded(int gen, int index, Page page, ColumnBlock.Schema fetchedWith) {
+        if (gen != generation) return;
+        pending.remove(index);
+        // every cached page uses the current schema, so rows can be copied between pages by code
+        if (fetchedWith != schema) page = new Page(page.rows.recode(schema), page.keys, page.sortValues);
+        pages.put(index, page);
+        compactDictionaries();
+
+        Boundary boundary = page.last();
+        if (boundary != null) boundaries.put(index, boundary);
+
+        int size = page.rows.size();
+        int first = index * PAGE_SIZE;
+        int last = Math.min(first + size, rowCount) - 1;
+        if (last >= first) fireTableRowsUpdated(first, last);
+        updateProgress();
+        storeIfComplete();
+    }
+
+    // Evicted pages leave their strings in the dictionaries, so scrolling through a large table would grow
+    // them without bound; once one is far larger than the cached rows need, the pages are re-encoded
+    // against fresh dictionaries and the old ones dropped.
+    private void compactDictionaries() {
+        for (int c = 0; c < schema.getColumnCount(); c++) {
+            if (schema.getDictionarySize(c) > MAX_DICTIONARY_SIZE) {
+                ColumnBlock.Schema fresh = schema.fresh();
+                pages.replaceAll((index, page) -> new Page(page.rows.recode(fresh), page.keys, page.sortValues));
+                schema = fresh;
+                return;
+            }
+        }
+    }
+
+    private static Page fetch(DataSource dataSource, ColumnBlock.Schema schema, Query q, int index, Boundary after) throws SQLException {
+        boolean keyset = index == 0 || after != null;
+        String dir = q.descending ? " DESC" : " ASC";
+        String op = q.descending ? " < ?" : " > ?";
+
+        StringBuilder sql = new StringBuilder("SELECT ");
+        if (keyset) sql.append("TOP (").append(PAGE_SIZE).append(") ");
+        sql.append(q.select).append(", ").append(q.keyColumn).append(" AS page_key");
+        if (q.sortColumn != null) sql.append(", ").append(q.sortColumn).append(" AS page_sort");
+        sql.append(" FROM ").append(q.from).append(" WHERE (").append(q.where).append(")");
+        if (after != null) {
+            if (q.sortColumn == null) {
+                sql.append(" AND ").append(q.keyColumn).append(op);
+            } else {
+                sql.append(" AND (").append(q.sortColumn).append(op)
+                   .append(" OR (").append(q.sortColumn).append(" = ? AND ").append(q.keyColumn).append(op).append("))");
+            }
+        }
+        sql.append(" ORDER BY ");
+        if (q.sortColumn != null) sql.append(q.sortColumn).append(dir).append(", ");
+        sql.append(q.keyColumn).append(dir);
+        if (!keyset) sql.append(" OFFSET ? ROWS FETCH NEXT ").append(PAGE_SIZE).append(" ROWS ONLY");
+
+        ColumnBlock rows = new ColumnBlock(schema, PAGE_SIZE);
+        List<Object> keys = new ArrayList<>(PAGE_SIZE);
+        List<Object> sortValues = new ArrayList<>(PAGE_SIZE);
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement statement = conn.prepareStatement(sql.toString())) {
+            int param = 1;
+            for (Object value : q.params) statement.setObject(param++, value);
+            if (after != null) {
+                if (q.sortColumn != null) {
+                    statement.setObject(param++, after.sortValue);
+                    statement.setObject(param++, after.sortValue);
+                }
+                statement.setObject(param++, after.key);
+            }
+            if (!keyset) statement.setInt(param, index * PAGE_SIZE);
+            statement.setFetchSize(PAGE_SIZE);
+
+            try (ResultSet res = statement.executeQuery()) {
+                while (res.next()) {
+                    rows.read(res);
+                    keys.add(res.getObject("page_key"));
+                    if (q.sortColumn != null) sortValues.add(res.getObject("page_sort"));
+                }
+            }
+        }
+
+        return new Page(rows, keys.toArray(), q.sortColumn == null ? null : sortValues.toArray());
+    }
+
+    // The same page from a DeskServer (see DeskServer.page). Sort values stay the strings the server sent,
+    // they only go back to it as the next page's afterSort.
+    private static Page fetch(DeskClient server, ColumnBlock.Schema schema, Query q, int index, Boundary after) throws IOException, InterruptedException {
+        StringBuilder path = new StringBuilder(resource(q));
+        if (after != null) {
+            path.append("afterKey=").append(after.key);
+            if (after.sortValue != null) path.append("&afterSort=").append(DeskClient.encode(after.sortValue.toString()));
+        } else if (index > 0) {
+            path.append("page=").append(index);
+        }
+
+        List<?> served = (List<?>) ((Map<?, ?>) server.get(path.toString())).get("rows");
+        int columns = schema.getColumnCount();
+        ColumnBlock rows = new ColumnBlock(schema, served.size());
+        Object[] keys = new Object[served.size()];
+        Object[] sortValues = q.sortColumn == null ? null : new Object[served.size()];
+        for (int i = 0; i < keys.length; i++) {
+            List<?> cells = (List<?>) served.get(i);
+            Object[] row = new Object[columns];
+            for (int c = 0; c < columns; c++) row[c] = DeskClient.value(cells.get(c), schema.getType(c));
+            rows.add(row);
+            keys[i] = ((Number) cells.get(columns)).intValue();
+            if (sortValues != null) sortValues[i] = cells.get(columns + 1);
+        }
+        return new Page(rows, keys, sortValues);
+    }
+
+    // {row count, max key} from a DeskServer
+    private static Object[] count(DeskClient server, Query q) throws IOException, InterruptedException {
+        Map<?, ?> count = (Map<?, ?>) server.get(resource(q) + "count=true");
+        Object maxKey = count.get("maxKey");
+        return new Object[]{((Number) count.get("count")).intValue(), maxKey == null ? null : ((Number) maxKey).intValue()};
+    }
+
+    // the query's resource, ready for more parameters
+    private static String resource(Query q) {
+        if (q.resource == null) throw new IllegalStateException("The desk server does not serve this query");
+        return q.resource + (q.resource.contains("?") ? "&" : "?");
+    }
+
+    // the work one setQuery does before the first screen shows (count, then page 0), without a model;
+    // used by the benchmarks. Returns the number of rows on the page.
+    static int loadFirstPage(DataSource dataSource, Query q, ColumnBlock.Schema schema) throws SQLException {
+        count(dataSource, q);
+        return fetch(dataSource, schema, q, 0, null).rows.size();
+    }
+
+    // One keyset page after the row with the given sort value and key, or without a key page 'index' by offset
+    // (0: the first page), each row followed by its key and sort value so the caller can ask for the next
+    // page; used by DeskServer.
+    static List<Object[]> fetchPage(DataSource dataSource, Query q, ColumnBlock.Schema schema, int index, Object afterSort, Object afterKey)
+            throws SQLException {
+        Page page = fetch(dataSource, schema, q, index, afterKey == null ? null : new Boundary(afterSort, afterKey));
+        List<Object[]> rows = new ArrayList<>(page.keys.length);
+        int columns = schema.getColumnCount();
+        for (int i = 0; i < page.keys.length; i++) {
+            Object[] row = new Object[columns + 2];
+            for (int c = 0; c < columns; c++) row[c] = page.rows.get(i, c);
+            row[columns] = page.keys[i];
+            row[columns + 1] = page.sortValues == null ? null : page.sortValues[i];
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    // {row count, max key}; also used by DeskServer
+    static Object[] count(DataSource dataSource, Query q) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement statement = conn.prepareStatement(
+                     "SELECT COUNT(*), MAX(" + q.keyColumn + ") FROM " + q.from + " WHERE (" + q.where + ")")) {
+            int index = 1;
+            for (Object param : q.params) statement.setObject(index++, param);
+            try (ResultSet res = statement.executeQuery()) {
+                return res.next() ? new Object[]{res.getInt(1), res.getObject(2)} : new Object[]{0, null};
+            }
+        }
+    }
+
+    private void updateProgress() {
+        progress.setIndeterminate(!pending.isEmpty());
+        progress.setString(pending.isEmpty() ? rowCount + " rows" : "Loading... " + rowCount + " rows");
+    }
+
+    private void fail(Exception e) {
+        progress.setIndeterminate(false);
+        progress.setString("Load failed");
+        onError.accept(e);
+    }
+}
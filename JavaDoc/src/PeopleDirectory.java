@@ -0,0 +1,18 @@
+import java.util.List;
+
+// Where the frames look clients and doctors up by name, email or phone: the in-memory PeopleIndex of this
+// desk, or a DeskServer's index reached through RemotePeople.
+public interface PeopleDirectory {
+    List<PeopleIndex.Match> search(String text, int limit) throws Exception;
+
+    // display name of a live entry, null if unknown
+    String getName(int id);
+
+    // this desk added or deactivated someone
+    void put(int id, String firstName, String lastName, String email, String phone);
+
+    void remove(int id);
+
+    // true when search answers in memory and can run on the EDT
+    boolean isLocal();
+}
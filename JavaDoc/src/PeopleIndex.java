@@ -0,0 +1,451 @@
+import javax.sql.DataSource;
+import java.sql.*;
+import java.util.*;
+
+// In-memory type-ahead index over first name, last name, email and phone of one table (clients or doctors).
+// Every entry is kept as one lowercase text with its fields separated by \0, phone reduced to its digits.
+// Postings map each trigram of that text, and each two-character word start, to the entry slots holding it,
+// so a query only scores the entries in the shortest posting list of its tokens. Slots are appended in
+// order, deletes leave a hole until enough of them pile up to compact.
+public class PeopleIndex implements PeopleDirectory, ChangeFeed.Listener {
+    public static final int MIN_QUERY_LENGTH = 2;
+
+    private static final char SEPARATOR = '\0';
+    private static final long WORD_START = 1L << 48; // marks two-character word-start keys apart from trigrams
+    private static final int COMPACT_MIN_HOLES = 10_000;
+
+    // a ranked search result: the id and display name, plus email and phone to tell namesakes apart
+    public static class Match {
+        private final ListItem item;
+        private final String detail;
+
+        Match(ListItem item, String detail) {
+            this.item = item;
+            this.detail = detail;
+        }
+
+        public ListItem getItem() {
+            return item;
+        }
+
+        public String getDetail() {
+            return detail;
+        }
+
+        @Override
+        public String toString() {
+            return detail.isEmpty() ? item.getName() : item.getName() + "  -  " + detail;
+        }
+    }
+
+    // growable, always sorted list of slots
+    private static class Postings {
+        int[] slots = new int[4];
+        int size;
+
+        void add(int slot) {
+            if (size > 0 && slots[size - 1] == slot) return; // gram repeated within one entry
+            if (size == slots.length) slots = Arrays.copyOf(slots, size * 2);
+            slots[size++] = slot;
+        }
+    }
+
+    private static class Scored {
+        final int slot;
+        final int score;
+        final int order;
+
+        Scored(int slot, int score, int order) {
+            this.slot = slot;
+            this.score = score;
+            this.order = order;
+        }
+    }
+
+    private final DataSource dataSource;
+    private final String table;
+    private final String query;
+    private final int[] feedColumns; // first name, last name, email, phone in the change feed's rows
+
+    private int[] ids = new int[0];
+    private String[] names = new String[0];
+    private String[] details = new String[0];
+    private String[] texts = new String[0];
+    private int size;
+    private int holes;
+    private Map<Integer, Integer> slotsById = new HashMap<>();
+    private Map<Long, Postings> postings = new HashMap<>();
+    private boolean loaded;
+
+    private PeopleIndex(DataSource dataSource, String table, String idColumn, int... feedColumns) {
+        this.dataSource = dataSource;
+        this.table = table;
+        this.query = "SELECT " + idColumn + ", first_name, last_name, email, phone FROM " + table + " WHERE is_active = 1";
+        this.feedColumns = feedColumns;
+    }
+
+    public static PeopleIndex clients(DataSource dataSource) {
+        return new PeopleIndex(dataSource, ChangeFeed.CLIENTS, "client_id", 0, 1, 2, 3);
+    }
+
+    public static PeopleIndex doctors(DataSource dataSource) {
+        return new PeopleIndex(dataSource, ChangeFeed.DOCTORS, "doctor_id", 0, 1, 3, 4);
+    }
+
+    // full load, meant to run off the EDT; searches before it finishes find nothing
+    public void load() throws SQLException {
+        PeopleIndex fresh = new PeopleIndex(null, table, "", feedColumns);
+        try (Connection conn = dataSource.getConnection();
+             Statement statement = conn.createStatement()) {
+            statement.setFetchSize(1000);
+            try (ResultSet res = statement.executeQuery(query)) {
+                while (res.next()) {
+                    fresh.add(res.getInt(1), res.getString(2), res.getString(3), res.getString(4), res.getString(5));
+                }
+            }
+        }
+
+        synchronized (this) {
+            ids = fresh.ids;
+            names = fresh.names;
+            details = fresh.details;
+            texts = fresh.texts;
+            size = fresh.size;
+            holes = 0;
+            slotsById = fresh.slotsById;
+            postings = fresh.postings;
+            loaded = true;
+        }
+    }
+
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    @Override
+    public synchronized void put(int id, String firstName, String lastName, String email, String phone) {
+        remove(id);
+        add(id, firstName, lastName, email, phone);
+    }
+
+    @Override
+    public synchronized void remove(int id) {
+        Integer slot = slotsById.remove(id);
+        if (slot == null) return;
+        texts[slot] = null;
+        names[slot] = null;
+        details[slot] = null;
+        if (++holes >= COMPACT_MIN_HOLES && holes > size / 2) compact();
+    }
+
+    @Override
+    public synchronized String getName(int id) {
+        Integer slot = slotsById.get(id);
+        return slot == null ? null : names[slot];
+    }
+
+    // Best matches first: every whitespace-separated token of the query has to occur in the entry; an entry
+    // scores more when a token starts one of its fields than when it starts a word, and more for a word start
+    // than for a match inside a word. Entries where the first token can start a word are scored first, and
+    // the rest only when those cannot fill the result; equal scores keep the order they were found in.
+    @Override
+    public synchronized List<Match> search(String text, int limit) {
+        String[] tokens = tokens(text);
+        if (tokens.length == 0 || limit <= 0) return List.of();
+
+        List<Postings> lists = new ArrayList<>();
+        int bestScore = 0;
+        for (String token : tokens) {
+            if (!addPostings(token, lists)) return List.of();
+            bestScore += postings.containsKey(wordStartKey(token, 0)) ? 3 : 1;
+        }
+        int[] candidates = intersect(lists);
+
+        // the first token scores 1 outside its word-start postings instead of up to 3, so those entries come first
+        Postings starts = postings.get(wordStartKey(tokens[0], 0));
+        PriorityQueue<Scored> top = new PriorityQueue<>(limit + 1, // worst on top: lowest score, then found last
+                (a, b) -> a.score != b.score ? Integer.compare(a.score, b.score) : Integer.compare(b.order, a.order));
+        if (starts != null) scan(candidates, starts, true, 0, tokens, bestScore, limit, top);
+        if (top.size() < limit || top.peek().score < bestScore - 2) {
+            scan(candidates, starts, false, size, tokens, starts == null ? bestScore : bestScore - 2, limit, top);
+        }
+
+        Match[] matches = new Match[top.size()];
+        for (int i = matches.length - 1; i >= 0; i--) {
+            int slot = top.poll().slot;
+            matches[i] = new Match(new ListItem(ids[slot], names[slot]), details[slot]);
+        }
+        return Arrays.asList(matches);
+    }
+
+    // scores the candidates on (or off) the word-start postings into 'top', stopping once it is full of entries
+    // nothing left can beat; candidates are in index order, so orderBase + slot is the order they were found in
+    private void scan(int[] candidates, Postings starts, boolean onStarts, int orderBase, String[] tokens, int bestScore, int limit,
+                      PriorityQueue<Scored> top) {
+        for (int i = 0, from = 0; i < candidates.length; i++) {
+            if (top.size() == limit && top.peek().score >= bestScore) return;
+            int slot = candidates[i];
+            if (starts != null) {
+                from = gallop(starts.slots, from, starts.size, slot);
+                if ((from < starts.size && starts.slots[from] == slot) != onStarts) continue;
+            }
+            String entry = texts[slot];
+            if (entry == null) continue;
+
+            int score = 0;
+            for (String token : tokens) {
+                int tokenScore = score(entry, token);
+                if (tokenScore == 0) {
+                    score = 0;
+                    break;
+                }
+                score += tokenScore;
+            }
+            if (score == 0) continue;
+
+            if (top.size() < limit) {
+                top.add(new Scored(slot, score, orderBase + slot));
+            } else if (score > top.peek().score) {
+                top.poll();
+                top.add(new Scored(slot, score, orderBase + slot));
+            }
+        }
+    }
+
+    @Override
+    public boolean isLocal() {
+        return true;
+    }
+
+    // other desks' inserts, edits and deletes
+    @Override
+    public void onChanges(ChangeFeed.Changes changes) {
+        changes.getDeletes(table).forEach(this::remove);
+        changes.getUpserts(table).forEach((id, row) -> put(id, (String) row[feedColumns[0]], (String) row[feedColumns[1]],
+                (String) row[feedColumns[2]], (String) row[feedColumns[3]]));
+    }
+
+    private void add(int id, String firstName, String lastName, String email, String phone) {
+        if (size == texts.length) {
+            int capacity = Math.max(16, size * 2);
+            ids = Arrays.copyOf(ids, capacity);
+            names = Arrays.copyOf(names, capacity);
+            details = Arrays.copyOf(details, capacity);
+            texts = Arrays.copyOf(texts, capacity);
+        }
+        int slot = size++;
+        String text = normalize(firstName) + SEPARATOR + normalize(lastName) + SEPARATOR + normalize(email) + SEPARATOR + digits(phone);
+        ids[slot] = id;
+        names[slot] = (nullToEmpty(firstName) + " " + nullToEmpty(lastName)).trim();
+        details[slot] = String.join(", ", nonEmpty(email, phone));
+        texts[slot] = text;
+        slotsById.put(id, slot);
+
+        for (int i = 0; i + 1 < text.length(); i++) {
+            if (text.charAt(i + 1) == SEPARATOR || text.charAt(i) == SEPARATOR) continue;
+            if (isWordStart(text, i)) postings(wordStartKey(text, i)).add(slot);
+            if (i + 2 < text.length() && text.charAt(i + 2) != SEPARATOR) postings(trigramKey(text, i)).add(slot);
+        }
+    }
+
+    // rebuilds the arrays and postings without the deleted entries
+    private void compact() {
+        PeopleIndex fresh = new PeopleIndex(null, table, "", feedColumns);
+        for (int slot = 0; slot < size; slot++) {
+            if (texts[slot] == null) continue;
+            fresh.addNormalized(ids[slot], names[slot], details[slot], texts[slot]);
+        }
+        ids = fresh.ids;
+        names = fresh.names;
+        details = fresh.details;
+        texts = fresh.texts;
+        size = fresh.size;
+        holes = 0;
+        slotsById = fresh.slotsById;
+        postings = fresh.postings;
+    }
+
+    private void addNormalized(int id, String name, String detail, String text) {
+        String[] fields = text.split(String.valueOf(SEPARATOR), -1);
+        add(id, fields[0], fields[1], fields[2], fields[3]);
+        names[size - 1] = name;
+        details[size - 1] = detail;
+    }
+
+    private Postings postings(long key) {
+        return postings.computeIfAbsent(key, k -> new Postings());
+    }
+
+    // the posting lists every entry containing the token is on; false if one of them is empty
+    private boolean addPostings(String token, List<Postings> lists) {
+        if (token.length() < 3) {
+            Postings list = postings.get(wordStartKey(token, 0));
+            return list != null && lists.add(list);
+        }
+        for (int i = 0; i + 2 < token.length(); i++) {
+            Postings list = postings.get(trigramKey(token, i));
+            if (list == null) return false;
+            lists.add(list);
+        }
+        return true;
+    }
+
+    // slots on every list, shortest list first and galloping through the longer ones
+    private static int[] intersect(List<Postings> lists) {
+        lists.sort(Comparator.comparingInt(list -> list.size));
+        Postings shortest = lists.get(0);
+        int[] result = Arrays.copyOf(shortest.slots, shortest.size);
+        int size = result.length;
+        for (int l = 1; l < lists.size() && size > 0; l++) {
+            Postings list = lists.get(l);
+            if (list == shortest) continue;
+            int kept = 0;
+            int from = 0;
+            for (int i = 0; i < size && from < list.size; i++) {
+                from = gallop(list.slots, from, list.size, result[i]);
+                if (from < list.size && list.slots[from] == result[i]) result[kept++] = result[i];
+            }
+            size = kept;
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    // first index in [from, to) whose slot is >= target
+    private static int gallop(int[] slots, int from, int to, int target) {
+        int step = 1;
+        int high = from;
+        while (high < to && slots[high] < target) {
+            from = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        high = Math.min(high, to);
+        while (from < high) {
+            int mid = (from + high) >>> 1;
+            if (slots[mid] < target) from = mid + 1;
+            else high = mid;
+        }
+        return from;
+    }
+
+    // 0 when the token does not match; short tokens only match at word starts, like their postings
+    private static int score(String entry, String token) {
+        int best = 0;
+        for (int at = entry.indexOf(token); at >= 0; at = entry.indexOf(token, at + 1)) {
+            int score = at == 0 || entry.charAt(at - 1) == SEPARATOR ? 3 : isWordStart(entry, at) ? 2 : token.length() < 3 ? 0 : 1;
+            if (score == 3) return score;
+            best = Math.max(best, score);
+        }
+        return best;
+    }
+
+    private static boolean isWordStart(String text, int i) {
+        if (i == 0) return true;
+        char previous = text.charAt(i - 1);
+        return previous == SEPARATOR || previous == ' ' || previous == '.' || previous == '-' || previous == '_' || previous == '@' || previous == '\'';
+    }
+
+    // keys are scrambled by an odd multiplier (still one key per gram): Long.hashCode of the packed chars
+    // would put most grams into a few HashMap buckets
+    private static long trigramKey(String text, int i) {
+        return (((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2)) * 0x9E3779B97F4A7C15L;
+    }
+
+    private static long wordStartKey(String text, int i) {
+        return (WORD_START | ((long) text.charAt(i) << 16) | text.charAt(i + 1)) * 0x9E3779B97F4A7C15L;
+    }
+
+    // lowercase tokens; phone-like ones ("555-12 34") reduced to digits like the indexed phone
+    private static String[] tokens(String query) {
+        List<String> tokens = new ArrayList<>();
+        String text = query == null ? "" : query.trim();
+        String phone = digits(text);
+        if (!phone.isEmpty() && text.matches("[0-9+()\\-. ]+")) {
+            tokens.add(phone);
+        } else {
+            for (String token : normalize(text).split("\\s+")) {
+                if (!token.isEmpty()) tokens.add(token);
+            }
+        }
+        for (String token : tokens) {
+            if (token.length() < MIN_QUERY_LENGTH) return new String[0];
+        }
+        return tokens.toArray(new String[0]);
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT).replace(SEPARATOR, ' ');
+    }
+
+    private static String digits(String value) {
+        if (value == null) return "";
+        StringBuilder digits = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.isDigit(value.charAt(i))) digits.append(value.charAt(i));
+        }
+        return digits.toString();
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value.trim();
+    }
+
+    private static List<String> nonEmpty(String... values) {
+        List<String> result = new ArrayList<>();
+        for (String value : values) {
+            if (value != null && !value.isBlank()) result.add(value.trim());
+        }
+        return result;
+    }
+
+    // Synthetic benchmark without a database: N people with generated names, emails and phones, then
+    // timed searches for name prefixes, name fragments, full names and phone digits.
+    // Usage: PeopleIndex [people]
+    public static void main(String[] args) {
+        int people = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        String[] firstNames = {"James", "Mary", "John", "Patricia", "Robert", "Jennifer", "Michael", "Linda", "William", "Elizabeth",
+                "David", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas", "Sarah", "Charles", "Karen", "Ana", "Ivan",
+                "Marko", "Jelena", "Nikola", "Milica", "Stefan", "Ivana", "Luka", "Sofia", "Mateo", "Lucia", "Noah", "Emma", "Liam", "Olivia"};
+        String[] syllables = {"an", "ber", "co", "da", "el", "fi", "gar", "ho", "is", "jo", "ka", "lin", "mo", "nes", "or", "pe",
+                "ric", "son", "ta", "vic", "wel", "yan", "zo", "mar", "ton", "sch", "ley", "ski"};
+
+        PeopleIndex index = new PeopleIndex(null, ChangeFeed.CLIENTS, "", 0, 1, 2, 3);
+        Random random = new Random(42);
+        List<String> lastNames = new ArrayList<>();
+        long started = System.nanoTime();
+        for (int id = 1; id <= people; id++) {
+            String first = firstNames[random.nextInt(firstNames.length)];
+            StringBuilder last = new StringBuilder();
+            for (int s = 2 + random.nextInt(3); s > 0; s--) last.append(syllables[random.nextInt(syllables.length)]);
+            last.setCharAt(0, Character.toUpperCase(last.charAt(0)));
+            lastNames.add(last.toString());
+            index.put(id, first, last.toString(), first.toLowerCase() + "." + last.toString().toLowerCase() + id % 97 + "@example.com",
+                    String.format("+381 6%d %07d", random.nextInt(10), random.nextInt(10_000_000)));
+        }
+        index.loaded = true;
+        System.out.printf("Indexed %,d people with %,d posting lists in %d ms%n", people, index.postings.size(), (System.nanoTime() - started) / 1_000_000);
+
+        int searches = 20_000;
+        String[] kinds = {"prefix", "fragment", "full name", "phone"};
+        for (int kind = 0; kind < kinds.length; kind++) {
+            long[] nanos = new long[searches];
+            long found = 0;
+            for (int round = 0; round < 2; round++) { // first round warms up
+                for (int i = 0; i < searches; i++) {
+                    String last = lastNames.get(random.nextInt(lastNames.size()));
+                    String query;
+                    if (kind == 0) query = last.substring(0, 2 + random.nextInt(3));
+                    else if (kind == 1) query = last.substring(1, Math.min(last.length(), 5));
+                    else if (kind == 2) query = firstNames[random.nextInt(firstNames.length)] + " " + last.substring(0, 3);
+                    else query = "6" + random.nextInt(10) + " " + String.format("%03d", random.nextInt(1000));
+                    long opStarted = System.nanoTime();
+                    found += index.search(query, 10).size();
+                    nanos[i] = System.nanoTime() - opStarted;
+                }
+            }
+            Arrays.sort(nanos);
+            System.out.printf("search %-9s p50=%7.1f us  p99=%7.1f us  max=%8.1f us  (%.1f matches/query)%n", kinds[kind],
+                    nanos[searches / 2] / 1000.0, nanos[searches * 99 / 100] / 1000.0, nanos[searches - 1] / 1000.0, found / 2.0 / searches);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+import javax.swing.*;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+// JDBC instrumentation. ConnectionPool wraps every statement it hands out, so each execution is timed
+// (execute, then fetching the rows until the ResultSet is closed), counted per calling operation
+// (the frame method or helper that issued it) in a histogram, emitted as a javadoc.Query JFR event,
+// and written to the slow-query log when it takes longer than -Djavadoc.slowQueryMs (default 500).
+// Calls made on the EDT are flagged, once per operation on stderr and in the stats.
+public class QueryMonitor {
+    static final boolean ENABLED = !Boolean.getBoolean("javadoc.jdbc.noInstrument");
+    private static final long SLOW_QUERY_NANOS = Long.getLong("javadoc.slowQueryMs", 500L) * 1_000_000;
+    private static final String SLOW_QUERY_LOG = System.getProperty("javadoc.slowQueryLog", "slow-queries.log");
+    private static final int STACK_DEPTH = 24;
+
+    private static final Set<String> EXECUTE_METHODS = Set.of(
+            "execute", "executeQuery", "executeUpdate", "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+    private static final Map<String, Stats> STATS = new ConcurrentHashMap<>();
+    private static final Set<String> EDT_WARNED = ConcurrentHashMap.newKeySet();
+    private static final Object LOG_LOCK = new Object();
+
+    @jdk.jfr.Name("javadoc.Query")
+    @jdk.jfr.Label("JDBC Query")
+    @jdk.jfr.Category("JavaDoc")
+    @jdk.jfr.StackTrace(false)
+    static class QueryEvent extends jdk.jfr.Event {
+        @jdk.jfr.Label("Operation")
+        String operation;
+        @jdk.jfr.Label("SQL")
+        String sql;
+        @jdk.jfr.Label("Execute Time")
+        @jdk.jfr.Timespan
+        long executeTime;
+        @jdk.jfr.Label("Fetch Time")
+        @jdk.jfr.Timespan
+        long fetchTime;
+        @jdk.jfr.Label("Rows")
+        long rows;
+        @jdk.jfr.Label("On EDT")
+        boolean onEdt;
+    }
+
+    // latency histogram with power-of-two microsecond buckets: 1us, 2us, 4us ... about 35 minutes
+    private static class Stats {
+        private final long[] buckets = new long[32];
+        private long count;
+        private long totalNanos;
+        private long fetchNanos;
+        private long maxNanos;
+        private long rows;
+        private long edtCalls;
+
+        synchronized void add(long executeNanos, long fetchNanos, long rows, boolean onEdt) {
+            long total = executeNanos + fetchNanos;
+            long micros = Math.max(1, total / 1000);
+            buckets[Math.min(buckets.length - 1, 63 - Long.numberOfLeadingZeros(micros))]++;
+            count++;
+            totalNanos += total;
+            this.fetchNanos += fetchNanos;
+            maxNanos = Math.max(maxNanos, total);
+            this.rows += rows;
+            if (onEdt) edtCalls++;
+        }
+
+        // upper bound of the bucket holding the p-th percentile, in ms
+        private double percentile(double p) {
+            long rank = (long) Math.ceil(p * count);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) return (1L << (i + 1)) / 1000.0;
+            }
+            return maxNanos / 1e6;
+        }
+
+        synchronized String format(String operation) {
+            return String.format(Locale.ROOT, "  %-45s n=%-7d avg=%8.2fms p50<%8.2fms p95<%8.2fms p99<%8.2fms max=%8.2fms fetch=%5.1f%% rows=%-9d edt=%d",
+                    operation, count, totalNanos / 1e6 / count, percentile(0.50), percentile(0.95), percentile(0.99),
+                    maxNanos / 1e6, totalNanos == 0 ? 0 : 100.0 * fetchNanos / totalNanos, rows, edtCalls);
+        }
+    }
+
+    // one statement execution, from execute() until its ResultSet (if any) is closed
+    private static class Execution {
+        final String operation;
+        final String sql;
+        final boolean onEdt;
+        final long started = System.nanoTime();
+        final QueryEvent event = new QueryEvent();
+        long executeNanos;
+        long fetchNanos;
+        long rows;
+        boolean recorded;
+
+        Execution(String operation, String sql, boolean onEdt) {
+            this.operation = operation;
+            this.sql = sql;
+            this.onEdt = onEdt;
+            event.begin();
+        }
+
+        void finish() {
+            if (recorded) return;
+            recorded = true;
+            record(this);
+        }
+    }
+
+    // called by ConnectionPool for whatever a connection method returned
+    static Object wrap(Object result, Method method, Object[] args) {
+        if (!ENABLED || !(result instanceof Statement)) return result;
+        String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+        Class<?> type = result instanceof CallableStatement ? CallableStatement.class
+                : result instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+        return wrapStatement((Statement) result, type, sql, callingOperation());
+    }
+
+    static void checkThread(String call) {
+        if (ENABLED && SwingUtilities.isEventDispatchThread()) flagEdt(callingOperation(), call);
+    }
+
+    private static Object wrapStatement(Statement statement, Class<?> type, String preparedSql, String operation) {
+        Execution[] current = {null};
+        return Proxy.newProxyInstance(QueryMonitor.class.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            String name = method.getName();
+            if (EXECUTE_METHODS.contains(name)) {
+                finish(current[0]); // a statement re-executed without closing its previous ResultSet
+                String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : preparedSql;
+                boolean onEdt = SwingUtilities.isEventDispatchThread();
+                if (onEdt) flagEdt(operation, name);
+
+                Execution execution = new Execution(operation, sql, onEdt);
+                Object result = invoke(statement, method, args);
+                execution.executeNanos = System.nanoTime() - execution.started;
+                if (result instanceof ResultSet) {
+                    current[0] = execution;
+                    return wrapResultSet((ResultSet) result, execution);
+                }
+                execution.rows = affectedRows(result);
+                execution.finish();
+                return result;
+            }
+            if (name.equals("getResultSet")) {
+                Object result = invoke(statement, method, args);
+                return result instanceof ResultSet && current[0] != null ? wrapResultSet((ResultSet) result, current[0]) : result;
+            }
+            if (name.equals("close")) finish(current[0]);
+            if (name.equals("unwrap") && ((Class<?>) args[0]).isInstance(proxy)) return proxy;
+            if (name.equals("isWrapperFor") && ((Class<?>) args[0]).isInstance(proxy)) return true;
+            if (name.equals("equals")) return proxy == args[0];
+            if (name.equals("hashCode")) return System.identityHashCode(proxy);
+            return invoke(statement, method, args);
+        });
+    }
+
+    private static ResultSet wrapResultSet(ResultSet resultSet, Execution execution) {
+        return (ResultSet) Proxy.newProxyInstance(QueryMonitor.class.getClassLoader(), new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "next":
+                    long started = System.nanoTime();
+                    Object more = invoke(resultSet, method, args);
+                    execution.fetchNanos += System.nanoTime() - started;
+                    if ((Boolean) more) execution.rows++;
+                    return more;
+                case "close":
+                    execution.finish();
+                    return invoke(resultSet, method, args);
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return invoke(resultSet, method, args);
+            }
+        });
+    }
+
+    private static void finish(Execution execution) {
+        if (execution != null) execution.finish();
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static long affectedRows(Object result) {
+        if (result instanceof Number) return ((Number) result).longValue();
+        long rows = 0;
+        if (result instanceof int[]) for (int n : (int[]) result) rows += Math.max(n, 0);
+        if (result instanceof long[]) for (long n : (long[]) result) rows += Math.max(n, 0);
+        return rows;
+    }
+
+    private static void record(Execution execution) {
+        STATS.computeIfAbsent(execution.operation, o -> new Stats())
+                .add(execution.executeNanos, execution.fetchNanos, execution.rows, execution.onEdt);
+
+        QueryEvent event = execution.event;
+        if (event.shouldCommit()) {
+            event.operation = execution.operation;
+            event.sql = execution.sql;
+            event.executeTime = execution.executeNanos;
+            event.fetchTime = execution.fetchNanos;
+            event.rows = execution.rows;
+            event.onEdt = execution.onEdt;
+            event.commit();
+        }
+
+        long total = execution.executeNanos + execution.fetchNanos;
+        if (total >= SLOW_QUERY_NANOS) logSlowQuery(execution, total);
+    }
+
+    private static void logSlowQuery(Execution execution, long totalNanos) {
+        String line = String.format(Locale.ROOT, "%s %s total=%.1fms execute=%.1fms fetch=%.1fms rows=%d%s sql=%s%n",
+                LocalDateTime.now(), execution.operation, totalNanos / 1e6, execution.executeNanos / 1e6, execution.fetchNanos / 1e6,
+                execution.rows, execution.onEdt ? " EDT" : "", execution.sql == null ? "?" : execution.sql.replaceAll("\\s+", " "));
+        synchronized (LOG_LOCK) {
+            try (Writer out = Files.newBufferedWriter(Paths.get(SLOW_QUERY_LOG), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                out.write(line);
+            } catch (IOException e) {
+                System.err.print("Slow query (log unavailable: " + e.getMessage() + "): " + line);
+            }
+        }
+    }
+
+    private static void flagEdt(String operation, String call) {
+        if (EDT_WARNED.add(operation)) {
+            System.err.println("JDBC call on the EDT: " + operation + " (" + call + "), the UI freezes while it runs");
+        }
+    }
+
+    // the app method that issued the statement: the nearest frame class if there is one, otherwise the
+    // nearest app class (the app lives in the default package, so its class names have no dots)
+    private static String callingOperation() {
+        return StackWalker.getInstance().walk(frames -> {
+            String first = null;
+            for (StackWalker.StackFrame frame : (Iterable<StackWalker.StackFrame>) frames.limit(STACK_DEPTH)::iterator) {
+                String type = frame.getClassName();
+                if (type.indexOf('.') >= 0 || type.startsWith("QueryMonitor") || type.startsWith("ConnectionPool")) continue;
+                String operation = type + "." + methodName(frame.getMethodName());
+                if (type.endsWith("Frame")) return operation;
+                if (first == null) first = operation;
+            }
+            return first != null ? first : "unknown";
+        });
+    }
+
+    // lambda$searchAppointments$3 -> searchAppointments
+    private static String methodName(String method) {
+        if (!method.startsWith("lambda$")) return method;
+        int end = method.indexOf('$', 7);
+        return end > 7 ? method.substring(7, end) : method;
+    }
+
+    // per-operation summary, slowest total time first
+    public static String report() {
+        if (STATS.isEmpty()) return "QueryMonitor: no statements executed";
+        return STATS.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, Stats> e) -> -e.getValue().totalNanos))
+                .map(e -> e.getValue().format(e.getKey()))
+                .collect(Collectors.joining("\n", "QueryMonitor (latency buckets are powers of two):\n", ""));
+    }
+}
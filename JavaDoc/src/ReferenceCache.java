@@ -0,0 +1,125 @@
+import javax.sql.DataSource;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Process-wide cache of the small reference lists (doctors, clients, specializations)
+// that the frames use to fill their combo boxes. Entries expire after a TTL, the number of entries
+// is bounded (least recently used goes first), and writers invalidate the lists they change.
+public class ReferenceCache {
+    public static final String DOCTORS = "doctors";
+    public static final String CLIENTS = "clients";
+    public static final String SPECIALIZATIONS = "specializations";
+
+    public interface Loader<T> {
+        T load(Connection conn) throws SQLException;
+    }
+
+    private static class Entry {
+        final Object value;
+        final long loadedAt;
+
+        Entry(Object value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private final DataSource dataSource;
+    private final long ttlMillis;
+    private final Map<String, Entry> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private long invalidations; // bumped on every invalidation, guards against caching a stale load
+
+    public ReferenceCache(DataSource dataSource, int maxEntries, long ttlMillis) {
+        this.dataSource = dataSource;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public List<ListItem> getDoctors() throws SQLException {
+        return get(DOCTORS, conn -> queryItems(conn, "SELECT doctor_id, first_name + ' ' + last_name AS name FROM Doctors WHERE is_active = 1 ORDER BY last_name, first_name"));
+    }
+
+    public List<ListItem> getClients() throws SQLException {
+        return get(CLIENTS, conn -> queryItems(conn, "SELECT client_id, first_name + ' ' + last_name AS name FROM Clients WHERE is_active = 1 ORDER BY last_name, first_name"));
+    }
+
+    public List<ListItem> getSpecializations() throws SQLException {
+        return get(SPECIALIZATIONS, conn -> queryItems(conn, "SELECT specialization_id, name FROM Specializations ORDER BY name"));
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, Loader<T> loader) throws SQLException {
+        long seenInvalidations;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && System.currentTimeMillis() - entry.loadedAt < ttlMillis) {
+                hits.incrementAndGet();
+                return (T) entry.value;
+            }
+            seenInvalidations = invalidations;
+        }
+
+        // load outside the lock so one slow query does not hold up the other lists
+        misses.incrementAndGet();
+        long loadedAt = System.currentTimeMillis();
+        T value;
+        try (Connection conn = dataSource.getConnection()) {
+            value = loader.load(conn);
+        }
+
+        synchronized (this) {
+            // an invalidation that happened while loading wins over the possibly stale result
+            if (invalidations == seenInvalidations) {
+                entries.put(key, new Entry(value, loadedAt));
+            }
+        }
+        return value;
+    }
+
+    public synchronized void invalidate(String key) {
+        entries.remove(key);
+        invalidations++;
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+        invalidations++;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public synchronized String toString() {
+        long h = hits.get(), m = misses.get();
+        return String.format("ReferenceCache[entries=%d, hits=%d, misses=%d, hitRatio=%.1f%%]",
+                entries.size(), h, m, h + m == 0 ? 0 : 100.0 * h / (h + m));
+    }
+
+    private static List<ListItem> queryItems(Connection conn, String query) throws SQLException {
+        List<ListItem> items = new ArrayList<>();
+        try (Statement statement = conn.createStatement();
+             ResultSet res = statement.executeQuery(query)) {
+            while (res.next()) {
+                items.add(new ListItem(res.getInt(1), res.getString(2)));
+            }
+        }
+        return List.copyOf(items);
+    }
+}
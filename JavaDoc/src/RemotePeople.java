@@ -0,0 +1,44 @@
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// PeopleDirectory answered by a DeskServer's index, for desks that do not load their own. The server keeps
+// its index current from its change feed, so put and remove only touch the names remembered here.
+public class RemotePeople implements PeopleDirectory {
+    private final DeskClient client;
+    private final String kind;
+    private final Map<Integer, String> names = new ConcurrentHashMap<>(); // from earlier searches
+
+    public RemotePeople(DeskClient client, String kind) {
+        this.client = client;
+        this.kind = kind;
+    }
+
+    @Override
+    public List<PeopleIndex.Match> search(String text, int limit) throws Exception {
+        if (text == null || text.trim().length() < PeopleIndex.MIN_QUERY_LENGTH) return List.of();
+        List<PeopleIndex.Match> matches = client.lookup(kind, text, limit);
+        for (PeopleIndex.Match match : matches) names.put(match.getItem().getId(), match.getItem().getName());
+        return matches;
+    }
+
+    @Override
+    public String getName(int id) {
+        return names.get(id);
+    }
+
+    @Override
+    public void put(int id, String firstName, String lastName, String email, String phone) {
+        names.put(id, ((firstName == null ? "" : firstName.trim()) + " " + (lastName == null ? "" : lastName.trim())).trim());
+    }
+
+    @Override
+    public void remove(int id) {
+        names.remove(id);
+    }
+
+    @Override
+    public boolean isLocal() {
+        return false;
+    }
+}
@@ -0,0 +1,109 @@
+import javax.sql.DataSource;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Runs independent report queries at the same time, each on its own pooled connection, so a set of
+// reports takes as long as the slowest one instead of the sum of all of them.
+public class ReportRunner implements AutoCloseable {
+    public static class Report {
+        private final String title;
+        private final String sql;
+
+        public Report(String title, String sql) {
+            this.title = title;
+            this.sql = sql;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+    }
+
+    public static class Result {
+        private final Report report;
+        private final String[] columns;
+        private final List<Object[]> rows;
+        private final long millis;
+
+        Result(Report report, String[] columns, List<Object[]> rows, long millis) {
+            this.report = report;
+            this.columns = columns;
+            this.rows = rows;
+            this.millis = millis;
+        }
+
+        public Report getReport() {
+            return report;
+        }
+
+        public String[] getColumns() {
+            return columns;
+        }
+
+        public List<Object[]> getRows() {
+            return rows;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+    }
+
+    private final DataSource dataSource;
+    private final ExecutorService executor;
+
+    public ReportRunner(DataSource dataSource, int parallelism) {
+        this.dataSource = dataSource;
+        this.executor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "report-runner");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // one future per report, in the same order; every report is bound to the same parameters
+    public List<CompletableFuture<Result>> run(List<Report> reports, Object... params) {
+        List<CompletableFuture<Result>> results = new ArrayList<>();
+        for (Report report : reports) {
+            results.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return execute(report, params);
+                } catch (SQLException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor));
+        }
+        return results;
+    }
+
+    private Result execute(Report report, Object[] params) throws SQLException {
+        long started = System.currentTimeMillis();
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement statement = conn.prepareStatement(report.sql)) {
+            for (int i = 0; i < params.length; i++) statement.setObject(i + 1, params[i]);
+            try (ResultSet res = statement.executeQuery()) {
+                ResultSetMetaData meta = res.getMetaData();
+                String[] columns = new String[meta.getColumnCount()];
+                for (int i = 0; i < columns.length; i++) columns[i] = meta.getColumnLabel(i + 1);
+
+                List<Object[]> rows = new ArrayList<>();
+                while (res.next()) {
+                    Object[] row = new Object[columns.length];
+                    for (int i = 0; i < columns.length; i++) row[i] = res.getObject(i + 1);
+                    rows.add(row);
+                }
+                return new Result(report, columns, rows, System.currentTimeMillis() - started);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
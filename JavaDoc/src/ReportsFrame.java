@@ -0,0 +1,151 @@
+import javax.sql.DataSource;
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Management reports. Every query reads the AppointmentDailyStats and AppointmentArchiveDailyStats indexed
+// views (V004, V005) plus the small Doctors / Specializations / Pricing tables, never the appointment tables
+// themselves, and all of them run at once.
+public class ReportsFrame {
+    private static final int PARALLELISM = 4;
+
+    // an archived day can still have live rows (only completed appointments move), hence the SUMs in every report
+    private static final String STATS = "(SELECT doctor_id, [day], [status], appointments, minutes FROM AppointmentDailyStats WITH (NOEXPAND) " +
+            "UNION ALL SELECT doctor_id, [day], [status], appointments, minutes FROM AppointmentArchiveDailyStats WITH (NOEXPAND)) v " +
+            "JOIN Doctors d ON d.doctor_id = v.doctor_id ";
+    private static final String IN_RANGE = "v.[day] >= ? AND v.[day] < ? ";
+    // Monday of the day's week; 1900-01-01 was a Monday, so this does not depend on SET DATEFIRST
+    private static final String WEEK = "DATEADD(day, -(DATEDIFF(day, '19000101', v.[day]) % 7), v.[day])";
+
+    // revenue counts completed appointments at the specialization's current fee (its newest Pricing row)
+    static final List<ReportRunner.Report> REPORTS = List.of(
+            new ReportRunner.Report("Revenue by Specialization",
+                    "SELECT s.name AS specialization, SUM(v.appointments) AS completed, ISNULL(f.fee, 0) AS fee, " +
+                    "SUM(v.appointments) * ISNULL(f.fee, 0) AS revenue " +
+                    "FROM " + STATS + "JOIN Specializations s ON s.specialization_id = d.specialization_id " +
+                    "OUTER APPLY (SELECT TOP (1) p.fee FROM Pricing p WHERE p.specialization_id = s.specialization_id ORDER BY p.pricing_id DESC) f " +
+                    "WHERE v.[status] = 'completed' AND " + IN_RANGE +
+                    "GROUP BY s.name, f.fee ORDER BY revenue DESC, specialization"),
+            new ReportRunner.Report("Per Doctor per Day",
+                    "SELECT d.first_name + ' ' + d.last_name AS doctor, v.[day], SUM(v.appointments) AS appointments, SUM(v.minutes) AS booked_minutes " +
+                    "FROM " + STATS + "WHERE v.[status] <> 'cancelled' AND " + IN_RANGE +
+                    "GROUP BY d.doctor_id, d.first_name, d.last_name, v.[day] ORDER BY v.[day], doctor"),
+            new ReportRunner.Report("Per Doctor per Week",
+                    "SELECT d.first_name + ' ' + d.last_name AS doctor, " + WEEK + " AS week_of, SUM(v.appointments) AS appointments, " +
+                    "SUM(v.minutes) AS booked_minutes " +
+                    "FROM " + STATS + "WHERE v.[status] <> 'cancelled' AND " + IN_RANGE +
+                    "GROUP BY d.doctor_id, d.first_name, d.last_name, " + WEEK + " ORDER BY week_of, doctor"),
+            new ReportRunner.Report("Status Breakdown",
+                    "SELECT v.[status], SUM(v.appointments) AS appointments, " +
+                    "CAST(100.0 * SUM(v.appointments) / SUM(SUM(v.appointments)) OVER () AS DECIMAL(5, 1)) AS [percent] " +
+                    "FROM " + STATS + "WHERE " + IN_RANGE +
+                    "GROUP BY v.[status] ORDER BY appointments DESC"));
+
+    private final ReportRunner runner;
+    private final JFrame frame;
+    private final JTabbedPane tabs = new JTabbedPane();
+    private final JTextField fromInput;
+    private final JTextField toInput;
+    private final JButton btnRun;
+    private final JLabel status = new JLabel(" ");
+
+    public ReportsFrame(DataSource dataSource) {
+        runner = new ReportRunner(dataSource, PARALLELISM);
+        frame = new JFrame("Reports");
+        frame.setSize(800, 500);
+        frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+
+        for (ReportRunner.Report report : REPORTS) {
+            tabs.addTab(report.getTitle(), new JScrollPane(new JTable(new DefaultTableModel())));
+        }
+
+        JPanel searchPanel = new JPanel(new FlowLayout());
+        searchPanel.add(new JLabel("From (yyyy-mm-dd):"));
+        fromInput = new JTextField(LocalDate.now().withDayOfMonth(1).toString(), 10);
+        searchPanel.add(fromInput);
+        searchPanel.add(new JLabel("To (exclusive):"));
+        toInput = new JTextField(LocalDate.now().withDayOfMonth(1).plusMonths(1).toString(), 10);
+        searchPanel.add(toInput);
+        btnRun = new JButton("Run");
+        btnRun.addActionListener(e -> runReports());
+        searchPanel.add(btnRun);
+
+        frame.add(searchPanel, BorderLayout.NORTH);
+        frame.add(tabs, BorderLayout.CENTER);
+        frame.add(status, BorderLayout.SOUTH);
+        frame.setVisible(true);
+
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                runner.close();
+            }
+        });
+        runReports();
+    }
+
+    private void runReports() {
+        LocalDate from, to;
+        try {
+            from = LocalDate.parse(fromInput.getText().trim());
+            to = LocalDate.parse(toInput.getText().trim());
+        } catch (DateTimeParseException e) {
+            JOptionPane.showMessageDialog(frame, "Enter the dates as yyyy-mm-dd.", "Warning", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        btnRun.setEnabled(false);
+        status.setText("Running " + REPORTS.size() + " reports...");
+        long started = System.currentTimeMillis();
+        AtomicInteger remaining = new AtomicInteger(REPORTS.size());
+
+        List<CompletableFuture<ReportRunner.Result>> results = runner.run(REPORTS, Date.valueOf(from), Date.valueOf(to));
+        for (int i = 0; i < results.size(); i++) {
+            int tab = i;
+            results.get(i).whenComplete((result, error) -> SwingUtilities.invokeLater(() -> {
+                if (error != null) {
+                    showErrorDialog("Failed to run " + REPORTS.get(tab).getTitle() + ".", unwrap(error));
+                } else {
+                    show(tab, result);
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    btnRun.setEnabled(true);
+                    status.setText(REPORTS.size() + " reports in " + (System.currentTimeMillis() - started) + " ms");
+                }
+            }));
+        }
+    }
+
+    private void show(int tab, ReportRunner.Result result) {
+        DefaultTableModel model = new DefaultTableModel(result.getColumns(), 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        result.getRows().forEach(model::addRow);
+        JTable table = new JTable(model);
+        table.setAutoCreateRowSorter(true);
+        tabs.setComponentAt(tab, new JScrollPane(table));
+        tabs.setTitleAt(tab, result.getReport().getTitle() + " (" + result.getRows().size() + ")");
+    }
+
+    private static Exception unwrap(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof Exception ? (Exception) cause : new RuntimeException(cause);
+    }
+
+    private void showErrorDialog(String message, Exception e) {
+        JOptionPane.showMessageDialog(null, message + "\nError: " + e.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
+        e.printStackTrace();
+    }
+}
@@ -0,0 +1,382 @@
+import javax.sql.DataSource;
+import java.sql.*;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.function.Supplier;
+
+// In-memory interval index of booked appointments per doctor, for the active horizon (yesterday up to
+// javadoc.schedule.horizonDays ahead, rolled forward by the first lookup on a later day). Answers "does this overlap?" before an INSERT and "next free slots"
+// without going to the database. The TR_Appointments_NoOverlap trigger stays the final authority,
+// this index only lets the frame warn early and suggest times.
+public class ScheduleIndex implements ChangeFeed.Listener, BookingWriter.Listener {
+    public static final int DEFAULT_DURATION_MINUTES = 30;
+    static final int MAX_DURATION_MINUTES = 480; // same bound as CK_Appointments_duration
+
+    static final int HORIZON_DAYS = Integer.getInteger("javadoc.schedule.horizonDays", 90);
+    static final LocalTime DAY_START = LocalTime.of(Integer.getInteger("javadoc.schedule.dayStart", 8), 0);
+    static final LocalTime DAY_END = LocalTime.of(Integer.getInteger("javadoc.schedule.dayEnd", 17), 0);
+    private static final int SLOT_STEP_MINUTES = 15;
+    private static final String CANCELLED = "cancelled";
+    private static final int ID_CHUNK_SIZE = 1000; // under SQL Server's 2100 parameter limit
+    private static final int BULK_CHANGE = 10_000; // a change this large (an import) reloads instead
+
+    private static final String SELECT_BOOKINGS =
+            "SELECT appointment_id, doctor_id, [date], duration_minutes FROM Appointments WHERE [status] <> '" + CANCELLED + "' ";
+
+    // times are minutes since the epoch of the local wall clock, which is what DATETIME stores
+    private static class Booking implements Comparable<Booking> {
+        final int id;
+        final int doctorId;
+        final long start;
+        final long end;
+
+        Booking(int id, int doctorId, long start, long end) {
+            this.id = id;
+            this.doctorId = doctorId;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int compareTo(Booking other) {
+            int c = Long.compare(start, other.start);
+            return c != 0 ? c : Integer.compare(id, other.id);
+        }
+    }
+
+    public static class Slot {
+        private final int doctorId;
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+
+        Slot(int doctorId, LocalDateTime start, LocalDateTime end) {
+            this.doctorId = doctorId;
+            this.start = start;
+            this.end = end;
+        }
+
+        public int getDoctorId() {
+            return doctorId;
+        }
+
+        public LocalDateTime getStart() {
+            return start;
+        }
+
+        public LocalDateTime getEnd() {
+            return end;
+        }
+
+        @Override
+        public String toString() {
+            return start.format(DateTimeFormatter.ofPattern("EEE yyyy-MM-dd HH:mm")) + " - " + end.toLocalTime();
+        }
+    }
+
+    private final DataSource dataSource;
+    private Supplier<List<BookingJournal.Booking>> pending = List::of; // journaled, not yet in the database
+    private Map<Integer, TreeSet<Booking>> byDoctor = new HashMap<>();
+    private Map<Integer, Booking> byId = new HashMap<>();
+    private Map<Integer, List<Integer>> doctorsBySpecialization = new HashMap<>();
+    private long horizonStart;
+    private long horizonEnd;
+    private LocalDate loadedOn; // the day the horizon was computed for
+    private boolean rolling;
+    private boolean loaded;
+
+    public ScheduleIndex(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    // this desk's journaled bookings, which a load must not forget: see BookingWriter.getPending
+    public synchronized void setPending(Supplier<List<BookingJournal.Booking>> pending) {
+        this.pending = pending;
+    }
+
+    // full load, meant to run off the EDT; lookups before it finishes report no conflicts and no slots
+    public void load() throws SQLException {
+        LocalDate today = LocalDate.now();
+        long start = horizonStart(today);
+        long end = horizonEnd(today);
+
+        Map<Integer, TreeSet<Booking>> doctors = new HashMap<>();
+        Map<Integer, Booking> ids = new HashMap<>();
+        Map<Integer, List<Integer>> specializations;
+        try (Connection conn = dataSource.getConnection()) {
+            specializations = loadSpecializations(conn);
+            for (Booking booking : loadRange(conn, start - MAX_DURATION_MINUTES, end)) {
+                doctors.computeIfAbsent(booking.doctorId, d -> new TreeSet<>()).add(booking);
+                ids.put(booking.id, booking);
+            }
+        }
+        install(doctors, ids, specializations, today);
+    }
+
+    // an empty index over today's horizon, for bench/ScheduleIndexBenchmark
+    static ScheduleIndex empty() {
+        ScheduleIndex index = new ScheduleIndex(null);
+        index.install(new HashMap<>(), new HashMap<>(), new HashMap<>(), LocalDate.now());
+        return index;
+    }
+
+    private synchronized void install(Map<Integer, TreeSet<Booking>> doctors, Map<Integer, Booking> ids,
+                                      Map<Integer, List<Integer>> specializations, LocalDate today) {
+        byDoctor = doctors;
+        byId = ids;
+        doctorsBySpecialization = specializations;
+        horizonStart = horizonStart(today);
+        horizonEnd = horizonEnd(today);
+        loadedOn = today;
+        loaded = true;
+        // the query cannot see them; includes bookings replayed from an earlier run
+        for (BookingJournal.Booking booking : pending.get()) onAccepted(booking);
+    }
+
+    // Called by lookups with the lock held. On a desk left running past midnight, the days that came into
+    // the horizon are read in the background and the ones that left it are dropped; until then lookups use
+    // the old horizon.
+    private void rollHorizon() {
+        LocalDate today = LocalDate.now();
+        if (!loaded || rolling || !today.isAfter(loadedOn)) return;
+        rolling = true;
+        long from = horizonEnd;
+        long end = horizonEnd(today);
+        AsyncQuery.run(() -> {
+            try (Connection conn = dataSource.getConnection()) {
+                return loadRange(conn, from, end);
+            }
+        }, bookings -> {
+            synchronized (this) {
+                for (Booking booking : bookings) put(booking.id, booking.doctorId, dateTime(booking.start), (int) (booking.end - booking.start));
+                long start = horizonStart(today);
+                for (Booking booking : new ArrayList<>(byId.values())) {
+                    if (booking.start < start - MAX_DURATION_MINUTES) remove(booking.id);
+                }
+                horizonStart = start;
+                horizonEnd = end;
+                loadedOn = today;
+                rolling = false;
+            }
+        }, e -> {
+            synchronized (this) {
+                rolling = false;
+            }
+            System.err.println("Schedule horizon roll failed: " + e.getMessage());
+        });
+    }
+
+    // non-cancelled bookings starting in [from, to); seeks on IX_Appointments_date (V003)
+    private static List<Booking> loadRange(Connection conn, long from, long to) throws SQLException {
+        List<Booking> bookings = new ArrayList<>();
+        try (PreparedStatement statement = conn.prepareStatement(SELECT_BOOKINGS + "AND [date] >= ? AND [date] < ?")) {
+            statement.setTimestamp(1, Timestamp.valueOf(dateTime(from)));
+            statement.setTimestamp(2, Timestamp.valueOf(dateTime(to)));
+            statement.setFetchSize(1000);
+            try (ResultSet res = statement.executeQuery()) {
+                while (res.next()) bookings.add(booking(res));
+            }
+        }
+        return bookings;
+    }
+
+    private static long horizonStart(LocalDate today) {
+        return minutes(today.minusDays(1).atStartOfDay());
+    }
+
+    private static long horizonEnd(LocalDate today) {
+        return minutes(today.plusDays(HORIZON_DAYS).atStartOfDay());
+    }
+
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    // ids of the booked appointments that overlap [start, start + duration), empty if none or outside the horizon
+    public synchronized List<Integer> findConflicts(int doctorId, LocalDateTime start, int durationMinutes) {
+        long from = minutes(start);
+        long to = from + durationMinutes;
+        rollHorizon();
+        if (!loaded || to <= horizonStart || from >= horizonEnd) return List.of();
+
+        List<Integer> conflicts = new ArrayList<>();
+        for (Booking booking : overlapping(doctorId, from, to)) conflicts.add(booking.id);
+        return conflicts;
+    }
+
+    public synchronized void put(int appointmentId, int doctorId, LocalDateTime start, int durationMinutes) {
+        remove(appointmentId);
+        long from = minutes(start);
+        Booking booking = new Booking(appointmentId, doctorId, from, from + durationMinutes);
+        byDoctor.computeIfAbsent(doctorId, d -> new TreeSet<>()).add(booking);
+        byId.put(appointmentId, booking);
+    }
+
+    public synchronized void remove(int appointmentId) {
+        Booking booking = byId.remove(appointmentId);
+        if (booking != null) byDoctor.get(booking.doctorId).remove(booking);
+    }
+
+    // next free slots for one doctor within working hours, starting at the next step after 'from'
+    public synchronized List<Slot> nextFreeSlots(int doctorId, LocalDateTime from, int durationMinutes, int count) {
+        List<Slot> slots = new ArrayList<>();
+        if (!loaded) return slots;
+        rollHorizon();
+
+        long t = roundUp(Math.max(minutes(from), minutes(LocalDateTime.now())));
+        while (slots.size() < count && t + durationMinutes <= horizonEnd) {
+            LocalDateTime candidate = dateTime(t);
+            long dayStart = minutes(candidate.toLocalDate().atTime(DAY_START));
+            long dayEnd = minutes(candidate.toLocalDate().atTime(DAY_END));
+            if (isWeekend(candidate.toLocalDate()) || t + durationMinutes > dayEnd) {
+                t = minutes(candidate.toLocalDate().plusDays(1).atTime(DAY_START));
+                continue;
+            }
+            if (t < dayStart) {
+                t = dayStart;
+                continue;
+            }
+
+            long blockedUntil = -1;
+            for (Booking booking : overlapping(doctorId, t, t + durationMinutes)) {
+                blockedUntil = Math.max(blockedUntil, booking.end);
+            }
+            if (blockedUntil < 0) {
+                slots.add(new Slot(doctorId, candidate, dateTime(t + durationMinutes)));
+                t += durationMinutes;
+            } else {
+                t = roundUp(blockedUntil);
+            }
+        }
+        return slots;
+    }
+
+    // earliest free slots across every doctor of the specialization, merged by start time
+    public synchronized List<Slot> nextFreeSlotsForSpecialization(int specializationId, LocalDateTime from, int durationMinutes, int count) {
+        List<Slot> slots = new ArrayList<>();
+        for (int doctorId : doctorsBySpecialization.getOrDefault(specializationId, List.of())) {
+            slots.addAll(nextFreeSlots(doctorId, from, durationMinutes, count));
+        }
+        slots.sort(Comparator.comparing(Slot::getStart).thenComparingInt(Slot::getDoctorId));
+        return slots.size() > count ? new ArrayList<>(slots.subList(0, count)) : slots;
+    }
+
+    // this desk's bookings count as booked from the moment they are journaled, under a provisional id
+    @Override
+    public void onAccepted(BookingJournal.Booking booking) {
+        put(booking.getProvisionalId(), booking.getDoctorId(), booking.getDate(), booking.getDurationMinutes());
+    }
+
+    @Override
+    public synchronized void onFlushed(BookingJournal.Booking booking, int appointmentId) {
+        remove(booking.getProvisionalId());
+        put(appointmentId, booking.getDoctorId(), booking.getDate(), booking.getDurationMinutes());
+    }
+
+    @Override
+    public void onRejected(BookingJournal.Booking booking, SQLException e) {
+        remove(booking.getProvisionalId());
+    }
+
+    // other desks' bookings: deletes apply at once, changed ids are re-read since the feed's rows carry no duration
+    @Override
+    public void onChanges(ChangeFeed.Changes changes) {
+        if (changes.touches(ChangeFeed.DOCTORS)) {
+            AsyncQuery.run(() -> {
+                try (Connection conn = dataSource.getConnection()) {
+                    return loadSpecializations(conn);
+                }
+            }, specializations -> {
+                synchronized (this) {
+                    doctorsBySpecialization = specializations;
+                }
+            }, e -> System.err.println("Schedule refresh failed: " + e.getMessage()));
+        }
+
+        changes.getDeletes(ChangeFeed.APPOINTMENTS).forEach(this::remove);
+        Set<Integer> changed = changes.getUpserts(ChangeFeed.APPOINTMENTS).keySet();
+        if (changed.isEmpty()) return;
+        if (changed.size() > BULK_CHANGE) {
+            AsyncQuery.run(() -> {
+                load();
+                return null;
+            }, ignored -> { }, e -> System.err.println("Schedule reload failed: " + e.getMessage()));
+            return;
+        }
+
+        List<Integer> ids = new ArrayList<>(changed);
+        AsyncQuery.run(() -> reload(ids), bookings -> {
+            synchronized (this) {
+                ids.forEach(this::remove);
+                for (Booking booking : bookings) put(booking.id, booking.doctorId, dateTime(booking.start), (int) (booking.end - booking.start));
+            }
+        }, e -> System.err.println("Schedule refresh failed: " + e.getMessage()));
+    }
+
+    private static Map<Integer, List<Integer>> loadSpecializations(Connection conn) throws SQLException {
+        Map<Integer, List<Integer>> specializations = new HashMap<>();
+        try (Statement statement = conn.createStatement();
+             ResultSet res = statement.executeQuery("SELECT doctor_id, specialization_id FROM Doctors WHERE is_active = 1")) {
+            while (res.next()) {
+                specializations.computeIfAbsent(res.getInt(2), s -> new ArrayList<>()).add(res.getInt(1));
+            }
+        }
+        return specializations;
+    }
+
+    private List<Booking> reload(List<Integer> ids) throws SQLException {
+        List<Booking> bookings = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection()) {
+            for (int from = 0; from < ids.size(); from += ID_CHUNK_SIZE) {
+                List<Integer> chunk = ids.subList(from, Math.min(from + ID_CHUNK_SIZE, ids.size()));
+                try (PreparedStatement statement = conn.prepareStatement(
+                        SELECT_BOOKINGS + "AND appointment_id IN (" + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")")) {
+                    for (int i = 0; i < chunk.size(); i++) statement.setInt(i + 1, chunk.get(i));
+                    try (ResultSet res = statement.executeQuery()) {
+                        while (res.next()) bookings.add(booking(res));
+                    }
+                }
+            }
+        }
+        return bookings;
+    }
+
+    // bookings are at most MAX_DURATION_MINUTES long, so anything overlapping [from, to) starts in (from - max, to)
+    private List<Booking> overlapping(int doctorId, long from, long to) {
+        TreeSet<Booking> bookings = byDoctor.get(doctorId);
+        if (bookings == null) return List.of();
+
+        List<Booking> overlaps = new ArrayList<>();
+        Booking low = new Booking(Integer.MIN_VALUE, doctorId, from - MAX_DURATION_MINUTES, 0);
+        Booking high = new Booking(Integer.MIN_VALUE, doctorId, to, 0);
+        for (Booking booking : bookings.subSet(low, true, high, false)) {
+            if (booking.end > from) overlaps.add(booking);
+        }
+        return overlaps;
+    }
+
+    private static Booking booking(ResultSet res) throws SQLException {
+        long start = minutes(res.getTimestamp("date").toLocalDateTime());
+        return new Booking(res.getInt("appointment_id"), res.getInt("doctor_id"), start, start + res.getInt("duration_minutes"));
+    }
+
+    private static boolean isWeekend(LocalDate day) {
+        return day.getDayOfWeek() == DayOfWeek.SATURDAY || day.getDayOfWeek() == DayOfWeek.SUNDAY;
+    }
+
+    private static long roundUp(long minutes) {
+        return (minutes + SLOT_STEP_MINUTES - 1) / SLOT_STEP_MINUTES * SLOT_STEP_MINUTES;
+    }
+
+    private static long minutes(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    private static LocalDateTime dateTime(long minutes) {
+        return LocalDateTime.ofEpochSecond(minutes * 60, 0, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,106 @@
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Applies the versioned scripts in src/migrations on top of JavaDoc.sql.
+// Applied versions are recorded in SchemaVersion, so every script runs exactly once per database.
+public class SchemaMigrator {
+    // in order; add new scripts at the end
+    private static final String[] MIGRATIONS = {
+            "V001__search_indexes.sql",
+            "V002__change_tracking.sql",
+            "V003__appointment_duration.sql",
+            "V004__reporting_aggregates.sql",
+            "V005__archive_and_soft_delete.sql",
+            "V006__booking_keys.sql",
+            "V007__overlap_trigger_scope.sql",
+            "V008__archived_in_change_feed.sql",
+    };
+
+    private final DataSource dataSource;
+
+    public SchemaMigrator(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public void migrate() throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            try (Statement statement = conn.createStatement()) {
+                statement.execute("IF OBJECT_ID('SchemaVersion', 'U') IS NULL " +
+                                  "CREATE TABLE SchemaVersion (version VARCHAR(100) PRIMARY KEY, applied_at DATETIME NOT NULL DEFAULT GETDATE())");
+            }
+
+            Set<String> applied = new HashSet<>();
+            try (Statement statement = conn.createStatement();
+                 ResultSet res = statement.executeQuery("SELECT version FROM SchemaVersion")) {
+                while (res.next()) {
+                    applied.add(res.getString(1));
+                }
+            }
+
+            for (String migration : MIGRATIONS) {
+                if (!applied.contains(migration)) apply(conn, migration);
+            }
+        }
+    }
+
+    private void apply(Connection conn, String migration) throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            try (Statement statement = conn.createStatement()) {
+                for (String batch : readBatches(migration)) {
+                    statement.execute(batch);
+                }
+            }
+            try (PreparedStatement statement = conn.prepareStatement("INSERT INTO SchemaVersion (version) VALUES (?)")) {
+                statement.setString(1, migration);
+                statement.executeUpdate();
+            }
+            conn.commit();
+            System.out.println("Applied migration " + migration);
+        } catch (SQLException e) {
+            conn.rollback();
+            throw new SQLException("Migration " + migration + " failed: " + e.getMessage(), e);
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    // scripts are split into batches on GO lines, like sqlcmd does
+    private List<String> readBatches(String migration) throws SQLException {
+        String script;
+        try (InputStream in = SchemaMigrator.class.getResourceAsStream("/migrations/" + migration)) {
+            if (in == null) throw new SQLException("Migration script not found: " + migration);
+            script = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new SQLException("Failed to read migration " + migration, e);
+        }
+        return splitBatches(script);
+    }
+
+    static List<String> splitBatches(String script) {
+        List<String> batches = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String line : script.split("\\R")) {
+            if (line.trim().equalsIgnoreCase("GO")) {
+                addBatch(batches, current);
+            } else {
+                current.append(line).append('\n');
+            }
+        }
+        addBatch(batches, current);
+        return batches;
+    }
+
+    private static void addBatch(List<String> batches, StringBuilder current) {
+        String batch = current.toString().trim();
+        if (!batch.isEmpty()) batches.add(batch);
+        current.setLength(0);
+    }
+}
@@ -0,0 +1,280 @@
+import java.sql.Timestamp;
+import java.util.*;
+
+// Process-wide cache of the frames' search results, keyed by the search criteria rather than by SQL, so
+// the same search typed again fills the table without a query. Results are kept as ColumnBlock snapshots
+// with their keys; the cache is bounded by their estimated size in bytes, least recently used first.
+//
+// A write invalidates only the results it can change: those that hold the written row, and those whose
+// criteria the row's new values satisfy (a new appointment on the 3rd of May only touches searches for
+// that day or without a day). Values a change does not carry count as matching. Searches over appointments
+// also show doctor and client names, so a changed doctor or client invalidates the appointment searches
+// that are for that person or for anyone.
+public class SearchCache implements ChangeFeed.Listener, BookingWriter.Listener {
+    public static final String SPECIALIZATIONS = "Specializations";
+
+    // criteria and row attributes
+    public static final String DOCTOR = "doctor";
+    public static final String CLIENT = "client";
+    public static final String DAY = "day";
+    public static final String SPECIALIZATION = "specialization";
+    public static final String EXPERIENCE = "experience";
+    public static final String RATING = "rating";
+    public static final String REGISTERED = "registered";
+
+    // more changed rows than this in one poll (an import) drop every search over the table at once
+    private static final int BULK_CHANGE = 1000;
+
+    // other tables a search shows values from, and the attribute of the search that names their row
+    private static final Map<String, Map<String, String>> REFERENCES = Map.of(
+            ChangeFeed.APPOINTMENTS, Map.of(ChangeFeed.DOCTORS, DOCTOR, ChangeFeed.CLIENTS, CLIENT),
+            ChangeFeed.DOCTORS, Map.of(SPECIALIZATIONS, SPECIALIZATION),
+            ChangeFeed.CLIENTS, Map.of());
+
+    // A search over one table: attributes that have to equal a value and attributes that have to be at
+    // least a value. Criteria with the same conditions are equal, whatever order they were given in;
+    // null values are no condition.
+    public static class Criteria {
+        private final String table;
+        private final SortedMap<String, Object> equal = new TreeMap<>();
+        private final SortedMap<String, Object> atLeast = new TreeMap<>();
+
+        public Criteria(String table, Map<String, ?> equal, Map<String, ?> atLeast) {
+            this.table = table;
+            equal.forEach((attribute, value) -> {
+                if (value != null) this.equal.put(attribute, value);
+            });
+            atLeast.forEach((attribute, value) -> {
+                if (value != null) this.atLeast.put(attribute, value);
+            });
+        }
+
+        // false when a row with these values cannot be in the result
+        @SuppressWarnings("unchecked")
+        boolean admits(Map<String, ?> row) {
+            for (Map.Entry<String, Object> condition : equal.entrySet()) {
+                Object value = row.get(condition.getKey());
+                if (value != null && !value.equals(condition.getValue())) return false;
+            }
+            for (Map.Entry<String, Object> condition : atLeast.entrySet()) {
+                Object value = row.get(condition.getKey());
+                if (value != null && ((Comparable<Object>) value).compareTo(condition.getValue()) < 0) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Criteria)) return false;
+            Criteria other = (Criteria) o;
+            return table.equals(other.table) && equal.equals(other.equal) && atLeast.equals(other.atLeast);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(table, equal, atLeast);
+        }
+
+        @Override
+        public String toString() {
+            return table + equal + ">=" + atLeast;
+        }
+    }
+
+    // the rows of one search, in order, with their (integer) keys and sort values
+    public static class Result {
+        private final ColumnBlock rows;
+        private final Object[] keys;
+        private final Object[] sortValues; // null without a sort column
+        private final int[] sortedIds;
+        private final long bytes;
+
+        // the rows are copied against a schema of their own
+        public Result(ColumnBlock rows, ColumnBlock.Schema schema, Object[] keys, Object[] sortValues) {
+            ColumnBlock.Schema own = schema.fresh();
+            this.rows = rows.recode(own);
+            this.keys = keys;
+            this.sortValues = sortValues;
+            this.sortedIds = new int[keys.length];
+            for (int i = 0; i < keys.length; i++) sortedIds[i] = (Integer) keys[i];
+            Arrays.sort(sortedIds);
+            this.bytes = this.rows.estimateBytes() + own.estimateBytes() + 20L * keys.length * (sortValues == null ? 2 : 4);
+        }
+
+        public int size() {
+            return keys.length;
+        }
+
+        public ColumnBlock getRows() {
+            return rows;
+        }
+
+        public Object getKey(int row) {
+            return keys[row];
+        }
+
+        public Object getSortValue(int row) {
+            return sortValues == null ? null : sortValues[row];
+        }
+
+        public Object getMaxKey() {
+            return sortedIds.length == 0 ? null : sortedIds[sortedIds.length - 1];
+        }
+
+        boolean contains(int id) {
+            return Arrays.binarySearch(sortedIds, id) >= 0;
+        }
+    }
+
+    private final long maxBytes;
+    private final LinkedHashMap<Criteria, Result> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidated; // entries dropped because of a write
+    private long invalidations; // bumped on every write seen, guards against caching a result read before it
+
+    public SearchCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    // null on a miss
+    public synchronized Result get(Criteria criteria) {
+        Result result = entries.get(criteria);
+        if (result != null) hits++;
+        else misses++;
+        return result;
+    }
+
+    // taken before a search is queried, and handed to put with its result
+    public synchronized long stamp() {
+        return invalidations;
+    }
+
+    public synchronized void put(Criteria criteria, Result result, long stamp) {
+        // a write since the stamp may be missing from the result; one result never takes more than an eighth
+        if (stamp != invalidations || result.bytes > maxBytes / 8) return;
+        Result old = entries.put(criteria, result);
+        if (old != null) bytes -= old.bytes;
+        bytes += result.bytes;
+        for (Iterator<Result> eldest = entries.values().iterator(); bytes > maxBytes && eldest.hasNext(); ) {
+            bytes -= eldest.next().bytes;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    // a row was inserted or updated; 'row' holds the attributes known of its new values
+    public synchronized void rowChanged(String table, int id, Map<String, ?> row) {
+        invalidations++;
+        removeIf((criteria, result) -> {
+            if (criteria.table.equals(table)) return result.contains(id) || criteria.admits(row);
+            String attribute = REFERENCES.get(criteria.table).get(table);
+            return attribute != null && criteria.admits(Map.of(attribute, id));
+        });
+    }
+
+    // deleted or deactivated rows; only results holding them change (names shown elsewhere stay the same)
+    public synchronized void rowsDeleted(String table, Collection<Integer> ids) {
+        if (ids.isEmpty()) return;
+        invalidations++;
+        removeIf((criteria, result) -> {
+            if (!criteria.table.equals(table)) return false;
+            for (int id : ids) {
+                if (result.contains(id)) return true;
+            }
+            return false;
+        });
+    }
+
+    // every search that reads the table
+    public synchronized void invalidateTable(String table) {
+        invalidations++;
+        removeIf((criteria, result) -> criteria.table.equals(table) || REFERENCES.get(criteria.table).containsKey(table));
+    }
+
+    // AppointmentArchiver, on any desk, moved these appointments out of the live table (ChangeFeed.ARCHIVED).
+    // Searches for a day before the horizon read the archive too; the ones without a day lost the rows.
+    public synchronized void appointmentsArchived(Collection<Integer> ids) {
+        if (ids.isEmpty()) return;
+        invalidations++;
+        removeIf((criteria, result) -> {
+            if (!criteria.table.equals(ChangeFeed.APPOINTMENTS) || criteria.equal.containsKey(DAY)) return false;
+            for (int id : ids) {
+                if (result.contains(id)) return true;
+            }
+            return false;
+        });
+    }
+
+    private interface Affected {
+        boolean test(Criteria criteria, Result result);
+    }
+
+    private void removeIf(Affected affected) {
+        for (Iterator<Map.Entry<Criteria, Result>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Criteria, Result> entry = it.next();
+            if (affected.test(entry.getKey(), entry.getValue())) {
+                bytes -= entry.getValue().bytes;
+                it.remove();
+                invalidated++;
+            }
+        }
+    }
+
+    // Writes by any desk, including this one, in the rows the frames' mappers produce: appointments
+    // (doctor, client, date, ..., doctor id, client id), clients (..., registration date) and doctors
+    // (..., experience, rating, id, specialization id).
+    @Override
+    public void onChanges(ChangeFeed.Changes changes) {
+        for (String table : List.of(ChangeFeed.APPOINTMENTS, ChangeFeed.CLIENTS, ChangeFeed.DOCTORS)) {
+            Map<Integer, Object[]> upserts = changes.getUpserts(table);
+            if (upserts.size() > BULK_CHANGE) invalidateTable(table);
+            else upserts.forEach((id, row) -> rowChanged(table, id, attributes(table, row)));
+            rowsDeleted(table, changes.getDeletes(table));
+        }
+        appointmentsArchived(changes.getDeletes(ChangeFeed.ARCHIVED));
+    }
+
+    private static Map<String, Object> attributes(String table, Object[] row) {
+        Map<String, Object> attributes = new HashMap<>();
+        switch (table) {
+            case ChangeFeed.APPOINTMENTS:
+                if (row[2] != null) attributes.put(DAY, ((Timestamp) row[2]).toLocalDateTime().toLocalDate());
+                attributes.put(DOCTOR, row[5]);
+                attributes.put(CLIENT, row[6]);
+                break;
+            case ChangeFeed.CLIENTS:
+                attributes.put(REGISTERED, row[5]);
+                break;
+            default:
+                attributes.put(EXPERIENCE, row[5]);
+                attributes.put(RATING, row[6]);
+                attributes.put(SPECIALIZATION, row[8]);
+        }
+        attributes.values().removeIf(Objects::isNull);
+        return attributes;
+    }
+
+    // bookings from the write-behind journal, as soon as they are in the database
+    @Override
+    public void onFlushed(BookingJournal.Booking booking, int appointmentId) {
+        rowChanged(ChangeFeed.APPOINTMENTS, appointmentId, Map.of(DOCTOR, booking.getDoctorId(), CLIENT, booking.getClientId(),
+                DAY, booking.getDate().toLocalDate()));
+    }
+
+    public synchronized double getHitRatio() {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("SearchCache[entries=%d, bytes=%d of %d, hits=%d, misses=%d, hitRatio=%.1f%%, invalidated=%d, evicted=%d]",
+                entries.size(), bytes, maxBytes, hits, misses, 100 * getHitRatio(), invalidated, evictions);
+    }
+}
@@ -0,0 +1,216 @@
+import javax.sql.DataSource;
+import java.sql.*;
+import java.util.*;
+
+// Which clients have had an appointment with a doctor of each specialization: one bitmap of client ids per
+// specialization, over Appointments and AppointmentsArchive, so "clients who have seen a cardiologist" is a
+// lookup instead of a join over every appointment. Cancelled appointments do not count.
+//
+// Built with one scan, then kept current from this desk's bookings and the change feed. Changed and deleted
+// appointment ids are re-read, against the current specialization of each doctor; an archived appointment is
+// still found, a deleted or cancelled one is not. For deletes, each appointment's client and specialization
+// are kept in two arrays indexed by appointment id (8 bytes per appointment), and a client's bit is only
+// cleared once none of its remaining appointments is with that specialization.
+public class SpecializationIndex implements ChangeFeed.Listener, BookingWriter.Listener {
+    private static final int ID_CHUNK_SIZE = 1000; // two parameters per id, under SQL Server's 2100 limit
+    private static final int BULK_CHANGE = 10_000; // a change this large (an import) rebuilds instead
+
+    private static final String APPOINTMENTS =
+            "(SELECT appointment_id, client_id, doctor_id FROM Appointments WHERE [status] <> 'cancelled' %1$s" +
+            "UNION ALL SELECT appointment_id, client_id, doctor_id FROM AppointmentsArchive WHERE [status] <> 'cancelled' %1$s) a " +
+            "JOIN Doctors d ON d.doctor_id = a.doctor_id";
+    private static final String SELECT = "SELECT a.appointment_id, a.client_id, d.specialization_id FROM ";
+
+    private final DataSource dataSource;
+    private int[] clientOf = new int[0]; // by appointment id, 0 while not indexed
+    private int[] specializationOf = new int[0];
+    private Map<Integer, BitSet> clientsBySpecialization = new HashMap<>();
+    private Map<Integer, Integer> specializationByDoctor = new HashMap<>(); // inactive doctors too
+    private boolean loaded;
+    private long builds;
+    private long updates;
+
+    public SpecializationIndex(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    // full build, meant to run off the EDT; until it finishes the clients frame filters with SQL
+    public void load() throws SQLException {
+        Map<Integer, Integer> doctors;
+        Map<Integer, BitSet> clients = new HashMap<>();
+        int[] clientIds = new int[1024];
+        int[] specializationIds = new int[1024];
+        try (Connection conn = dataSource.getConnection()) {
+            doctors = loadDoctors(conn);
+            try (Statement statement = conn.createStatement()) {
+                statement.setFetchSize(10_000);
+                try (ResultSet res = statement.executeQuery(SELECT + String.format(APPOINTMENTS, ""))) {
+                    while (res.next()) {
+                        int id = res.getInt(1);
+                        if (id >= clientIds.length) {
+                            clientIds = Arrays.copyOf(clientIds, Math.max(id + 1, 2 * clientIds.length));
+                            specializationIds = Arrays.copyOf(specializationIds, clientIds.length);
+                        }
+                        clientIds[id] = res.getInt(2);
+                        specializationIds[id] = res.getInt(3);
+                        clients.computeIfAbsent(specializationIds[id], s -> new BitSet()).set(clientIds[id]);
+                    }
+                }
+            }
+        }
+
+        synchronized (this) {
+            clientOf = clientIds;
+            specializationOf = specializationIds;
+            clientsBySpecialization = clients;
+            specializationByDoctor = doctors;
+            loaded = true;
+            builds++;
+        }
+    }
+
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    // a copy, so the caller can combine it with other filters
+    public synchronized BitSet getClients(int specializationId) {
+        BitSet clients = clientsBySpecialization.get(specializationId);
+        return clients == null ? new BitSet() : (BitSet) clients.clone();
+    }
+
+    // Sets the appointments' clients and specializations; a null value means the appointment no longer
+    // counts (deleted or cancelled). Bits whose last appointment went away are cleared in one pass.
+    private synchronized void apply(Map<Integer, int[]> appointments) {
+        if (!loaded) return;
+        Set<Long> maybeGone = new HashSet<>();
+        for (Map.Entry<Integer, int[]> entry : appointments.entrySet()) {
+            int id = entry.getKey();
+            int[] now = entry.getValue();
+            if (id <= 0 || (now == null && id >= clientOf.length)) continue;
+            if (id >= clientOf.length) {
+                clientOf = Arrays.copyOf(clientOf, Math.max(id + 1, 2 * clientOf.length));
+                specializationOf = Arrays.copyOf(specializationOf, clientOf.length);
+            }
+            if (clientOf[id] != 0 && (now == null || now[0] != clientOf[id] || now[1] != specializationOf[id])) {
+                maybeGone.add(pair(clientOf[id], specializationOf[id]));
+            }
+            clientOf[id] = now == null ? 0 : now[0];
+            specializationOf[id] = now == null ? 0 : now[1];
+            if (now != null) clientsBySpecialization.computeIfAbsent(now[1], s -> new BitSet()).set(now[0]);
+        }
+        updates += appointments.size();
+        if (maybeGone.isEmpty()) return;
+
+        for (int id = 0; id < clientOf.length; id++) {
+            if (clientOf[id] != 0) maybeGone.remove(pair(clientOf[id], specializationOf[id]));
+        }
+        for (long gone : maybeGone) {
+            BitSet clients = clientsBySpecialization.get((int) gone);
+            if (clients != null) clients.clear((int) (gone >>> 32));
+        }
+    }
+
+    private static long pair(int clientId, int specializationId) {
+        return (long) clientId << 32 | (specializationId & 0xffffffffL);
+    }
+
+    // deleted by this desk
+    public void removed(Collection<Integer> appointmentIds) {
+        Map<Integer, int[]> gone = new HashMap<>();
+        for (int id : appointmentIds) gone.put(id, null);
+        apply(gone);
+    }
+
+    @Override
+    public void onFlushed(BookingJournal.Booking booking, int appointmentId) {
+        Integer specializationId;
+        synchronized (this) {
+            specializationId = specializationByDoctor.get(booking.getDoctorId());
+        }
+        if (specializationId != null) {
+            Map<Integer, int[]> booked = new HashMap<>();
+            booked.put(appointmentId, new int[]{booking.getClientId(), specializationId});
+            apply(booked);
+        } else {
+            reread(List.of(appointmentId)); // a doctor added after the build
+        }
+    }
+
+    // A doctor moving to another specialization rebuilds everything, since all of its appointments move.
+    // Appointments are re-read off the EDT, the same as in ScheduleIndex.
+    @Override
+    public void onChanges(ChangeFeed.Changes changes) {
+        if (!isLoaded()) return;
+        if (changes.touches(ChangeFeed.DOCTORS)) {
+            AsyncQuery.run(() -> {
+                try (Connection conn = dataSource.getConnection()) {
+                    return loadDoctors(conn);
+                }
+            }, doctors -> {
+                boolean moved;
+                synchronized (this) {
+                    moved = specializationByDoctor.entrySet().stream().anyMatch(doctor ->
+                            doctors.containsKey(doctor.getKey()) && !doctors.get(doctor.getKey()).equals(doctor.getValue()));
+                    specializationByDoctor = doctors;
+                }
+                if (moved) rebuild();
+            }, e -> System.err.println("Specialization index refresh failed: " + e.getMessage()));
+        }
+
+        Set<Integer> ids = new HashSet<>(changes.getUpserts(ChangeFeed.APPOINTMENTS).keySet());
+        ids.addAll(changes.getDeletes(ChangeFeed.APPOINTMENTS));
+        if (ids.size() > BULK_CHANGE) rebuild();
+        else if (!ids.isEmpty()) reread(new ArrayList<>(ids));
+    }
+
+    private void rebuild() {
+        AsyncQuery.run(() -> {
+            load();
+            return null;
+        }, ignored -> { }, e -> System.err.println("Specialization index rebuild failed: " + e.getMessage()));
+    }
+
+    private void reread(List<Integer> ids) {
+        AsyncQuery.run(() -> read(ids), this::apply, e -> System.err.println("Specialization index refresh failed: " + e.getMessage()));
+    }
+
+    // the ids' current client and specialization, null for the ones that no longer count
+    private Map<Integer, int[]> read(List<Integer> ids) throws SQLException {
+        Map<Integer, int[]> appointments = new HashMap<>();
+        for (int id : ids) appointments.put(id, null);
+        try (Connection conn = dataSource.getConnection()) {
+            for (int from = 0; from < ids.size(); from += ID_CHUNK_SIZE) {
+                List<Integer> chunk = ids.subList(from, Math.min(from + ID_CHUNK_SIZE, ids.size()));
+                String in = "AND appointment_id IN (" + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ") ";
+                try (PreparedStatement statement = conn.prepareStatement(SELECT + String.format(APPOINTMENTS, in))) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        statement.setInt(i + 1, chunk.get(i));
+                        statement.setInt(chunk.size() + i + 1, chunk.get(i));
+                    }
+                    try (ResultSet res = statement.executeQuery()) {
+                        while (res.next()) appointments.put(res.getInt(1), new int[]{res.getInt(2), res.getInt(3)});
+                    }
+                }
+            }
+        }
+        return appointments;
+    }
+
+    private static Map<Integer, Integer> loadDoctors(Connection conn) throws SQLException {
+        Map<Integer, Integer> doctors = new HashMap<>();
+        try (Statement statement = conn.createStatement();
+             ResultSet res = statement.executeQuery("SELECT doctor_id, specialization_id FROM Doctors")) {
+            while (res.next()) doctors.put(res.getInt(1), res.getInt(2));
+        }
+        return doctors;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long bytes = 8L * clientOf.length;
+        for (BitSet clients : clientsBySpecialization.values()) bytes += clients.size() / 8;
+        return String.format("SpecializationIndex[specializations=%d, appointmentSlots=%d, bytes=%d, builds=%d, updates=%d]",
+                clientsBySpecialization.size(), clientOf.length, bytes, builds, updates);
+    }
+}
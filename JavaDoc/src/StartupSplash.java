@@ -0,0 +1,41 @@
+import javax.swing.*;
+import java.awt.*;
+import java.net.URL;
+
+// Undecorated window shown while Main connects to the database, so something is on screen right away.
+public class StartupSplash {
+    private static final int IMAGE_SIZE = 160;
+
+    private final JWindow window = new JWindow();
+    private final JLabel status = new JLabel("Starting...", SwingConstants.CENTER);
+
+    public StartupSplash() {
+        JPanel panel = new JPanel(new BorderLayout(0, 8));
+        panel.setBorder(BorderFactory.createCompoundBorder(
+                BorderFactory.createLineBorder(Color.GRAY),
+                BorderFactory.createEmptyBorder(16, 24, 12, 24)));
+
+        URL image = StartupSplash.class.getResource("/assets/sun.png");
+        if (image != null) {
+            Image scaled = new ImageIcon(image).getImage().getScaledInstance(IMAGE_SIZE, IMAGE_SIZE, Image.SCALE_SMOOTH);
+            panel.add(new JLabel(new ImageIcon(scaled)), BorderLayout.CENTER);
+        }
+        JLabel title = new JLabel("JavaDoc - Medical Appointments", SwingConstants.CENTER);
+        title.setFont(title.getFont().deriveFont(Font.BOLD, 14f));
+        panel.add(title, BorderLayout.NORTH);
+        panel.add(status, BorderLayout.SOUTH);
+
+        window.add(panel);
+        window.pack();
+        window.setLocationRelativeTo(null);
+        window.setVisible(true);
+    }
+
+    public void setStatus(String text) {
+        status.setText(text);
+    }
+
+    public void close() {
+        window.dispose();
+    }
+}
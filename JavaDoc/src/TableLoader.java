@@ -0,0 +1,193 @@
+import javax.sql.DataSource;
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.sql.*;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+// Runs a table query off the EDT and streams the rows into the model in chunks.
+// Starting a new load cancels the one still running, so only the latest request fills the table.
+public class TableLoader {
+    static final int CHUNK_SIZE = 500;
+
+    public interface Binder {
+        void bind(PreparedStatement statement) throws SQLException;
+    }
+
+    public interface RowMapper {
+        Object[] map(ResultSet res) throws SQLException;
+    }
+
+    private final DataSource dataSource;
+    private final DefaultTableModel model;
+    private final JProgressBar progress;
+    private final Consumer<Exception> onError;
+    private Worker current;
+    private String loaded; // query of the last load that finished, null while loading or showing cached rows
+
+    public TableLoader(DataSource dataSource, DefaultTableModel model, JProgressBar progress, Consumer<Exception> onError) {
+        this.dataSource = dataSource;
+        this.model = model;
+        this.progress = progress;
+        this.onError = onError;
+        progress.setStringPainted(true);
+        progress.setString("");
+    }
+
+    public void load(String query, RowMapper mapper) {
+        load(query, statement -> {}, mapper);
+    }
+
+    public void load(String query, Binder binder, RowMapper mapper) {
+        load(query, binder, mapper, () -> {});
+    }
+
+    // onLoaded runs on the EDT once every row is in the model, unless another load replaced this one
+    public void load(String query, Binder binder, RowMapper mapper, Runnable onLoaded) {
+        start(new Worker(query, binder, mapper, null, onLoaded));
+    }
+
+    // rows fetched some other way (from a DeskServer) in the background; isLoaded(key) once they are all in
+    public void loadRows(String key, AsyncQuery.Task<List<Object[]>> fetch) {
+        start(new Worker(key, null, null, fetch, () -> {}));
+    }
+
+    private void start(Worker worker) {
+        if (current != null) current.stop();
+        loaded = null;
+
+        model.setRowCount(0);
+        progress.setIndeterminate(true);
+        progress.setString("Loading...");
+
+        current = worker;
+        current.execute();
+    }
+
+    // fills the model with rows already at hand (a cached search), stopping a load still running
+    public void show(List<Object[]> rows) {
+        if (current != null) current.stop();
+        current = null;
+        loaded = null;
+
+        model.setRowCount(0);
+        for (Object[] row : rows) {
+            model.getDataVector().add(new Vector<>(Arrays.asList(row)));
+        }
+        if (!rows.isEmpty()) model.fireTableRowsInserted(0, rows.size() - 1);
+        progress.setIndeterminate(false);
+        progress.setString(rows.size() + " rows (cached)");
+    }
+
+    // true once every row of the query is in the model (and not replaced since), e.g. to filter them locally
+    public boolean isLoaded(String query) {
+        return query.equals(loaded);
+    }
+
+    // the rows a load shows first (one fetch), without a model; used to warm the server up at startup.
+    // Returns the number of rows read.
+    static int loadFirstChunk(DataSource dataSource, String query, RowMapper mapper) throws SQLException {
+        int count = 0;
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setFetchSize(CHUNK_SIZE);
+            stmt.setMaxRows(CHUNK_SIZE);
+            try (ResultSet res = stmt.executeQuery()) {
+                while (res.next()) {
+                    mapper.map(res);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private class Worker extends SwingWorker<Integer, Object[]> {
+        private final String query;
+        private final Binder binder;
+        private final RowMapper mapper;
+        private final AsyncQuery.Task<List<Object[]>> fetch; // instead of the query, binder and mapper
+        private final Runnable onLoaded;
+        private volatile Statement statement;
+
+        Worker(String query, Binder binder, RowMapper mapper, AsyncQuery.Task<List<Object[]>> fetch, Runnable onLoaded) {
+            this.query = query;
+            this.binder = binder;
+            this.mapper = mapper;
+            this.fetch = fetch;
+            this.onLoaded = onLoaded;
+        }
+
+        @Override
+        protected Integer doInBackground() throws Exception {
+            if (fetch != null) {
+                List<Object[]> rows = fetch.call();
+                for (Object[] row : rows) publish(row);
+                return rows.size();
+            }
+            int count = 0;
+            try (Connection conn = dataSource.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(query)) {
+                statement = stmt;
+                binder.bind(stmt);
+                stmt.setFetchSize(CHUNK_SIZE);
+                try (ResultSet res = stmt.executeQuery()) {
+                    while (!isCancelled() && res.next()) {
+                        publish(mapper.map(res));
+                        count++;
+                    }
+                }
+            } finally {
+                statement = null;
+            }
+            return count;
+        }
+
+        @Override
+        protected void process(List<Object[]> rows) {
+            if (isCancelled() || this != current) return;
+
+            int first = model.getRowCount();
+            for (Object[] row : rows) {
+                model.getDataVector().add(new Vector<>(Arrays.asList(row)));
+            }
+            model.fireTableRowsInserted(first, model.getRowCount() - 1);
+            progress.setString("Loading... " + model.getRowCount() + " rows");
+        }
+
+        @Override
+        protected void done() {
+            if (this != current) return;
+
+            progress.setIndeterminate(false);
+            try {
+                progress.setString(get() + " rows");
+                loaded = query;
+                onLoaded.run();
+            } catch (CancellationException e) {
+                progress.setString("");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                progress.setString("Load failed");
+                onError.accept(e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+            }
+        }
+
+        // cancel the worker and the statement it is blocked on
+        void stop() {
+            cancel(true);
+            Statement stmt = statement;
+            if (stmt != null) {
+                try {
+                    stmt.cancel();
+                } catch (SQLException ignored) {
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.event.ActionEvent;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+// Text field that looks people up in a PeopleDirectory while typing and shows the best matches in a popup.
+// Searches run once typing pauses, on the EDT for the local index (it answers within a couple of
+// milliseconds) and in the background for a remote one, where only the latest answer is shown.
+// Up/Down move through the matches, Enter or a click picks one, Escape closes the popup. Editing the
+// text after a pick clears the selection again.
+@SuppressWarnings("serial") // a live component over an index, never serialized
+public final class TypeAheadField extends JTextField {
+    private static final int DEBOUNCE_MS = Integer.getInteger("javadoc.typeahead.debounceMs", 150);
+    private static final int MAX_MATCHES = 10;
+
+    private final PeopleDirectory index;
+    private final DefaultListModel<PeopleIndex.Match> matches = new DefaultListModel<>();
+    private final JList<PeopleIndex.Match> list = new JList<>(matches);
+    private final JPopupMenu popup = new JPopupMenu();
+    private final Timer debounce;
+    private final List<Runnable> selectionListeners = new ArrayList<>();
+    private ListItem selected;
+    private boolean settingText;
+    private int searches; // bumped per search, so a slow remote answer to an older text is dropped
+
+    public TypeAheadField(PeopleDirectory index, int columns) {
+        super(columns);
+        this.index = index;
+        setToolTipText("Type part of a name, email or phone");
+
+        list.setFocusable(false);
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                pick();
+            }
+        });
+        popup.setFocusable(false);
+        popup.add(new JScrollPane(list));
+
+        debounce = new Timer(DEBOUNCE_MS, e -> search());
+        debounce.setRepeats(false);
+
+        getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                edited();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                edited();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+
+        addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                debounce.stop();
+                popup.setVisible(false);
+            }
+        });
+        bind("DOWN", "typeAheadDown", () -> move(1));
+        bind("UP", "typeAheadUp", () -> move(-1));
+        bind("ENTER", "typeAheadPick", this::pick);
+        bind("ESCAPE", "typeAheadClose", () -> popup.setVisible(false));
+    }
+
+    // null until a match is picked
+    public ListItem getSelectedItem() {
+        return selected;
+    }
+
+    public void setSelectedItem(ListItem item) {
+        debounce.stop();
+        popup.setVisible(false);
+        settingText = true;
+        setText(item == null ? "" : item.getName());
+        settingText = false;
+        select(item);
+    }
+
+    // runs whenever the selection changes, by a pick or by editing the picked text
+    public void addSelectionListener(Runnable listener) {
+        selectionListeners.add(listener);
+    }
+
+    private void edited() {
+        if (settingText) return;
+        select(null);
+        debounce.restart();
+    }
+
+    private void search() {
+        int search = ++searches;
+        String text = getText();
+        if (!isShowing()) {
+            show(List.of());
+        } else if (index.isLocal()) {
+            try {
+                show(index.search(text, MAX_MATCHES));
+            } catch (Exception e) {
+                show(List.of());
+            }
+        } else {
+            AsyncQuery.run(() -> index.search(text, MAX_MATCHES), found -> {
+                if (search == searches && selected == null) show(found);
+            }, e -> System.err.println("Type-ahead lookup failed: " + e.getMessage()));
+        }
+    }
+
+    private void show(List<PeopleIndex.Match> found) {
+        matches.clear();
+        found.forEach(matches::addElement);
+        if (matches.isEmpty()) {
+            popup.setVisible(false);
+            return;
+        }
+        list.setSelectedIndex(0);
+        list.setVisibleRowCount(matches.size());
+        popup.pack();
+        popup.show(this, 0, getHeight());
+    }
+
+    private void move(int delta) {
+        int i = Math.max(0, Math.min(matches.size() - 1, list.getSelectedIndex() + delta));
+        list.setSelectedIndex(i);
+        list.ensureIndexIsVisible(i);
+    }
+
+    private void pick() {
+        if (list.getSelectedValue() != null) setSelectedItem(list.getSelectedValue().getItem());
+    }
+
+    private void select(ListItem item) {
+        if (item == null ? selected == null : item.equals(selected)) return;
+        selected = item;
+        selectionListeners.forEach(Runnable::run);
+    }
+
+    // the keys only act while the popup is open, otherwise Enter and Escape still reach the dialog's buttons
+    private void bind(String key, String name, Runnable action) {
+        getInputMap(WHEN_FOCUSED).put(KeyStroke.getKeyStroke(key), name);
+        getActionMap().put(name, new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                action.run();
+            }
+
+            @Override
+            public boolean isEnabled() {
+                return popup.isVisible();
+            }
+        });
+    }
+}
@@ -0,0 +1,17 @@
+-- Covering indexes for the search screens (AppointmentsFrame, ClientsFrame, DoctorsFrame).
+
+CREATE NONCLUSTERED INDEX IX_Appointments_doctor_date
+	ON Appointments (doctor_id, [date])
+	INCLUDE (client_id, reason, [status]);
+
+CREATE NONCLUSTERED INDEX IX_Appointments_client_date
+	ON Appointments (client_id, [date])
+	INCLUDE (doctor_id, reason, [status]);
+
+CREATE NONCLUSTERED INDEX IX_Clients_registration_date
+	ON Clients (registration_date)
+	INCLUDE (first_name, last_name, email, phone, age);
+
+CREATE NONCLUSTERED INDEX IX_Doctors_specialization_exp
+	ON Doctors (specialization_id, years_of_exp)
+	INCLUDE (first_name, last_name, email, phone, rating);
@@ -0,0 +1,31 @@
+-- rowversion columns and delete tombstones for the cross-frame change feed (ChangeFeed).
+
+ALTER TABLE Appointments ADD row_version ROWVERSION;
+ALTER TABLE Clients ADD row_version ROWVERSION;
+ALTER TABLE Doctors ADD row_version ROWVERSION;
+
+CREATE NONCLUSTERED INDEX IX_Appointments_row_version ON Appointments (row_version);
+CREATE NONCLUSTERED INDEX IX_Clients_row_version ON Clients (row_version);
+CREATE NONCLUSTERED INDEX IX_Doctors_row_version ON Doctors (row_version);
+
+CREATE TABLE DeletedRows (
+	table_name VARCHAR(50) NOT NULL,
+	row_id INT NOT NULL,
+	row_version ROWVERSION,
+	deleted_at DATETIME NOT NULL DEFAULT GETDATE()
+);
+
+CREATE NONCLUSTERED INDEX IX_DeletedRows_row_version ON DeletedRows (row_version) INCLUDE (table_name, row_id);
+GO
+
+CREATE TRIGGER TR_Appointments_Deleted ON Appointments AFTER DELETE AS
+	INSERT INTO DeletedRows (table_name, row_id) SELECT 'Appointments', appointment_id FROM deleted;
+GO
+
+CREATE TRIGGER TR_Clients_Deleted ON Clients AFTER DELETE AS
+	INSERT INTO DeletedRows (table_name, row_id) SELECT 'Clients', client_id FROM deleted;
+GO
+
+CREATE TRIGGER TR_Doctors_Deleted ON Doctors AFTER DELETE AS
+	INSERT INTO DeletedRows (table_name, row_id) SELECT 'Doctors', doctor_id FROM deleted;
+GO
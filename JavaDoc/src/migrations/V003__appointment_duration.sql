@@ -0,0 +1,38 @@
+-- Appointment length and the double-booking guard behind ScheduleIndex.
+
+ALTER TABLE Appointments ADD duration_minutes INT NOT NULL
+	CONSTRAINT DF_Appointments_duration DEFAULT 30
+	CONSTRAINT CK_Appointments_duration CHECK (duration_minutes BETWEEN 5 AND 480);
+GO
+
+CREATE NONCLUSTERED INDEX IX_Appointments_doctor_date
+	ON Appointments (doctor_id, [date])
+	INCLUDE (client_id, reason, [status], duration_minutes)
+	WITH (DROP_EXISTING = ON);
+
+CREATE NONCLUSTERED INDEX IX_Appointments_date
+	ON Appointments ([date])
+	INCLUDE (doctor_id, [status], duration_minutes);
+GO
+
+-- Rejects an insert or update that overlaps another non-cancelled appointment of the same doctor.
+-- UPDLOCK/HOLDLOCK range-lock the doctor's neighbourhood so two concurrent bookings cannot both pass.
+-- Appointments are at most 480 minutes long, which keeps the date predicate a seek.
+CREATE TRIGGER TR_Appointments_NoOverlap ON Appointments AFTER INSERT, UPDATE AS
+BEGIN
+	SET NOCOUNT ON;
+	IF EXISTS (
+		SELECT 1
+		FROM inserted i
+		JOIN Appointments a WITH (UPDLOCK, HOLDLOCK)
+			ON a.doctor_id = i.doctor_id
+			AND a.appointment_id <> i.appointment_id
+			AND a.[date] > DATEADD(minute, -480, i.[date])
+			AND a.[date] < DATEADD(minute, i.duration_minutes, i.[date])
+			AND DATEADD(minute, a.duration_minutes, a.[date]) > i.[date]
+		WHERE i.[status] <> 'cancelled' AND a.[status] <> 'cancelled')
+	BEGIN
+		THROW 50001, 'The doctor already has an appointment at that time.', 1;
+	END
+END
+GO
@@ -0,0 +1,17 @@
+-- Aggregates behind ReportsFrame. AppointmentDailyStats is an indexed view: SQL Server keeps its rows
+-- up to date inside every insert, delete and status change on Appointments, so reports read a few
+-- thousand pre-summed rows instead of grouping the whole table. SCHEMABINDING means doctor_id, [date],
+-- [status] and duration_minutes cannot be altered while the view exists.
+
+CREATE VIEW dbo.AppointmentDailyStats WITH SCHEMABINDING AS
+	SELECT doctor_id, CAST([date] AS DATE) AS [day], [status],
+		COUNT_BIG(*) AS appointments, SUM(duration_minutes) AS minutes
+	FROM dbo.Appointments
+	GROUP BY doctor_id, CAST([date] AS DATE), [status];
+GO
+
+CREATE UNIQUE CLUSTERED INDEX UX_AppointmentDailyStats ON dbo.AppointmentDailyStats ([day], doctor_id, [status]);
+
+-- the current fee of a specialization is its newest Pricing row
+CREATE NONCLUSTERED INDEX IX_Pricing_specialization ON Pricing (specialization_id, pricing_id) INCLUDE (fee);
+GO
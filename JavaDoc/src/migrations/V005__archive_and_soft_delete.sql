@@ -0,0 +1,90 @@
+-- Data lifecycle. Clients and doctors are deactivated instead of deleted (appointments keep referencing
+-- them), and completed appointments past the horizon move to AppointmentsArchive (AppointmentArchiver).
+
+ALTER TABLE Doctors ADD is_active BIT NOT NULL CONSTRAINT DF_Doctors_is_active DEFAULT 1;
+GO
+
+-- a deactivation reaches the change feed as a delete; ChangeFeed only reports active rows as upserts
+CREATE TRIGGER TR_Clients_Deactivated ON Clients AFTER UPDATE AS
+	INSERT INTO DeletedRows (table_name, row_id)
+	SELECT 'Clients', i.client_id FROM inserted i JOIN deleted d ON d.client_id = i.client_id
+	WHERE d.is_active = 1 AND i.is_active = 0;
+GO
+
+CREATE TRIGGER TR_Doctors_Deactivated ON Doctors AFTER UPDATE AS
+	INSERT INTO DeletedRows (table_name, row_id)
+	SELECT 'Doctors', i.doctor_id FROM inserted i JOIN deleted d ON d.doctor_id = i.doctor_id
+	WHERE d.is_active = 1 AND i.is_active = 0;
+GO
+
+-- same ids as in Appointments, so a search over both can page on appointment_id
+CREATE TABLE AppointmentsArchive (
+	appointment_id INT NOT NULL PRIMARY KEY,
+	client_id INT NOT NULL,
+	doctor_id INT NOT NULL,
+	[date] DATETIME NOT NULL,
+	reason VARCHAR(255) NOT NULL,
+	[status] VARCHAR(50) NOT NULL,
+	duration_minutes INT NOT NULL,
+	archived_at DATETIME NOT NULL CONSTRAINT DF_AppointmentsArchive_archived_at DEFAULT GETDATE(),
+
+	CONSTRAINT FK_AppointmentsArchive_Client FOREIGN KEY (client_id) REFERENCES Clients(client_id),
+	CONSTRAINT FK_AppointmentsArchive_Doctor FOREIGN KEY (doctor_id) REFERENCES Doctors(doctor_id)
+);
+
+CREATE NONCLUSTERED INDEX IX_AppointmentsArchive_date
+	ON AppointmentsArchive ([date])
+	INCLUDE (client_id, doctor_id, reason, [status]);
+
+CREATE NONCLUSTERED INDEX IX_AppointmentsArchive_doctor_date
+	ON AppointmentsArchive (doctor_id, [date])
+	INCLUDE (client_id, reason, [status]);
+
+CREATE NONCLUSTERED INDEX IX_AppointmentsArchive_client_date
+	ON AppointmentsArchive (client_id, [date])
+	INCLUDE (doctor_id, reason, [status]);
+GO
+
+-- the archive's share of the report aggregates; ReportsFrame adds both views up
+CREATE VIEW dbo.AppointmentArchiveDailyStats WITH SCHEMABINDING AS
+	SELECT doctor_id, CAST([date] AS DATE) AS [day], [status],
+		COUNT_BIG(*) AS appointments, SUM(duration_minutes) AS minutes
+	FROM dbo.AppointmentsArchive
+	GROUP BY doctor_id, CAST([date] AS DATE), [status];
+GO
+
+CREATE UNIQUE CLUSTERED INDEX UX_AppointmentArchiveDailyStats ON dbo.AppointmentArchiveDailyStats ([day], doctor_id, [status]);
+GO
+
+-- archived appointments still exist, they must not reach the change feed as deletes
+ALTER TRIGGER TR_Appointments_Deleted ON Appointments AFTER DELETE AS
+	INSERT INTO DeletedRows (table_name, row_id)
+	SELECT 'Appointments', d.appointment_id FROM deleted d
+	WHERE NOT EXISTS (SELECT 1 FROM AppointmentsArchive x WHERE x.appointment_id = d.appointment_id);
+GO
+
+-- Moves one batch, oldest first, in its own transaction. Batches stay well below the 5000 locks at which
+-- SQL Server escalates to a table lock; READPAST skips rows another session has locked instead of waiting.
+-- Returns the number of appointments moved.
+CREATE PROCEDURE ArchiveAppointments @cutoff DATETIME, @batchSize INT AS
+BEGIN
+	SET NOCOUNT ON;
+	SET XACT_ABORT ON;
+	DECLARE @batch TABLE (appointment_id INT PRIMARY KEY);
+
+	BEGIN TRANSACTION;
+	INSERT INTO @batch (appointment_id)
+		SELECT TOP (@batchSize) appointment_id FROM Appointments WITH (UPDLOCK, ROWLOCK, READPAST)
+		WHERE [date] < @cutoff AND [status] = 'completed'
+		ORDER BY [date];
+
+	INSERT INTO AppointmentsArchive (appointment_id, client_id, doctor_id, [date], reason, [status], duration_minutes)
+		SELECT a.appointment_id, a.client_id, a.doctor_id, a.[date], a.reason, a.[status], a.duration_minutes
+		FROM Appointments a JOIN @batch b ON b.appointment_id = a.appointment_id;
+
+	DELETE a FROM Appointments a JOIN @batch b ON b.appointment_id = a.appointment_id;
+	COMMIT;
+
+	SELECT COUNT(*) FROM @batch;
+END
+GO
@@ -0,0 +1,10 @@
+-- Client-generated key of a booking made through the write-behind journal (BookingWriter). A booking
+-- replayed after a crash or reconnect finds its key already present and is not inserted twice.
+
+ALTER TABLE Appointments ADD booking_key UNIQUEIDENTIFIER NULL;
+GO
+
+CREATE UNIQUE NONCLUSTERED INDEX UX_Appointments_booking_key
+	ON Appointments (booking_key)
+	WHERE booking_key IS NOT NULL;
+GO
@@ -0,0 +1,26 @@
+-- TR_Appointments_NoOverlap (V003) re-checked every updated row, so marking appointments completed or
+-- editing a reason paid for the range-locked overlap probe too. Only a row that can newly overlap is
+-- checked now: an inserted one, one whose time, length or doctor changed, or one taken out of 'cancelled'.
+
+ALTER TRIGGER TR_Appointments_NoOverlap ON Appointments AFTER INSERT, UPDATE AS
+BEGIN
+	SET NOCOUNT ON;
+	IF NOT (UPDATE([date]) OR UPDATE(duration_minutes) OR UPDATE(doctor_id) OR UPDATE([status])) RETURN;
+	IF EXISTS (
+		SELECT 1
+		FROM inserted i
+		LEFT JOIN deleted d ON d.appointment_id = i.appointment_id
+		JOIN Appointments a WITH (UPDLOCK, HOLDLOCK)
+			ON a.doctor_id = i.doctor_id
+			AND a.appointment_id <> i.appointment_id
+			AND a.[date] > DATEADD(minute, -480, i.[date])
+			AND a.[date] < DATEADD(minute, i.duration_minutes, i.[date])
+			AND DATEADD(minute, a.duration_minutes, a.[date]) > i.[date]
+		WHERE i.[status] <> 'cancelled' AND a.[status] <> 'cancelled'
+			AND (d.appointment_id IS NULL OR d.[status] = 'cancelled' OR d.[date] <> i.[date]
+				OR d.duration_minutes <> i.duration_minutes OR d.doctor_id <> i.doctor_id))
+	BEGIN
+		THROW 50001, 'The doctor already has an appointment at that time.', 1;
+	END
+END
+GO
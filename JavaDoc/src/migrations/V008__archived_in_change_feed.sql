@@ -0,0 +1,9 @@
+-- Only the desk whose AppointmentArchiver moved a batch used to learn about it, so every other desk kept
+-- cached searches holding the moved rows. Archived appointments now reach the change feed too, under
+-- their own table name, so the desks tell them apart from deleted ones (ChangeFeed.ARCHIVED).
+
+ALTER TRIGGER TR_Appointments_Deleted ON Appointments AFTER DELETE AS
+	INSERT INTO DeletedRows (table_name, row_id)
+	SELECT CASE WHEN x.appointment_id IS NULL THEN 'Appointments' ELSE 'AppointmentsArchive' END, d.appointment_id
+	FROM deleted d LEFT JOIN AppointmentsArchive x ON x.appointment_id = d.appointment_id;
+GO